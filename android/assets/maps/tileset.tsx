@@ -1,6 +1,6 @@
 <?xml version="1.0" encoding="UTF-8"?>
 <tileset name="tileset" tilewidth="70" tileheight="70" spacing="2" tilecount="42" columns="14">
- <image source="../tiles/tileset.png" width="1024" height="256"/>
+ <image source="../world/world.png" width="1024" height="458"/>
  <tile id="9">
   <animation>
    <frame tileid="9" duration="150"/>
@@ -0,0 +1,40 @@
+package box2dLight;
+/*
+ * Created by Quillraven on 15.07.2018.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2018 Quillraven
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+/**
+ * Gives access to the package private light map of a {@link RayHandler}. box2dlights 1.4 renders the lights and
+ * draws the light map in a single {@link RayHandler#render()} call. With light map rendering disabled
+ * ({@link RayHandler#setLightMapRendering(boolean)}) the light map can be modified after the lights are rendered and
+ * is drawn afterwards with {@link #render(RayHandler)}.
+ */
+public final class LightMapRenderer {
+    private LightMapRenderer() {
+    }
+
+    public static void render(final RayHandler rayHandler) {
+        if (rayHandler.shadows || rayHandler.blur) {
+            rayHandler.lightMap.render();
+        }
+    }
+}
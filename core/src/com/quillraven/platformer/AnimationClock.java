@@ -0,0 +1,89 @@
+package com.quillraven.platformer;
+/*
+ * Created by Quillraven on 21.07.2018.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2018 Quillraven
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import com.badlogic.gdx.maps.tiled.tiles.AnimatedTiledMapTile;
+
+/**
+ * Single time source for every animation of the game (map tiles, entity animations and HUD actions). The clock is
+ * advanced exactly once per rendered frame by {@link Platformer#render()}. Animations store their own start time
+ * and evaluate their frame against this clock instead of accumulating time on their own.
+ * <br>
+ * The time is kept in nanoseconds as long to avoid the precision loss of a float accumulator in long sessions.
+ */
+public class AnimationClock {
+    private static final AnimationClock instance = new AnimationClock();
+    private long timeNanos;
+    private float deltaTime;
+    private long frameID;
+
+    private AnimationClock() {
+        this.timeNanos = 0;
+        this.deltaTime = 0;
+        this.frameID = 0;
+    }
+
+    public static AnimationClock getInstance() {
+        return instance;
+    }
+
+    public void advance(final float deltaTime) {
+        this.deltaTime = deltaTime;
+        this.timeNanos += (long) (deltaTime * 1000000000d);
+        ++frameID;
+        // tile layers that are rendered by the libgdx renderer still use the static base time of AnimatedTiledMapTile
+        AnimatedTiledMapTile.updateAnimationBaseTime();
+    }
+
+    /**
+     * @return time in nanoseconds since the start of the game
+     */
+    public long getTimeNanos() {
+        return timeNanos;
+    }
+
+    public long getTimeMillis() {
+        return timeNanos / 1000000L;
+    }
+
+    /**
+     * @return time in seconds between the given clock time in nanoseconds and the current time
+     */
+    public float getSecondsSince(final long startTimeNanos) {
+        return (timeNanos - startTimeNanos) / 1000000000f;
+    }
+
+    /**
+     * @return time in seconds between the current and the previous frame
+     */
+    public float getDeltaTime() {
+        return deltaTime;
+    }
+
+    /**
+     * @return id of the current frame. Can be used to evaluate an animation only once per frame
+     */
+    public long getFrameID() {
+        return frameID;
+    }
+}
@@ -0,0 +1,268 @@
+package com.quillraven.platformer;
+/*
+ * Created by Quillraven on 26.07.2018.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2018 Quillraven
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.assets.AssetManager;
+import com.badlogic.gdx.audio.Music;
+import com.badlogic.gdx.audio.Sound;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.maps.MapLayer;
+import com.badlogic.gdx.maps.tiled.TiledMap;
+import com.badlogic.gdx.maps.tiled.TiledMapTileLayer;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+/**
+ * Keeps the memory of the assets of the {@link AssetManager} within a budget. Assets like maps and music that are
+ * only needed for a while are tracked by the manager. Every user of such an asset calls {@link #acquire(AssetManager, String)}
+ * and {@link #release(AssetManager, String)}. Assets without any reference stay loaded until the resident bytes of all
+ * assets exceed the memory budget. In that case the least recently used ones are unloaded.
+ * <br>
+ * The resident bytes per asset type are reported to the {@link MetricsManager}. They are estimations: textures are
+ * calculated by their size and format, maps by their cells and objects and music and sounds by their file size.
+ */
+public class AssetResidencyManager {
+    private static final String TAG = AssetResidencyManager.class.getSimpleName();
+    private static final AssetResidencyManager instance = new AssetResidencyManager();
+    // estimated bytes of a cell of a tile layer and of a map object including its properties
+    private static final int CELL_BYTES = 32;
+    private static final int MAP_OBJECT_BYTES = 256;
+
+    private final Array<ResidencyListener> residencyListeners;
+    // tracked assets ordered by their last usage (least recently used first)
+    private final Array<ResidentAsset> residentAssets;
+    private final long[] residentBytes;
+    private long memoryBudget;
+    private int lastLoadedAssets;
+
+    private AssetResidencyManager() {
+        this.residencyListeners = new Array<>();
+        this.residentAssets = new Array<>();
+        this.residentBytes = new long[ResidencyType.values().length];
+        // 64 MB
+        this.memoryBudget = 64 * 1024 * 1024;
+        this.lastLoadedAssets = -1;
+    }
+
+    public static AssetResidencyManager getInstance() {
+        return instance;
+    }
+
+    public void addResidencyListener(final ResidencyListener listener) {
+        residencyListeners.add(listener);
+    }
+
+    public void removeResidencyListener(final ResidencyListener listener) {
+        residencyListeners.removeValue(listener, true);
+    }
+
+    /**
+     * Sets the memory budget in bytes for all assets of the asset manager. Assets that are in use are never unloaded
+     * and therefore the budget can still be exceeded.
+     */
+    public void setMemoryBudget(final long memoryBudget) {
+        if (memoryBudget <= 0) {
+            throw new GdxRuntimeException("Memory budget must be greater than zero: " + memoryBudget);
+        }
+        this.memoryBudget = memoryBudget;
+    }
+
+    public long getResidentBytes(final ResidencyType residencyType) {
+        return residentBytes[residencyType.ordinal()];
+    }
+
+    /**
+     * Tracks an asset without referencing it. It can be unloaded by the manager until it is acquired.
+     */
+    public void track(final String fileName) {
+        if (getResidentAsset(fileName) == null) {
+            residentAssets.insert(0, new ResidentAsset(fileName));
+        }
+    }
+
+    /**
+     * Adds a reference to the given asset. The asset is not unloaded until every reference is released again.
+     */
+    public void acquire(final AssetManager assetManager, final String fileName) {
+        ResidentAsset residentAsset = getResidentAsset(fileName);
+        if (residentAsset == null) {
+            residentAsset = new ResidentAsset(fileName);
+        } else {
+            residentAssets.removeValue(residentAsset, true);
+        }
+        ++residentAsset.refCount;
+        residentAssets.add(residentAsset);
+        enforceBudget(assetManager);
+    }
+
+    /**
+     * Removes a reference of the given asset. Assets without references are unloaded once the budget is exceeded.
+     */
+    public void release(final AssetManager assetManager, final String fileName) {
+        final ResidentAsset residentAsset = getResidentAsset(fileName);
+        if (residentAsset == null || residentAsset.refCount == 0) {
+            throw new GdxRuntimeException("Asset " + fileName + " is released more often than it is acquired");
+        }
+        --residentAsset.refCount;
+        residentAssets.removeValue(residentAsset, true);
+        residentAssets.add(residentAsset);
+        enforceBudget(assetManager);
+    }
+
+    /**
+     * Updates the resident bytes whenever the asset manager loaded or unloaded assets. Needs to be called every frame.
+     */
+    public void update(final AssetManager assetManager) {
+        if (assetManager.getLoadedAssets() != lastLoadedAssets) {
+            enforceBudget(assetManager);
+        }
+    }
+
+    private ResidentAsset getResidentAsset(final String fileName) {
+        for (final ResidentAsset residentAsset : residentAssets) {
+            if (residentAsset.fileName.equals(fileName)) {
+                return residentAsset;
+            }
+        }
+        return null;
+    }
+
+    private void enforceBudget(final AssetManager assetManager) {
+        long totalBytes = updateResidentBytes(assetManager);
+        for (int i = 0; i < residentAssets.size && totalBytes > memoryBudget; ) {
+            final ResidentAsset residentAsset = residentAssets.get(i);
+            // assets that are loaded more than once by the asset manager would stay loaded after one unload call
+            if (residentAsset.refCount > 0 || !assetManager.isLoaded(residentAsset.fileName) || assetManager.getReferenceCount(residentAsset.fileName) > 1) {
+                ++i;
+                continue;
+            }
+
+            Gdx.app.debug(TAG, "Unloading " + residentAsset.fileName + " because the resident bytes " + totalBytes + " exceed the memory budget of " + memoryBudget);
+            assetManager.unload(residentAsset.fileName);
+            residentAssets.removeIndex(i);
+            for (final ResidencyListener listener : residencyListeners) {
+                listener.onAssetUnloaded(residentAsset.fileName);
+            }
+            totalBytes = updateResidentBytes(assetManager);
+        }
+    }
+
+    private long updateResidentBytes(final AssetManager assetManager) {
+        for (int i = 0; i < residentBytes.length; ++i) {
+            residentBytes[i] = 0;
+        }
+
+        long totalBytes = 0;
+        for (final String fileName : assetManager.getAssetNames()) {
+            final Object asset = assetManager.get(fileName);
+            final long bytes;
+            final ResidencyType residencyType;
+            if (asset instanceof Texture) {
+                residencyType = ResidencyType.TEXTURE;
+                bytes = getTextureBytes((Texture) asset);
+            } else if (asset instanceof TiledMap) {
+                residencyType = ResidencyType.MAP;
+                bytes = getMapBytes((TiledMap) asset);
+            } else if (asset instanceof Music) {
+                residencyType = ResidencyType.MUSIC;
+                bytes = Gdx.files.internal(fileName).length();
+            } else if (asset instanceof Sound) {
+                residencyType = ResidencyType.SOUND;
+                bytes = Gdx.files.internal(fileName).length();
+            } else {
+                continue;
+            }
+            residentBytes[residencyType.ordinal()] += bytes;
+            totalBytes += bytes;
+        }
+        lastLoadedAssets = assetManager.getLoadedAssets();
+
+        final MetricsManager metricsManager = MetricsManager.getInstance();
+        metricsManager.setValue(MetricsManager.MetricType.RESIDENT_TEXTURES, residentBytes[ResidencyType.TEXTURE.ordinal()] / 1024f);
+        metricsManager.setValue(MetricsManager.MetricType.RESIDENT_MAPS, residentBytes[ResidencyType.MAP.ordinal()] / 1024f);
+        metricsManager.setValue(MetricsManager.MetricType.RESIDENT_MUSIC, residentBytes[ResidencyType.MUSIC.ordinal()] / 1024f);
+        metricsManager.setValue(MetricsManager.MetricType.RESIDENT_SOUNDS, residentBytes[ResidencyType.SOUND.ordinal()] / 1024f);
+        return totalBytes;
+    }
+
+    private long getTextureBytes(final Texture texture) {
+        final Pixmap.Format format = texture.getTextureData().getFormat();
+        final int bytesPerPixel;
+        if (format == Pixmap.Format.Alpha || format == Pixmap.Format.Intensity) {
+            bytesPerPixel = 1;
+        } else if (format == Pixmap.Format.LuminanceAlpha || format == Pixmap.Format.RGB565 || format == Pixmap.Format.RGBA4444) {
+            bytesPerPixel = 2;
+        } else if (format == Pixmap.Format.RGB888) {
+            bytesPerPixel = 3;
+        } else {
+            bytesPerPixel = 4;
+        }
+
+        final long bytes = (long) texture.getWidth() * texture.getHeight() * bytesPerPixel;
+        // mip maps need an additional third of the memory
+        return texture.getTextureData().useMipMaps() ? bytes * 4 / 3 : bytes;
+    }
+
+    private long getMapBytes(final TiledMap tiledMap) {
+        long bytes = 0;
+        for (final MapLayer layer : tiledMap.getLayers()) {
+            bytes += layer.getObjects().getCount() * MAP_OBJECT_BYTES;
+            if (layer instanceof TiledMapTileLayer) {
+                final TiledMapTileLayer tileLayer = (TiledMapTileLayer) layer;
+                // cell references of the layer
+                bytes += tileLayer.getWidth() * tileLayer.getHeight() * 4;
+                for (int x = 0; x < tileLayer.getWidth(); ++x) {
+                    for (int y = 0; y < tileLayer.getHeight(); ++y) {
+                        if (tileLayer.getCell(x, y) != null) {
+                            bytes += CELL_BYTES;
+                        }
+                    }
+                }
+            }
+        }
+        return bytes;
+    }
+
+    public enum ResidencyType {
+        TEXTURE,
+        MAP,
+        MUSIC,
+        SOUND
+    }
+
+    public interface ResidencyListener {
+        void onAssetUnloaded(final String fileName);
+    }
+
+    private static class ResidentAsset {
+        private final String fileName;
+        private int refCount;
+
+        private ResidentAsset(final String fileName) {
+            this.fileName = fileName;
+            this.refCount = 0;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.quillraven.platformer;
+/*
+ * Created by Quillraven on 07.07.2018.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2018 Quillraven
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import com.badlogic.gdx.Application;
+import com.badlogic.gdx.Gdx;
+
+/**
+ * Collects performance related values of the current frame like the duration of a physics step. Every value is identified
+ * by a {@link MetricType} and stored in a plain float array to avoid any allocations when updating them each frame.
+ * <br>
+ * {@link #update(float)} writes all values to the debug log every {@link #LOG_INTERVAL} seconds.
+ */
+public class MetricsManager {
+    private static final String TAG = MetricsManager.class.getSimpleName();
+    private static final MetricsManager instance = new MetricsManager();
+    // seconds between two debug logs of the metrics
+    private static final float LOG_INTERVAL = 5f;
+
+    private final float[] values;
+    private final MetricType[] metricTypes;
+    private final StringBuilder logBuilder;
+    private float timeUntilLog;
+
+    private MetricsManager() {
+        this.metricTypes = MetricType.values();
+        this.values = new float[metricTypes.length];
+        this.logBuilder = new StringBuilder();
+        this.timeUntilLog = LOG_INTERVAL;
+    }
+
+    public static MetricsManager getInstance() {
+        return instance;
+    }
+
+    public void setValue(final MetricType metricType, final float value) {
+        values[metricType.ordinal()] = value;
+    }
+
+    public void addValue(final MetricType metricType, final float value) {
+        values[metricType.ordinal()] += value;
+    }
+
+    public float getValue(final MetricType metricType) {
+        return values[metricType.ordinal()];
+    }
+
+    public void update(final float deltaTime) {
+        timeUntilLog -= deltaTime;
+        if (timeUntilLog > 0 || Gdx.app.getLogLevel() < Application.LOG_DEBUG) {
+            return;
+        }
+
+        timeUntilLog = LOG_INTERVAL;
+        logBuilder.setLength(0);
+        for (final MetricType metricType : metricTypes) {
+            if (logBuilder.length() > 0) {
+                logBuilder.append(", ");
+            }
+            logBuilder.append(metricType.name()).append('=').append(values[metricType.ordinal()]).append(metricType.unit);
+        }
+        Gdx.app.debug(TAG, logBuilder.toString());
+    }
+
+    public enum MetricType {
+        PHYSICS_STEP_TIME("ms"),
+        PHYSICS_VELOCITY_ITERATIONS(""),
+        PHYSICS_POSITION_ITERATIONS(""),
+        PHYSICS_SUBSTEPS(""),
+        WORLD_STATIC_BODIES(""),
+        WORLD_KINEMATIC_BODIES(""),
+        WORLD_DYNAMIC_BODIES(""),
+        WORLD_AWAKE_BODIES(""),
+        WORLD_FIXTURES(""),
+        WORLD_PROXIES(""),
+        WORLD_CONTACTS(""),
+        WORLD_TOUCHING_CONTACTS(""),
+        REGION_ACTIVE_BODIES(""),
+        REGION_INACTIVE_BODIES(""),
+        MAP_CHUNKS_DRAWN(""),
+        RENDER_ENTITIES_DRAWN(""),
+        RENDER_ENTITIES_CULLED(""),
+        RENDER_PARTICLES_DRAWN(""),
+        RENDER_PARTICLES_CULLED(""),
+        RENDER_CALLS(""),
+        RENDER_TOTAL_CALLS(""),
+        RENDER_MAX_SPRITES_IN_BATCH(""),
+        LIGHT_RAYS(""),
+        LIGHTS_ACTIVE(""),
+        LIGHTS_CULLED(""),
+        LIGHT_CAST_TIME("ms"),
+        PARTICLES_LIVE(""),
+        PARTICLE_EFFECTS_LIVE(""),
+        PARTICLE_SPAWNS_REJECTED(""),
+        RENDER_SCALE(""),
+        FRAME_WORK_TIME("ms"),
+        TEXTURE_BINDS(""),
+        MAP_CELLS_OCCLUDED(""),
+        MAP_PRELOAD_HITS(""),
+        MAP_PRELOAD_MISSES(""),
+        MAP_BUILD_TIME("ms"),
+        MAP_BUILD_SLICES(""),
+        RESIDENT_TEXTURES("KB"),
+        RESIDENT_MAPS("KB"),
+        RESIDENT_MUSIC("KB"),
+        RESIDENT_SOUNDS("KB");
+
+        private final String unit;
+
+        MetricType(final String unit) {
+            this.unit = unit;
+        }
+
+        public String getUnit() {
+            return unit;
+        }
+    }
+}
@@ -22,27 +22,44 @@ package com.quillraven.platformer;
  * SOFTWARE.
  */
 
+import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.assets.AssetManager;
 import com.badlogic.gdx.assets.loaders.ParticleEffectLoader;
 import com.badlogic.gdx.graphics.g2d.ParticleEffect;
 import com.badlogic.gdx.graphics.g2d.ParticleEffectPool;
+import com.badlogic.gdx.graphics.g2d.ParticleEmitter;
 import com.badlogic.gdx.utils.Array;
 
 import static com.quillraven.platformer.Platformer.PPM;
 
 /**
- * TODO add class description
+ * Spawns and updates the particle effects of the game. Effects are updated with the fixed timestep of the game loop and
+ * the render systems only draw them. Every {@link EffectType} has its own pool which is filled with the peak amount of
+ * effects of the previous sessions and live effects of a type never exceed the type's maximum. Additionally, no effects
+ * are spawned while the live particles of all effects exceed the particle budget.
  */
 public class ParticleEffectManager {
+    private static final String TAG = ParticleEffectManager.class.getSimpleName();
     private static final ParticleEffectManager instance = new ParticleEffectManager();
+    private static final int PARTICLE_BUDGET = 120;
     private final Array<ParticleEffectPool.PooledEffect> currentEffects;
-    private ParticleEffectPool effectPool;
+    private final Array<EffectType> currentEffectTypes;
+    private final ParticleEffectPool[] effectPools;
+    private final int[] liveEffects;
+    private final int[] peakEffects;
+    private int liveParticles;
+    private int rejectedSpawns;
     private AssetManager assetManager;
 
     private ParticleEffectManager() {
-        this.effectPool = null;
         this.assetManager = null;
         this.currentEffects = new Array<>();
+        this.currentEffectTypes = new Array<>();
+        this.effectPools = new ParticleEffectPool[EffectType.values().length];
+        this.liveEffects = new int[EffectType.values().length];
+        this.peakEffects = new int[EffectType.values().length];
+        this.liveParticles = 0;
+        this.rejectedSpawns = 0;
     }
 
     public static ParticleEffectManager getInstance() {
@@ -51,26 +68,127 @@ public class ParticleEffectManager {
 
     public void loadEffects(final AssetManager assetManager) {
         this.assetManager = assetManager;
-        if (!assetManager.isLoaded("effects/dust.pe")) {
-            ParticleEffectLoader.ParticleEffectParameter peParams = new ParticleEffectLoader.ParticleEffectParameter();
-            peParams.atlasFile = "characters/characters.atlas";
-            assetManager.load("effects/dust.pe", ParticleEffect.class, peParams);
+        for (final EffectType type : EffectType.values()) {
+            if (!assetManager.isLoaded(type.effectPath)) {
+                ParticleEffectLoader.ParticleEffectParameter peParams = new ParticleEffectLoader.ParticleEffectParameter();
+                peParams.atlasFile = type.atlasPath;
+                assetManager.load(type.effectPath, ParticleEffect.class, peParams);
+            }
         }
     }
 
-    public void spawnDustEffect(final float x, final float y) {
-        if (effectPool == null) {
-            final ParticleEffect dustEffect = assetManager.get("effects/dust.pe", ParticleEffect.class);
-            dustEffect.setEmittersCleanUpBlendFunction(false);
-            dustEffect.scaleEffect(1f / PPM * 0.75f);
-            this.effectPool = new ParticleEffectPool(dustEffect, 1, 2);
+    private ParticleEffectPool getPool(final EffectType type) {
+        ParticleEffectPool pool = effectPools[type.ordinal()];
+        if (pool == null) {
+            final ParticleEffect effect = assetManager.get(type.effectPath, ParticleEffect.class);
+            effect.setEmittersCleanUpBlendFunction(false);
+            effect.scaleEffect(1f / PPM * type.scale);
+
+            // fill the pool with the peak of the previous sessions to avoid allocations while playing
+            final int initialSize = Math.max(1, Math.min(type.maxEffects, PreferencesManager.getInstance().getIntValue(getPeakKey(type))));
+            pool = new ParticleEffectPool(effect, initialSize, type.maxEffects);
+            final Array<ParticleEffectPool.PooledEffect> initialEffects = new Array<>(initialSize);
+            for (int i = 0; i < initialSize; ++i) {
+                initialEffects.add(pool.obtain());
+            }
+            pool.freeAll(initialEffects);
+            effectPools[type.ordinal()] = pool;
+            Gdx.app.debug(TAG, "Created pool for " + type + " with " + initialSize + " effects");
+        }
+        return pool;
+    }
+
+    private String getPeakKey(final EffectType type) {
+        return "particlePeak" + type.name();
+    }
+
+    public void spawnEffect(final EffectType type, final float x, final float y) {
+        if (liveParticles >= PARTICLE_BUDGET) {
+            ++rejectedSpawns;
+            return;
         }
-        final ParticleEffectPool.PooledEffect effect = effectPool.obtain();
+
+        if (liveEffects[type.ordinal()] >= type.maxEffects) {
+            // restart the oldest effect of the type instead of creating a new one
+            for (int i = 0; i < currentEffects.size; ++i) {
+                if (currentEffectTypes.get(i) == type) {
+                    final ParticleEffectPool.PooledEffect effect = currentEffects.get(i);
+                    effect.setPosition(x, y);
+                    effect.start();
+                    currentEffects.removeIndex(i);
+                    currentEffectTypes.removeIndex(i);
+                    currentEffects.add(effect);
+                    currentEffectTypes.add(type);
+                    return;
+                }
+            }
+        }
+
+        final ParticleEffectPool.PooledEffect effect = getPool(type).obtain();
         effect.setPosition(x, y);
         currentEffects.add(effect);
+        currentEffectTypes.add(type);
+        ++liveEffects[type.ordinal()];
+        peakEffects[type.ordinal()] = Math.max(peakEffects[type.ordinal()], liveEffects[type.ordinal()]);
+    }
+
+    /**
+     * updates all effects with the fixed timestep of the game loop and frees completed effects
+     */
+    public void update(final float fixedTimeStep) {
+        liveParticles = 0;
+        for (int i = currentEffects.size - 1; i >= 0; --i) {
+            final ParticleEffectPool.PooledEffect effect = currentEffects.get(i);
+            effect.update(fixedTimeStep);
+            if (effect.isComplete()) {
+                --liveEffects[currentEffectTypes.get(i).ordinal()];
+                effect.free();
+                currentEffects.removeIndex(i);
+                currentEffectTypes.removeIndex(i);
+                continue;
+            }
+
+            final Array<ParticleEmitter> emitters = effect.getEmitters();
+            for (int j = 0; j < emitters.size; ++j) {
+                liveParticles += emitters.get(j).getActiveCount();
+            }
+        }
+
+        final MetricsManager metrics = MetricsManager.getInstance();
+        metrics.setValue(MetricsManager.MetricType.PARTICLES_LIVE, liveParticles);
+        metrics.setValue(MetricsManager.MetricType.PARTICLE_EFFECTS_LIVE, currentEffects.size);
+        metrics.setValue(MetricsManager.MetricType.PARTICLE_SPAWNS_REJECTED, rejectedSpawns);
+    }
+
+    /**
+     * stores the peak amount of live effects per type which is used as initial pool size of the next session
+     */
+    public void savePeaks() {
+        for (final EffectType type : EffectType.values()) {
+            final int peak = peakEffects[type.ordinal()];
+            if (peak > PreferencesManager.getInstance().getIntValue(getPeakKey(type))) {
+                PreferencesManager.getInstance().setIntValue(getPeakKey(type), peak);
+            }
+        }
     }
 
     public Array<ParticleEffectPool.PooledEffect> getEffects() {
         return currentEffects;
     }
+
+    public enum EffectType {
+        DUST("effects/dust.pe", "world/world.atlas", 0.75f, 4);
+
+        private final String effectPath;
+        private final String atlasPath;
+        private final float scale;
+        private final int maxEffects;
+
+        EffectType(final String effectPath, final String atlasPath, final float scale, final int maxEffects) {
+            this.effectPath = effectPath;
+            this.atlasPath = atlasPath;
+            this.scale = scale;
+            this.maxEffects = maxEffects;
+        }
+    }
 }
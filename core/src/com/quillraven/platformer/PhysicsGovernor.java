@@ -0,0 +1,213 @@
+package com.quillraven.platformer;
+/*
+ * Created by Quillraven on 07.07.2018.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2018 Quillraven
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import com.badlogic.ashley.core.ComponentMapper;
+import com.badlogic.ashley.core.Entity;
+import com.badlogic.ashley.core.EntityListener;
+import com.badlogic.ashley.core.Family;
+import com.badlogic.gdx.physics.box2d.World;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.TimeUtils;
+import com.quillraven.platformer.ecs.component.Box2DComponent;
+import com.quillraven.platformer.ecs.component.GameObjectComponent;
+import com.quillraven.platformer.physics.PhysicsBody;
+
+/**
+ * Steps the box2d world and adjusts the velocity and position iterations of the solver according to the measured
+ * duration of a step. If a step takes longer than the given budget then the iterations get reduced (velocity first)
+ * and if there is enough headroom then they get increased again (velocity first) up to the configured maximum.
+ * <br>
+ * Additionally a step is split into several substeps if a dynamic body would move further than
+ * {@link GovernorParameter#maxSubstepDistance} within a single step. The dynamic bodies are the bodies of the entities
+ * of {@link #DYNAMIC_BODY_FAMILY}. Register the governor as {@link EntityListener} for this family to track them.
+ * <br>
+ * The chosen settings and the step duration are reported to the {@link MetricsManager}.
+ */
+public class PhysicsGovernor implements EntityListener {
+    // player and enemies; game objects are static sensors that never move
+    public static final Family DYNAMIC_BODY_FAMILY = Family.all(Box2DComponent.class).exclude(GameObjectComponent.class).get();
+    // amount of steps to wait before the iterations get changed again to avoid jumping between two settings every step
+    private static final int ADJUST_COOLDOWN_STEPS = 30;
+    // weight of a new step duration for the moving average
+    private static final float AVERAGE_WEIGHT = 0.1f;
+
+    private final World world;
+    private final GovernorParameter parameter;
+    private final ComponentMapper<Box2DComponent> b2dCmpMapper;
+    private final Array<PhysicsBody> dynamicBodies;
+    private int velocityIterations;
+    private int positionIterations;
+    private int substeps;
+    private float avgStepTime;
+    private float lastStepTime;
+    private int adjustCooldown;
+
+    public PhysicsGovernor(final World world, final GovernorParameter parameter) {
+        this.world = world;
+        this.parameter = parameter;
+        this.b2dCmpMapper = ComponentMapper.getFor(Box2DComponent.class);
+        this.dynamicBodies = new Array<>();
+        this.velocityIterations = parameter.maxVelocityIterations;
+        this.positionIterations = parameter.maxPositionIterations;
+        this.substeps = 1;
+        this.avgStepTime = 0;
+        this.lastStepTime = 0;
+        this.adjustCooldown = 0;
+    }
+
+    public void step(final float fixedTimeStep) {
+        substeps = calculateSubsteps(fixedTimeStep);
+
+        final long startTime = TimeUtils.nanoTime();
+        final float subTimeStep = fixedTimeStep / substeps;
+        for (int i = 0; i < substeps; ++i) {
+            world.step(subTimeStep, velocityIterations, positionIterations);
+        }
+        lastStepTime = TimeUtils.timeSinceNanos(startTime) / 1000000f;
+        avgStepTime = avgStepTime == 0 ? lastStepTime : avgStepTime + (lastStepTime - avgStepTime) * AVERAGE_WEIGHT;
+
+        adjustIterations();
+
+        final MetricsManager metrics = MetricsManager.getInstance();
+        metrics.setValue(MetricsManager.MetricType.PHYSICS_STEP_TIME, lastStepTime);
+        metrics.setValue(MetricsManager.MetricType.PHYSICS_VELOCITY_ITERATIONS, velocityIterations);
+        metrics.setValue(MetricsManager.MetricType.PHYSICS_POSITION_ITERATIONS, positionIterations);
+        metrics.setValue(MetricsManager.MetricType.PHYSICS_SUBSTEPS, substeps);
+    }
+
+    private int calculateSubsteps(final float fixedTimeStep) {
+        if (parameter.maxSubsteps <= 1) {
+            return 1;
+        }
+
+        float maxSpeed2 = 0;
+        for (final PhysicsBody body : dynamicBodies) {
+            if (body.isActive()) {
+                maxSpeed2 = Math.max(maxSpeed2, body.getLinearVelocity().len2());
+            }
+        }
+
+        final float maxDistance = (float) Math.sqrt(maxSpeed2) * fixedTimeStep;
+        return Math.max(1, Math.min(parameter.maxSubsteps, (int) Math.ceil(maxDistance / parameter.maxSubstepDistance)));
+    }
+
+    @Override
+    public void entityAdded(final Entity entity) {
+        final PhysicsBody body = b2dCmpMapper.get(entity).body;
+        if (body != null) {
+            dynamicBodies.add(body);
+        }
+    }
+
+    @Override
+    public void entityRemoved(final Entity entity) {
+        dynamicBodies.removeValue(b2dCmpMapper.get(entity).body, true);
+    }
+
+    private void adjustIterations() {
+        if (adjustCooldown > 0) {
+            --adjustCooldown;
+            return;
+        }
+
+        if (avgStepTime > parameter.stepBudget) {
+            // step is too expensive -> reduce accuracy
+            if (velocityIterations > parameter.minVelocityIterations) {
+                --velocityIterations;
+                adjustCooldown = ADJUST_COOLDOWN_STEPS;
+            } else if (positionIterations > parameter.minPositionIterations) {
+                --positionIterations;
+                adjustCooldown = ADJUST_COOLDOWN_STEPS;
+            }
+        } else if (avgStepTime < parameter.stepBudget * 0.5f) {
+            // enough headroom -> increase accuracy
+            if (velocityIterations < parameter.maxVelocityIterations) {
+                ++velocityIterations;
+                adjustCooldown = ADJUST_COOLDOWN_STEPS;
+            } else if (positionIterations < parameter.maxPositionIterations) {
+                ++positionIterations;
+                adjustCooldown = ADJUST_COOLDOWN_STEPS;
+            }
+        }
+    }
+
+    public int getVelocityIterations() {
+        return velocityIterations;
+    }
+
+    public int getPositionIterations() {
+        return positionIterations;
+    }
+
+    public int getSubsteps() {
+        return substeps;
+    }
+
+    public float getLastStepTime() {
+        return lastStepTime;
+    }
+
+    public static class GovernorParameter {
+        private final float stepBudget;
+        private final int minVelocityIterations;
+        private final int maxVelocityIterations;
+        private final int minPositionIterations;
+        private final int maxPositionIterations;
+        private final int maxSubsteps;
+        private final float maxSubstepDistance;
+
+        /**
+         * @param stepBudget            maximum duration of a physics step in milliseconds
+         * @param minVelocityIterations lower bound of the velocity iterations
+         * @param maxVelocityIterations upper bound of the velocity iterations
+         * @param minPositionIterations lower bound of the position iterations
+         * @param maxPositionIterations upper bound of the position iterations
+         * @param maxSubsteps           maximum amount of substeps per step. Use 1 to disable substepping
+         * @param maxSubstepDistance    maximum distance in world units that a body is allowed to move within a substep
+         */
+        public GovernorParameter(final float stepBudget, final int minVelocityIterations, final int maxVelocityIterations, final int minPositionIterations, final int maxPositionIterations, final int maxSubsteps, final float maxSubstepDistance) {
+            if (stepBudget <= 0) {
+                throw new GdxRuntimeException("stepBudget has to be greater than zero");
+            }
+            if (minVelocityIterations < 1 || minVelocityIterations > maxVelocityIterations) {
+                throw new GdxRuntimeException("invalid velocity iterations: " + minVelocityIterations + "-" + maxVelocityIterations);
+            }
+            if (minPositionIterations < 1 || minPositionIterations > maxPositionIterations) {
+                throw new GdxRuntimeException("invalid position iterations: " + minPositionIterations + "-" + maxPositionIterations);
+            }
+            if (maxSubsteps < 1 || maxSubstepDistance <= 0) {
+                throw new GdxRuntimeException("invalid substep settings: " + maxSubsteps + "/" + maxSubstepDistance);
+            }
+
+            this.stepBudget = stepBudget;
+            this.minVelocityIterations = minVelocityIterations;
+            this.maxVelocityIterations = maxVelocityIterations;
+            this.minPositionIterations = minPositionIterations;
+            this.maxPositionIterations = maxPositionIterations;
+            this.maxSubsteps = maxSubsteps;
+            this.maxSubstepDistance = maxSubstepDistance;
+        }
+    }
+}
@@ -24,6 +24,7 @@ package com.quillraven.platformer;
 
 import com.badlogic.gdx.ApplicationAdapter;
 import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.utils.TimeUtils;
 import com.quillraven.platformer.gamestate.GameStateManager;
 
 /**
@@ -46,6 +47,7 @@ public class Platformer extends ApplicationAdapter {
     public static final short BIT_PLAYER = 1 << 2;
     public static final short BIT_OBJECT = 1 << 3;
     public static final short BIT_ENEMY = 1 << 4;
+    public static final short BIT_LIGHT = 1 << 5;
 
     private static final float FIXED_TIME_STEP = 1 / 60f;
     private float accumulator;
@@ -67,8 +69,11 @@ public class Platformer extends ApplicationAdapter {
 
     @Override
     public void render() {
+        final long frameStart = TimeUtils.nanoTime();
         // use get raw delta time to get the real time between frames (getDeltaTime is smoothing)
-        accumulator += Math.min(0.25f, Gdx.graphics.getRawDeltaTime());
+        final float deltaTime = Math.min(0.25f, Gdx.graphics.getRawDeltaTime());
+        AnimationClock.getInstance().advance(deltaTime);
+        accumulator += deltaTime;
         while (accumulator >= FIXED_TIME_STEP) {
             if (!gsManager.update(FIXED_TIME_STEP)) {
                 Gdx.app.exit();
@@ -77,6 +82,9 @@ public class Platformer extends ApplicationAdapter {
             accumulator -= FIXED_TIME_STEP;
         }
         gsManager.render(accumulator / FIXED_TIME_STEP);
+        // time of the frame without the buffer swap and the vsync wait (refer to ResolutionScaler)
+        MetricsManager.getInstance().setValue(MetricsManager.MetricType.FRAME_WORK_TIME, TimeUtils.timeSinceNanos(frameStart) / 1000000f);
+        MetricsManager.getInstance().update(deltaTime);
     }
 
     @Override
@@ -58,6 +58,15 @@ public class PreferencesManager {
         return preferences.getFloat(key, 0f);
     }
 
+    public void setIntValue(final String key, final int value) {
+        preferences.putInteger(key, value);
+        preferences.flush();
+    }
+
+    public int getIntValue(final String key) {
+        return preferences.getInteger(key, 0);
+    }
+
     public PreferencesManager removeValue(final String key) {
         preferences.remove(key);
         preferences.flush();
@@ -0,0 +1,224 @@
+package com.quillraven.platformer;
+/*
+ * Created by Quillraven on 20.07.2018.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2018 Quillraven
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.glutils.FrameBuffer;
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.viewport.Viewport;
+
+/**
+ * Renders the game world into a {@link FrameBuffer} whose resolution is a fraction of the screen size of the world viewport.
+ * The fraction (scale) is reduced if the average frame time is above the target frame time. It is increased again if the
+ * average work time of a frame (without the buffer swap and the vsync wait) leaves enough room for the bigger frame
+ * buffer. Every scale down that undoes a scale up doubles the cooldown before the next scale up to not oscillate
+ * between two scales. The frame buffer is upscaled to the viewport afterwards.
+ * <br>
+ * The current scale is reported to the {@link MetricsManager}.
+ */
+public class ResolutionScaler implements Disposable {
+    private static final String TAG = ResolutionScaler.class.getSimpleName();
+    // amount of frames to wait before the scale gets changed again to avoid jumping between two scales every frame
+    private static final int ADJUST_COOLDOWN_FRAMES = 60;
+    // upper limit of the cooldown before a scale up after it got doubled by undone scale ups
+    private static final int MAX_UPSCALE_COOLDOWN_FRAMES = 60 * 60;
+    // a scale up that lasts that many frames is considered stable and resets the upscale cooldown
+    private static final int STABLE_UPSCALE_FRAMES = 10 * 60;
+    // fraction of the target frame time that the estimated work time of the bigger scale must not exceed
+    private static final float UPSCALE_WORK_LIMIT = 0.8f;
+    // weight of a new frame time for the moving average
+    private static final float AVERAGE_WEIGHT = 0.1f;
+    private static final float SCALE_STEP = 0.125f;
+
+    private final float targetFrameTime;
+    private final float minScale;
+    private final float maxScale;
+    private final Matrix4 upscaleMatrix;
+    private FrameBuffer frameBuffer;
+    private float scale;
+    private float avgFrameTime;
+    private float avgWorkTime;
+    private int adjustCooldown;
+    private int upscaleCooldown;
+    private int upscaleWait;
+    // frames since the last scale up or -1 if the last scale change was no scale up
+    private int framesSinceUpscale;
+    private int screenWidth;
+    private int screenHeight;
+
+    /**
+     * @param targetFrameTime frame time in seconds that should be reached
+     * @param minScale        minimum fraction of the screen resolution
+     * @param maxScale        maximum fraction of the screen resolution
+     */
+    public ResolutionScaler(final float targetFrameTime, final float minScale, final float maxScale) {
+        if (targetFrameTime <= 0) {
+            throw new GdxRuntimeException("Target frame time must be greater than zero: " + targetFrameTime);
+        } else if (minScale <= 0 || minScale > maxScale || maxScale > 1) {
+            throw new GdxRuntimeException("Invalid scale range: " + minScale + " - " + maxScale);
+        }
+
+        this.targetFrameTime = targetFrameTime;
+        this.minScale = minScale;
+        this.maxScale = maxScale;
+        this.upscaleMatrix = new Matrix4().setToOrtho2D(0, 0, 1, 1);
+        this.frameBuffer = null;
+        this.scale = maxScale;
+        this.avgFrameTime = 0;
+        this.avgWorkTime = 0;
+        this.adjustCooldown = ADJUST_COOLDOWN_FRAMES;
+        this.upscaleCooldown = ADJUST_COOLDOWN_FRAMES;
+        this.upscaleWait = 0;
+        this.framesSinceUpscale = -1;
+    }
+
+    /**
+     * sets the screen size of the world viewport and recreates the frame buffer
+     */
+    public void resize(final int screenWidth, final int screenHeight) {
+        this.screenWidth = screenWidth;
+        this.screenHeight = screenHeight;
+        createFrameBuffer();
+    }
+
+    private void createFrameBuffer() {
+        if (frameBuffer != null) {
+            frameBuffer.dispose();
+        }
+        frameBuffer = new FrameBuffer(Pixmap.Format.RGB888, getWidth(), getHeight(), false);
+        frameBuffer.getColorBufferTexture().setFilter(Texture.TextureFilter.Linear, Texture.TextureFilter.Linear);
+        Gdx.app.debug(TAG, "Rendering world with " + getWidth() + "x" + getHeight() + " (scale " + scale + ")");
+    }
+
+    /**
+     * updates the average frame and work time and adjusts the scale
+     *
+     * @param frameTime duration of the last frame in seconds
+     * @param workTime  duration of the last frame without the buffer swap and the vsync wait in seconds
+     * @return true if the scale and therefore the size of the frame buffer changed
+     */
+    public boolean update(final float frameTime, final float workTime) {
+        MetricsManager.getInstance().setValue(MetricsManager.MetricType.RENDER_SCALE, scale);
+        avgFrameTime = avgFrameTime == 0 ? frameTime : avgFrameTime + (frameTime - avgFrameTime) * AVERAGE_WEIGHT;
+        avgWorkTime = avgWorkTime == 0 ? workTime : avgWorkTime + (workTime - avgWorkTime) * AVERAGE_WEIGHT;
+        if (framesSinceUpscale >= 0 && ++framesSinceUpscale >= STABLE_UPSCALE_FRAMES) {
+            upscaleCooldown = ADJUST_COOLDOWN_FRAMES;
+            framesSinceUpscale = -1;
+        }
+        if (upscaleWait > 0) {
+            --upscaleWait;
+        }
+        if (adjustCooldown > 0) {
+            --adjustCooldown;
+            return false;
+        }
+
+        float newScale = scale;
+        if (avgFrameTime > targetFrameTime * 1.1f) {
+            newScale = Math.max(minScale, scale - SCALE_STEP);
+            if (newScale != scale) {
+                if (framesSinceUpscale >= 0) {
+                    // the last scale up was too much -> wait longer before trying it again
+                    upscaleCooldown = Math.min(MAX_UPSCALE_COOLDOWN_FRAMES, upscaleCooldown * 2);
+                    framesSinceUpscale = -1;
+                }
+                upscaleWait = upscaleCooldown;
+            }
+        } else if (upscaleWait == 0 && scale < maxScale) {
+            // vsync caps the frame time at the target frame time. Therefore, the work time is used to estimate the
+            // frame time of the bigger scale assuming that it grows with the amount of pixels
+            final float upscale = Math.min(maxScale, scale + SCALE_STEP);
+            final float pixelRatio = (upscale * upscale) / (scale * scale);
+            if (avgWorkTime * pixelRatio < targetFrameTime * UPSCALE_WORK_LIMIT) {
+                newScale = upscale;
+                framesSinceUpscale = 0;
+            }
+        }
+
+        if (newScale == scale || frameBuffer == null) {
+            return false;
+        }
+        Gdx.app.debug(TAG, "Changing scale from " + scale + " to " + newScale + " (upscale cooldown " + upscaleCooldown + " frames)");
+        scale = newScale;
+        adjustCooldown = ADJUST_COOLDOWN_FRAMES;
+        createFrameBuffer();
+        return true;
+    }
+
+    public int getWidth() {
+        return Math.max(1, MathUtils.round(screenWidth * scale));
+    }
+
+    public int getHeight() {
+        return Math.max(1, MathUtils.round(screenHeight * scale));
+    }
+
+    public FrameBuffer getFrameBuffer() {
+        return frameBuffer;
+    }
+
+    public float getScale() {
+        return scale;
+    }
+
+    /**
+     * starts rendering into the frame buffer
+     */
+    public void begin() {
+        frameBuffer.begin();
+        Gdx.gl.glClearColor(0, 0, 0, 1);
+        Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
+    }
+
+    /**
+     * stops rendering into the frame buffer and draws it into the given viewport
+     */
+    public void end(final SpriteBatch spriteBatch, final Viewport viewport) {
+        frameBuffer.end();
+        viewport.apply();
+
+        final Texture texture = frameBuffer.getColorBufferTexture();
+        spriteBatch.setProjectionMatrix(upscaleMatrix);
+        spriteBatch.disableBlending();
+        spriteBatch.begin();
+        // frame buffer textures are upside down
+        spriteBatch.draw(texture, 0, 0, 1, 1, 0, 0, texture.getWidth(), texture.getHeight(), false, true);
+        spriteBatch.end();
+        spriteBatch.enableBlending();
+    }
+
+    @Override
+    public void dispose() {
+        if (frameBuffer != null) {
+            frameBuffer.dispose();
+            frameBuffer = null;
+        }
+    }
+}
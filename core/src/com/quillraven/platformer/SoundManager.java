@@ -22,22 +22,38 @@ package com.quillraven.platformer;
  * SOFTWARE.
  */
 
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.assets.AssetLoaderParameters;
 import com.badlogic.gdx.assets.AssetManager;
+import com.badlogic.gdx.assets.loaders.MusicLoader;
 import com.badlogic.gdx.audio.Music;
 import com.badlogic.gdx.audio.Sound;
+import com.badlogic.gdx.utils.Array;
 
 /**
  * TODO add class description
  */
 
-public class SoundManager {
+public class SoundManager implements AssetLoaderParameters.LoadedCallback {
+    private static final String TAG = SoundManager.class.getSimpleName();
     private static final SoundManager instance = new SoundManager();
 
     private Music currentMusic;
+    private SoundType currentMusicType;
+    // music is tracked by the AssetResidencyManager after the first load and can be unloaded while it is not played
+    private boolean musicTracked;
     private AssetManager assetManager;
+    // music that is queued by loadMusic and not loaded yet; the asset manager would load a music twice if it is queued twice
+    private final Array<SoundType> queuedMusic;
+    private final MusicLoader.MusicParameter musicParameter;
 
     private SoundManager() {
         this.currentMusic = null;
+        this.currentMusicType = null;
+        this.musicTracked = false;
+        this.queuedMusic = new Array<>();
+        this.musicParameter = new MusicLoader.MusicParameter();
+        musicParameter.loadedCallback = this;
     }
 
     public static SoundManager getInstance() {
@@ -45,22 +61,73 @@ public class SoundManager {
     }
 
     public boolean loadSounds(final AssetManager assetManager) {
-        if (!assetManager.isLoaded(SoundType.STAGE.filePath)) {
-            this.assetManager = assetManager;
-            for (final SoundType sndType : SoundType.values()) {
+        this.assetManager = assetManager;
+        boolean loaded = true;
+        for (final SoundType sndType : SoundType.values()) {
+            final boolean isMusic = Music.class.equals(sndType.soundClass);
+            if (isMusic && musicTracked) {
+                // unloaded music is loaded again by loadMusic
+                continue;
+            }
+
+            if (isMusic) {
+                loaded &= loadMusic(assetManager, sndType);
+                AssetResidencyManager.getInstance().track(sndType.filePath);
+            } else if (!assetManager.isLoaded(sndType.filePath)) {
                 assetManager.load(sndType.filePath, sndType.soundClass);
+                loaded = false;
+            }
+        }
+        musicTracked = true;
+        return loaded;
+    }
+
+    /**
+     * Queues the given music for loading if it was unloaded by the {@link AssetResidencyManager}. Does not block.
+     *
+     * @return true if the music is loaded
+     */
+    public boolean loadMusic(final AssetManager assetManager, final SoundType musicType) {
+        if (assetManager.isLoaded(musicType.filePath)) {
+            return true;
+        }
+
+        if (!queuedMusic.contains(musicType, true)) {
+            Gdx.app.debug(TAG, "Loading music " + musicType);
+            queuedMusic.add(musicType);
+            assetManager.load(musicType.filePath, Music.class, musicParameter);
+        }
+        return false;
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public void finishedLoading(final AssetManager assetManager, final String fileName, final Class type) {
+        for (int i = queuedMusic.size - 1; i >= 0; --i) {
+            if (queuedMusic.get(i).filePath.equals(fileName)) {
+                queuedMusic.removeIndex(i);
             }
-            return false;
         }
-        return true;
     }
 
+    /**
+     * Plays the given sound or music. Music of a map is loaded together with the map by the {@link com.quillraven.platformer.map.MapManager}.
+     * Any other music that was unloaded is queued and not played. The game state manager shows the loading screen in
+     * that case and the state plays it again once it is activated afterwards.
+     */
     public void playSound(final SoundType sndType) {
         if (Music.class.equals(sndType.soundClass)) {
+            if (!loadMusic(assetManager, sndType)) {
+                return;
+            }
+            // acquire the new music before the current one is released in case both are the same
+            AssetResidencyManager.getInstance().acquire(assetManager, sndType.filePath);
             if (currentMusic != null) {
                 currentMusic.stop();
+                AssetResidencyManager.getInstance().release(assetManager, currentMusicType.filePath);
             }
 
+            currentMusicType = sndType;
             currentMusic = assetManager.get(sndType.filePath, Music.class);
             currentMusic.setLooping(true);
             currentMusic.play();
@@ -88,5 +155,9 @@ public class SoundManager {
             this.filePath = filePath;
             this.soundClass = soundClass;
         }
+
+        public String getFilePath() {
+            return filePath;
+        }
     }
 }
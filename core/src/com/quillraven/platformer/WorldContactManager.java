@@ -34,15 +34,23 @@ import com.badlogic.gdx.physics.box2d.WorldManifold;
 import com.badlogic.gdx.utils.Array;
 
 /**
- * TODO add class description
+ * Ground fixtures with the userData "oneWay" are one-way platforms. Whether the player passes through such a platform
+ * is decided once in {@link #beginContact(Contact)} and cached per fixture pair until {@link #endContact(Contact)}.
+ * That way {@link #preSolve(Contact, Manifold)} only needs to look up the cache instead of querying the manifold and
+ * velocities of a resting contact every step.
  */
 
 public class WorldContactManager implements ContactListener {
     private static final WorldContactManager instance = new WorldContactManager();
     private final Array<GameContactListener> listeners;
+    // player and ground fixture of contacts that pass through a one-way platform; same index = same contact pair
+    private final Array<Fixture> passThroughPlayerFixtures;
+    private final Array<Fixture> passThroughGroundFixtures;
 
     private WorldContactManager() {
         this.listeners = new Array<>();
+        this.passThroughPlayerFixtures = new Array<>(false, 4);
+        this.passThroughGroundFixtures = new Array<>(false, 4);
     }
 
     public static WorldContactManager getInstance() {
@@ -76,17 +84,15 @@ public class WorldContactManager implements ContactListener {
         }
 
         if (otherFixture.getFilterData().categoryBits == Platformer.BIT_GROUND) {
-            for (GameContactListener listener : listeners) {
-                listener.onBeginGroundContact((Entity) playerFixture.getBody().getUserData(), (String) playerFixture.getUserData());
+            if ("body".equals(playerFixture.getUserData()) && "oneWay".equals(otherFixture.getUserData()) && isMovingThroughPlatform(contact, playerFixture.getBody(), otherFixture.getBody())) {
+                passThroughPlayerFixtures.add(playerFixture);
+                passThroughGroundFixtures.add(otherFixture);
             }
+            fireBeginGroundContact((Entity) playerFixture.getBody().getUserData(), (String) playerFixture.getUserData());
         } else if (otherFixture.getFilterData().categoryBits == Platformer.BIT_OBJECT) {
-            for (GameContactListener listener : listeners) {
-                listener.onBeginObjectContact((Entity) playerFixture.getBody().getUserData(), (Entity) otherFixture.getBody().getUserData(), (String) otherFixture.getUserData());
-            }
+            fireBeginObjectContact((Entity) playerFixture.getBody().getUserData(), (Entity) otherFixture.getBody().getUserData(), (String) otherFixture.getUserData());
         } else if (otherFixture.getFilterData().categoryBits == Platformer.BIT_ENEMY) {
-            for (GameContactListener listener : listeners) {
-                listener.onBeginEnemyContact((Entity) playerFixture.getBody().getUserData(), (Entity) otherFixture.getBody().getUserData(), playerFixture.getBody().getLinearVelocity().y < -2f);
-            }
+            fireBeginEnemyContact((Entity) playerFixture.getBody().getUserData(), (Entity) otherFixture.getBody().getUserData(), playerFixture.getBody().getLinearVelocity().y < -2f);
         }
     }
 
@@ -97,6 +103,15 @@ public class WorldContactManager implements ContactListener {
         final Fixture playerFixture;
         final Fixture otherFixture;
 
+        // remove the cached decision before checking the userData because the userData of fixtures
+        // is already cleared when their body gets destroyed (refer to Box2DComponent#reset)
+        for (int i = passThroughPlayerFixtures.size - 1; i >= 0; --i) {
+            if (isContactPair(i, fixtureA, fixtureB)) {
+                passThroughPlayerFixtures.removeIndex(i);
+                passThroughGroundFixtures.removeIndex(i);
+            }
+        }
+
         if ("body".equals(fixtureA.getUserData()) || "foot-left".equals(fixtureA.getUserData()) || "foot-right".equals(fixtureA.getUserData())) {
             playerFixture = fixtureA;
             otherFixture = fixtureB;
@@ -109,54 +124,90 @@ public class WorldContactManager implements ContactListener {
         }
 
         if (otherFixture.getFilterData().categoryBits == Platformer.BIT_GROUND) {
-            for (GameContactListener listener : listeners) {
-                listener.onEndGroundContact((Entity) playerFixture.getBody().getUserData(), (String) playerFixture.getUserData());
-            }
+            fireEndGroundContact((Entity) playerFixture.getBody().getUserData(), (String) playerFixture.getUserData());
         } else if (otherFixture.getFilterData().categoryBits == Platformer.BIT_OBJECT) {
-            for (GameContactListener listener : listeners) {
-                listener.onEndObjectContact((Entity) playerFixture.getBody().getUserData(), (Entity) otherFixture.getBody().getUserData(), (String) otherFixture.getUserData());
-            }
+            fireEndObjectContact((Entity) playerFixture.getBody().getUserData(), (Entity) otherFixture.getBody().getUserData(), (String) otherFixture.getUserData());
         } else if (otherFixture.getFilterData().categoryBits == Platformer.BIT_ENEMY) {
-            for (GameContactListener listener : listeners) {
-                listener.onEndEnemyContact((Entity) playerFixture.getBody().getUserData(), (Entity) otherFixture.getBody().getUserData(), playerFixture.getBody().getLinearVelocity().y < -2f);
-            }
+            fireEndEnemyContact((Entity) playerFixture.getBody().getUserData(), (Entity) otherFixture.getBody().getUserData(), playerFixture.getBody().getLinearVelocity().y < -2f);
+        }
+    }
+
+    // the fire methods notify the GameContactListeners. They are public to also be used by other physic backends (f.e. TilePhysicsWorld)
+
+    public void fireBeginGroundContact(final Entity entity, final String userData) {
+        for (GameContactListener listener : listeners) {
+            listener.onBeginGroundContact(entity, userData);
+        }
+    }
+
+    public void fireEndGroundContact(final Entity entity, final String userData) {
+        for (GameContactListener listener : listeners) {
+            listener.onEndGroundContact(entity, userData);
+        }
+    }
+
+    public void fireBeginObjectContact(final Entity player, final Entity object, final String objectUserData) {
+        for (GameContactListener listener : listeners) {
+            listener.onBeginObjectContact(player, object, objectUserData);
+        }
+    }
+
+    public void fireEndObjectContact(final Entity player, final Entity object, final String objectUserData) {
+        for (GameContactListener listener : listeners) {
+            listener.onEndObjectContact(player, object, objectUserData);
+        }
+    }
+
+    public void fireBeginEnemyContact(final Entity player, final Entity enemy, final boolean killEnemy) {
+        for (GameContactListener listener : listeners) {
+            listener.onBeginEnemyContact(player, enemy, killEnemy);
+        }
+    }
+
+    public void fireEndEnemyContact(final Entity player, final Entity enemy, final boolean killEnemy) {
+        for (GameContactListener listener : listeners) {
+            listener.onEndEnemyContact(player, enemy, killEnemy);
         }
     }
 
     @Override
     public void preSolve(final Contact contact, final Manifold oldManifold) {
+        if (passThroughPlayerFixtures.size == 0) {
+            return;
+        }
+
         final Fixture fixtureA = contact.getFixtureA();
         final Fixture fixtureB = contact.getFixtureB();
-        final Fixture playerFixture;
-        final Fixture groundFixture;
-
-        if ("body".equals(fixtureB.getUserData()) && fixtureA.getFilterData().categoryBits == Platformer.BIT_GROUND) {
-            playerFixture = fixtureB;
-            groundFixture = fixtureA;
-        } else if ("body".equals(fixtureA.getUserData()) && fixtureB.getFilterData().categoryBits == Platformer.BIT_GROUND) {
-            playerFixture = fixtureA;
-            groundFixture = fixtureB;
-        } else {
-            return;
+        for (int i = 0; i < passThroughPlayerFixtures.size; ++i) {
+            if (isContactPair(i, fixtureA, fixtureB)) {
+                // player is moving upwards through a one-way platform --> walk through it
+                // contacts get re-enabled by box2d every step and therefore this needs to be called each time
+                contact.setEnabled(false);
+                return;
+            }
         }
+    }
+
+    private boolean isContactPair(final int cacheIdx, final Fixture fixtureA, final Fixture fixtureB) {
+        final Fixture playerFixture = passThroughPlayerFixtures.get(cacheIdx);
+        final Fixture groundFixture = passThroughGroundFixtures.get(cacheIdx);
+        return (playerFixture == fixtureA && groundFixture == fixtureB) || (playerFixture == fixtureB && groundFixture == fixtureA);
+    }
 
+    private boolean isMovingThroughPlatform(final Contact contact, final Body playerBody, final Body groundBody) {
         final WorldManifold manifold = contact.getWorldManifold();
         final Vector2[] points = manifold.getPoints();
-        final Body playerBody = playerFixture.getBody();
-        final Body groundBody = groundFixture.getBody();
-        for (final Vector2 point : points) {
-            final Vector2 groundVelocity = groundBody.getLinearVelocityFromWorldPoint(point);
-            final Vector2 playerVelocity = playerBody.getLinearVelocityFromWorldPoint(point);
+        for (int i = 0; i < manifold.getNumberOfContactPoints(); ++i) {
+            final Vector2 groundVelocity = groundBody.getLinearVelocityFromWorldPoint(points[i]);
+            final Vector2 playerVelocity = playerBody.getLinearVelocityFromWorldPoint(points[i]);
             // check should actually be < 0 but if the player moves up a slope then the velocity becomes > 0 and a "stutter movement" is happening
             // --> value 5 is used to jump through platforms and to walk up slopes normally
             if (groundBody.getLocalVector(playerVelocity.sub(groundVelocity)).y <= 5) {
                 // point is moving into platform
-                return;
+                return false;
             }
         }
-
-        // player is moving upwards and a ground is over him --> walk through it
-        contact.setEnabled(false);
+        return true;
     }
 
     @Override
@@ -0,0 +1,145 @@
+package com.quillraven.platformer;
+/*
+ * Created by Quillraven on 08.07.2018.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2018 Quillraven
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import com.badlogic.gdx.physics.box2d.Body;
+import com.badlogic.gdx.physics.box2d.Contact;
+import com.badlogic.gdx.physics.box2d.World;
+import com.badlogic.gdx.utils.Array;
+
+/**
+ * Counters of a box2d world after a step like the amount of bodies per type, awake bodies, fixtures, broadphase proxies
+ * and contacts. Call {@link #update(World, float)} after a step to refresh them. The values are also reported to the
+ * {@link MetricsManager}.
+ * <br>
+ * An update traverses all bodies and contacts of the world and should therefore only be done occasionally and not
+ * after every step.
+ */
+public class WorldStatistics {
+    private final Array<Body> bodies;
+    private int staticBodies;
+    private int kinematicBodies;
+    private int dynamicBodies;
+    private int awakeBodies;
+    private int fixtures;
+    private int proxies;
+    private int contacts;
+    private int touchingContacts;
+    private float stepTime;
+
+    public WorldStatistics() {
+        this.bodies = new Array<>();
+    }
+
+    public void update(final World world, final float stepTime) {
+        this.stepTime = stepTime;
+        staticBodies = 0;
+        kinematicBodies = 0;
+        dynamicBodies = 0;
+        awakeBodies = 0;
+        world.getBodies(bodies);
+        for (final Body body : bodies) {
+            switch (body.getType()) {
+                case StaticBody:
+                    ++staticBodies;
+                    break;
+                case KinematicBody:
+                    ++kinematicBodies;
+                    break;
+                case DynamicBody:
+                    ++dynamicBodies;
+                    break;
+            }
+            if (body.isAwake()) {
+                ++awakeBodies;
+            }
+        }
+
+        fixtures = world.getFixtureCount();
+        proxies = world.getProxyCount();
+        contacts = world.getContactCount();
+        touchingContacts = 0;
+        for (final Contact contact : world.getContactList()) {
+            if (contact.isTouching()) {
+                ++touchingContacts;
+            }
+        }
+
+        final MetricsManager metrics = MetricsManager.getInstance();
+        metrics.setValue(MetricsManager.MetricType.WORLD_STATIC_BODIES, staticBodies);
+        metrics.setValue(MetricsManager.MetricType.WORLD_KINEMATIC_BODIES, kinematicBodies);
+        metrics.setValue(MetricsManager.MetricType.WORLD_DYNAMIC_BODIES, dynamicBodies);
+        metrics.setValue(MetricsManager.MetricType.WORLD_AWAKE_BODIES, awakeBodies);
+        metrics.setValue(MetricsManager.MetricType.WORLD_FIXTURES, fixtures);
+        metrics.setValue(MetricsManager.MetricType.WORLD_PROXIES, proxies);
+        metrics.setValue(MetricsManager.MetricType.WORLD_CONTACTS, contacts);
+        metrics.setValue(MetricsManager.MetricType.WORLD_TOUCHING_CONTACTS, touchingContacts);
+    }
+
+    public int getBodyCount() {
+        return staticBodies + kinematicBodies + dynamicBodies;
+    }
+
+    public int getStaticBodies() {
+        return staticBodies;
+    }
+
+    public int getKinematicBodies() {
+        return kinematicBodies;
+    }
+
+    public int getDynamicBodies() {
+        return dynamicBodies;
+    }
+
+    public int getAwakeBodies() {
+        return awakeBodies;
+    }
+
+    public int getFixtures() {
+        return fixtures;
+    }
+
+    public int getProxies() {
+        return proxies;
+    }
+
+    public int getContacts() {
+        return contacts;
+    }
+
+    public int getTouchingContacts() {
+        return touchingContacts;
+    }
+
+    public float getStepTime() {
+        return stepTime;
+    }
+
+    @Override
+    public String toString() {
+        return "bodies=" + getBodyCount() + " (static=" + staticBodies + ", kinematic=" + kinematicBodies + ", dynamic=" + dynamicBodies + ", awake=" + awakeBodies + ")"
+                + ", fixtures=" + fixtures + ", proxies=" + proxies + ", contacts=" + contacts + " (touching=" + touchingContacts + ")"
+                + ", stepTime=" + stepTime + "ms";
+    }
+}
@@ -0,0 +1,95 @@
+package com.quillraven.platformer.ecs;
+/*
+ * Created by Quillraven on 10.07.2018.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2018 Quillraven
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import com.badlogic.ashley.core.Entity;
+import com.badlogic.gdx.maps.MapProperties;
+import com.quillraven.platformer.Platformer;
+import com.quillraven.platformer.physics.PhysicsBody;
+import com.quillraven.platformer.physics.PhysicsWorld;
+import com.quillraven.platformer.ui.AnimationManager;
+
+import static com.quillraven.platformer.Platformer.PPM;
+
+/**
+ * Creates the bodies of the player, the enemies and the game objects in a {@link PhysicsWorld}. The sizes and speeds
+ * are used by the {@link EntityEngine} and by the headless simulation of the tools module.
+ */
+public final class EntityBodyFactory {
+    public static final float PLAYER_WIDTH = 44 / PPM;
+    public static final float PLAYER_HEIGHT = 68 / PPM;
+    public static final float PLAYER_MAX_SPEED = 6;
+    public static final float PLAYER_JUMP_SPEED = 22;
+
+    private EntityBodyFactory() {
+    }
+
+    /**
+     * @param x x coordinate of the center of the player in world units
+     * @param y y coordinate of the center of the player in world units
+     */
+    public static PhysicsBody createPlayerBody(final PhysicsWorld world, final Entity player, final float x, final float y) {
+        final PhysicsBody body = world.createBody(player, x, y, PLAYER_WIDTH, PLAYER_HEIGHT, 1, Platformer.BIT_PLAYER, (short) (Platformer.BIT_GROUND | Platformer.BIT_OBJECT | Platformer.BIT_ENEMY), "body");
+        world.createFootSensors(body, PLAYER_WIDTH, PLAYER_HEIGHT);
+        return body;
+    }
+
+    public static AnimationManager.AnimationType getEnemyAnimationType(final boolean isFly) {
+        return isFly ? AnimationManager.AnimationType.FLY_WALK : AnimationManager.AnimationType.SLIME_WALK;
+    }
+
+    // the hitbox of an enemy is 4 pixels smaller than its animation frame on each side
+    public static float getEnemyWidth(final boolean isFly) {
+        return (getEnemyAnimationType(isFly).getFrameWidth() - 8) / PPM;
+    }
+
+    public static float getEnemyHeight(final boolean isFly) {
+        return (getEnemyAnimationType(isFly).getFrameHeight() - 8) / PPM;
+    }
+
+    public static float getEnemyMaxSpeed(final boolean isFly) {
+        return isFly ? 2 : 0.5f;
+    }
+
+    /**
+     * Fly enemies are not affected by gravity.
+     *
+     * @param x x coordinate of the center of the enemy in world units
+     * @param y y coordinate of the center of the enemy in world units
+     */
+    public static PhysicsBody createEnemyBody(final PhysicsWorld world, final Entity enemy, final float x, final float y, final boolean isFly) {
+        return world.createBody(enemy, x, y, getEnemyWidth(isFly), getEnemyHeight(isFly), isFly ? 0 : 1, Platformer.BIT_ENEMY, (short) (Platformer.BIT_GROUND | Platformer.BIT_PLAYER), "enemyHitbox");
+    }
+
+    /**
+     * @param properties properties of the tile map object of the game object. The sensor covers the tile of the object
+     *                   and reports the "userData" property for contacts
+     */
+    public static PhysicsBody createGameObjectBody(final PhysicsWorld world, final Entity gameObj, final MapProperties properties) {
+        final float width = properties.get("width", Float.class) / PPM;
+        final float height = properties.get("height", Float.class) / PPM;
+        final float centerX = properties.get("x", Float.class) / PPM + width * 0.5f;
+        final float centerY = properties.get("y", Float.class) / PPM + height * 0.5f;
+        return world.createSensor(gameObj, centerX, centerY, width, height, Platformer.BIT_OBJECT, properties.get("userData", String.class));
+    }
+}
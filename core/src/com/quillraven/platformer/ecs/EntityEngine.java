@@ -10,14 +10,9 @@ import com.badlogic.gdx.graphics.Camera;
 import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.badlogic.gdx.maps.tiled.objects.TiledMapTileMapObject;
-import com.badlogic.gdx.math.Vector2;
-import com.badlogic.gdx.physics.box2d.Body;
-import com.badlogic.gdx.physics.box2d.BodyDef;
-import com.badlogic.gdx.physics.box2d.FixtureDef;
-import com.badlogic.gdx.physics.box2d.PolygonShape;
 import com.badlogic.gdx.physics.box2d.World;
 import com.badlogic.gdx.utils.Array;
-import com.quillraven.platformer.Platformer;
+import com.quillraven.platformer.AnimationClock;
 import com.quillraven.platformer.ecs.component.AnimationComponent;
 import com.quillraven.platformer.ecs.component.Box2DComponent;
 import com.quillraven.platformer.ecs.component.EnemyComponent;
@@ -34,10 +29,14 @@ import com.quillraven.platformer.ecs.system.GameProgressSystem;
 import com.quillraven.platformer.ecs.system.GameRenderSystem;
 import com.quillraven.platformer.ecs.system.JumpSystem;
 import com.quillraven.platformer.ecs.system.MoveSystem;
+import com.quillraven.platformer.ecs.system.RegionActivationSystem;
 import com.quillraven.platformer.ecs.system.RenderSystem;
+import com.quillraven.platformer.light.LightLOD;
+import com.quillraven.platformer.light.SunLight;
+import com.quillraven.platformer.physics.Box2DPhysicsBody;
+import com.quillraven.platformer.physics.Box2DPhysicsWorld;
 import com.quillraven.platformer.ui.AnimationManager;
 
-import box2dLight.PointLight;
 import box2dLight.RayHandler;
 
 import static com.quillraven.platformer.Platformer.PPM;
@@ -70,9 +69,9 @@ import static com.quillraven.platformer.Platformer.PPM;
  */
 public class EntityEngine extends PooledEngine {
     private static final String TAG = EntityEngine.class.getSimpleName();
+    // rays of the entity lights per level of detail
+    private static final int[] LIGHT_LOD_RAYS = {128, 64, 32};
 
-    private final BodyDef bodyDef;
-    private final FixtureDef fixtureDef;
     private final ComponentMapper<PlayerComponent> playerCmpMapper;
     private final ComponentMapper<Box2DComponent> b2dCmpMapper;
     private final Family b2dFamily;
@@ -81,7 +80,7 @@ public class EntityEngine extends PooledEngine {
     private final Family playerFamily;
     private final Array<RenderSystem> renderSystems;
 
-    public EntityEngine(final World world, final RayHandler rayHandler, final SpriteBatch spriteBatch) {
+    public EntityEngine(final World world, final RayHandler rayHandler, final SunLight sunLight, final SpriteBatch spriteBatch) {
         super(20, 200, 10, 100);
 
         this.renderSystems = new Array<>();
@@ -93,8 +92,10 @@ public class EntityEngine extends PooledEngine {
         this.playerCmpMapper = ComponentMapper.getFor(PlayerComponent.class);
 
         // add systems
-        // movement
         b2dCmpMapper = ComponentMapper.getFor(Box2DComponent.class);
+        // simulation regions
+        this.addSystem(new RegionActivationSystem(b2dCmpMapper));
+        // movement
         final ComponentMapper<MoveComponent> moveCmpMapper = ComponentMapper.getFor(MoveComponent.class);
         this.addSystem(new MoveSystem(b2dCmpMapper, moveCmpMapper));
         // jump
@@ -110,12 +111,8 @@ public class EntityEngine extends PooledEngine {
         // animation system
         this.addSystem(new AnimationSystem());
         // render systems
-        renderSystems.add(new GameRenderSystem(this, spriteBatch, rayHandler, b2dCmpMapper, aniCmpMapper));
+        renderSystems.add(new GameRenderSystem(this, world, spriteBatch, rayHandler, sunLight, b2dCmpMapper, aniCmpMapper));
 //        renderSystems.add(new Box2DDebugRenderSystem(this, world));
-
-        // create box2d definitions
-        this.bodyDef = new BodyDef();
-        this.fixtureDef = new FixtureDef();
     }
 
     public Entity getPlayer() {
@@ -126,67 +123,33 @@ public class EntityEngine extends PooledEngine {
         return playerEntities == null || playerEntities.size() < 1 || playerEntities.first().isScheduledForRemoval() ? null : playerEntities.first();
     }
 
-    public Entity createPlayer(final World world, final RayHandler rayHandler, final float x, final float y) {
+    public Entity createPlayer(final Box2DPhysicsWorld physicsWorld, final RayHandler rayHandler, final float x, final float y) {
         final Entity player = this.createEntity();
-        final int width = 44;
-        final int height = 68;
-        final short categoryBits = Platformer.BIT_PLAYER;
-        final short maskBits = Platformer.BIT_GROUND | Platformer.BIT_OBJECT | Platformer.BIT_ENEMY;
 
         // box2d component
         final Box2DComponent b2dCmp = this.createComponent(Box2DComponent.class);
-        b2dCmp.width = width / PPM;
-        b2dCmp.height = height / PPM;
-        // body
-        bodyDef.gravityScale = 1;
-        bodyDef.position.set(x / PPM, y / PPM);
-        bodyDef.type = BodyDef.BodyType.DynamicBody;
-        b2dCmp.body = world.createBody(bodyDef);
+        b2dCmp.width = EntityBodyFactory.PLAYER_WIDTH;
+        b2dCmp.height = EntityBodyFactory.PLAYER_HEIGHT;
+        b2dCmp.body = EntityBodyFactory.createPlayerBody(physicsWorld, player, x / PPM, y / PPM);
         b2dCmp.positionBeforeUpdate.set(b2dCmp.body.getPosition());
-        b2dCmp.body.setUserData(player);
-        // body fixture
-        fixtureDef.isSensor = false;
-        PolygonShape shape = new PolygonShape();
-        shape.setAsBox(width * 0.5f / PPM, height * 0.5f / PPM);
-        fixtureDef.shape = shape;
-        fixtureDef.filter.maskBits = maskBits;
-        fixtureDef.filter.categoryBits = categoryBits;
-        b2dCmp.body.createFixture(fixtureDef).setUserData("body");
-        shape.dispose();
         player.add(b2dCmp);
-        // foot sensor
-        shape = new PolygonShape();
-        shape.setAsBox(width * 0.3f / PPM, 15f / PPM, new Vector2(-width * 0.2f / PPM, -height * 0.5f / PPM), 0);
-        fixtureDef.shape = shape;
-        fixtureDef.isSensor = true;
-        fixtureDef.filter.maskBits = Platformer.BIT_GROUND;
-        fixtureDef.filter.categoryBits = categoryBits;
-        b2dCmp.body.createFixture(fixtureDef).setUserData("foot-left");
-        shape.dispose();
-        shape = new PolygonShape();
-        shape.setAsBox(width * 0.3f / PPM, 15f / PPM, new Vector2(width * 0.2f / PPM, -height * 0.5f / PPM), 0);
-        fixtureDef.shape = shape;
-        fixtureDef.isSensor = true;
-        fixtureDef.filter.maskBits = Platformer.BIT_GROUND;
-        fixtureDef.filter.categoryBits = categoryBits;
-        b2dCmp.body.createFixture(fixtureDef).setUserData("foot-right");
-        shape.dispose();
 
         // jump component
         final JumpComponent jumpCmp = this.createComponent(JumpComponent.class);
-        jumpCmp.jumpSpeed = 22;
+        jumpCmp.jumpSpeed = EntityBodyFactory.PLAYER_JUMP_SPEED;
         player.add(jumpCmp);
 
         // move component
         final MoveComponent moveCmp = this.createComponent(MoveComponent.class);
-        moveCmp.maxSpeed = 6;
+        moveCmp.maxSpeed = EntityBodyFactory.PLAYER_MAX_SPEED;
         player.add(moveCmp);
 
         // animation component
         final AnimationComponent aniCmp = this.createComponent(AnimationComponent.class);
         aniCmp.aniType = AnimationManager.AnimationType.PLAYER_WALK;
-        aniCmp.width = (width + 4) / PPM;
-        aniCmp.height = (height + 4) / PPM;
+        aniCmp.animationStartTime = AnimationClock.getInstance().getTimeNanos();
+        aniCmp.width = b2dCmp.width + 4 / PPM;
+        aniCmp.height = b2dCmp.height + 4 / PPM;
         player.add(aniCmp);
 
         // player component
@@ -195,20 +158,19 @@ public class EntityEngine extends PooledEngine {
         playerCmp.currentLife = playerCmp.maxLife;
         player.add(playerCmp);
 
-        b2dCmp.light = new PointLight(rayHandler, 128, new Color(0.2f, 1, 0.2f, 0.7f), 2f, 0, 0);
-        b2dCmp.light.attachToBody(b2dCmp.body);
+        // lights are attached to the box2d body (refer to Box2DPhysicsWorld)
+        b2dCmp.light = new LightLOD(rayHandler, LIGHT_LOD_RAYS, new Color(0.2f, 1, 0.2f, 0.7f), 2f, ((Box2DPhysicsBody) b2dCmp.body).getBody(), 0, 0);
 
         this.addEntity(player);
         return player;
     }
 
-    public Entity createGameObj(final Body body, final TiledMapTileMapObject mapObj) {
+    public Entity createGameObj(final Box2DPhysicsWorld physicsWorld, final TiledMapTileMapObject mapObj) {
         final Entity gameObj = this.createEntity();
 
         final Box2DComponent b2dCmp = this.createComponent(Box2DComponent.class);
-        b2dCmp.body = body;
-        b2dCmp.positionBeforeUpdate.set(body.getPosition());
-        b2dCmp.body.setUserData(gameObj);
+        b2dCmp.body = EntityBodyFactory.createGameObjectBody(physicsWorld, gameObj, mapObj.getProperties());
+        b2dCmp.positionBeforeUpdate.set(b2dCmp.body.getPosition());
         gameObj.add(b2dCmp);
 
         final GameObjectComponent gameObjCmp = this.createComponent(GameObjectComponent.class);
@@ -231,47 +193,29 @@ public class EntityEngine extends PooledEngine {
         }
     }
 
-    public void createEnemy(final World world, final RayHandler rayHandler, final float x, final float y, final String enemyType) {
+    public void createEnemy(final Box2DPhysicsWorld physicsWorld, final RayHandler rayHandler, final float x, final float y, final String enemyType) {
         final boolean isFly = "fly".equals(enemyType);
         final Entity enemy = this.createEntity();
-        final short categoryBits = Platformer.BIT_ENEMY;
-        final short maskBits = Platformer.BIT_GROUND | Platformer.BIT_PLAYER;
-        final AnimationManager.AnimationType aniType = isFly ? AnimationManager.AnimationType.FLY_WALK : AnimationManager.AnimationType.SLIME_WALK;
-        final int width = aniType.getFrameWidth() - 8;
-        final int height = aniType.getFrameHeight() - 8;
 
         // box2d component
         final Box2DComponent b2dCmp = this.createComponent(Box2DComponent.class);
-        b2dCmp.width = width / PPM;
-        b2dCmp.height = height / PPM;
-        // body
-        bodyDef.position.set(x, y);
-        bodyDef.type = BodyDef.BodyType.DynamicBody;
-        bodyDef.gravityScale = isFly ? 0 : 1;
-        b2dCmp.body = world.createBody(bodyDef);
+        b2dCmp.width = EntityBodyFactory.getEnemyWidth(isFly);
+        b2dCmp.height = EntityBodyFactory.getEnemyHeight(isFly);
+        b2dCmp.body = EntityBodyFactory.createEnemyBody(physicsWorld, enemy, x, y, isFly);
         b2dCmp.positionBeforeUpdate.set(b2dCmp.body.getPosition());
-        b2dCmp.body.setUserData(enemy);
-        // body fixture
-        fixtureDef.isSensor = false;
-        PolygonShape shape = new PolygonShape();
-        shape.setAsBox(width * 0.5f / PPM, height * 0.5f / PPM);
-        fixtureDef.shape = shape;
-        fixtureDef.filter.maskBits = maskBits;
-        fixtureDef.filter.categoryBits = categoryBits;
-        b2dCmp.body.createFixture(fixtureDef).setUserData("enemyHitbox");
-        shape.dispose();
         enemy.add(b2dCmp);
 
         // move component
         final MoveComponent moveCmp = this.createComponent(MoveComponent.class);
-        moveCmp.maxSpeed = isFly ? 2 : 0.5f;
+        moveCmp.maxSpeed = EntityBodyFactory.getEnemyMaxSpeed(isFly);
         enemy.add(moveCmp);
 
         // animation component
         final AnimationComponent aniCmp = this.createComponent(AnimationComponent.class);
-        aniCmp.aniType = aniType;
-        aniCmp.width = (width + 8) / PPM;
-        aniCmp.height = (height + 8) / PPM;
+        aniCmp.aniType = EntityBodyFactory.getEnemyAnimationType(isFly);
+        aniCmp.animationStartTime = AnimationClock.getInstance().getTimeNanos();
+        aniCmp.width = b2dCmp.width + 8 / PPM;
+        aniCmp.height = b2dCmp.height + 8 / PPM;
         aniCmp.offsetY = isFly ? 0.1f : 0;
         enemy.add(aniCmp);
 
@@ -280,8 +224,7 @@ public class EntityEngine extends PooledEngine {
         enemyCmp.spawnY = y;
         enemy.add(enemyCmp);
 
-        b2dCmp.light = new PointLight(rayHandler, 128, new Color(1, 0, 0, 1f), 2f, 0, 0);
-        ((PointLight) b2dCmp.light).attachToBody(b2dCmp.body, 0f, aniCmp.offsetY);
+        b2dCmp.light = new LightLOD(rayHandler, LIGHT_LOD_RAYS, new Color(1, 0, 0, 1f), 2f, ((Box2DPhysicsBody) b2dCmp.body).getBody(), 0f, aniCmp.offsetY);
 
         this.addEntity(enemy);
     }
@@ -31,7 +31,8 @@ import com.quillraven.platformer.ui.AnimationManager;
  */
 public class AnimationComponent implements Component, Pool.Poolable {
     public AnimationManager.AnimationType aniType;
-    public float animationTime;
+    // AnimationClock time in nanoseconds when the current animation was started
+    public long animationStartTime;
     public float width;
     public float height;
     public float offsetY;
@@ -41,7 +42,7 @@ public class AnimationComponent implements Component, Pool.Poolable {
     public void reset() {
         this.offsetY = 0;
         this.aniType = null;
-        this.animationTime = 0;
+        this.animationStartTime = 0;
         this.width = 0;
         this.height = 0;
         this.flipHoricontal = false;
@@ -3,12 +3,11 @@ package com.quillraven.platformer.ecs.component;
 import com.badlogic.ashley.core.Component;
 import com.badlogic.ashley.core.Entity;
 import com.badlogic.gdx.math.Vector2;
-import com.badlogic.gdx.physics.box2d.Body;
-import com.badlogic.gdx.physics.box2d.Fixture;
 import com.badlogic.gdx.utils.Array;
 import com.badlogic.gdx.utils.Pool;
+import com.quillraven.platformer.light.LightLOD;
+import com.quillraven.platformer.physics.PhysicsBody;
 
-import box2dLight.Light;
 
 /*
  * Created by Quillraven on 06.06.2018.
@@ -38,8 +37,8 @@ import box2dLight.Light;
  */
 public class Box2DComponent implements Component, Pool.Poolable {
     public final Array<Entity> contacts = new Array<>();
-    public Body body;
-    public Light light;
+    public PhysicsBody body;
+    public LightLOD light;
     public int numGroundContactsLeft;
     public int numGroundContactsRight;
     public final Vector2 positionBeforeUpdate = new Vector2(0, 0);
@@ -53,11 +52,7 @@ public class Box2DComponent implements Component, Pool.Poolable {
             light = null;
         }
         if (body != null) {
-            body.setUserData(null);
-            for (final Fixture fix : body.getFixtureList()) {
-                fix.setUserData(null);
-            }
-            body.getWorld().destroyBody(body);
+            body.destroy();
             body = null;
         }
         numGroundContactsLeft = 0;
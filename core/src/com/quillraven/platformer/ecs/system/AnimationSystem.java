@@ -27,6 +27,7 @@ import com.badlogic.ashley.core.Entity;
 import com.badlogic.ashley.core.Family;
 import com.badlogic.ashley.systems.IteratingSystem;
 import com.badlogic.gdx.math.Vector2;
+import com.quillraven.platformer.AnimationClock;
 import com.quillraven.platformer.ecs.component.AnimationComponent;
 import com.quillraven.platformer.ecs.component.Box2DComponent;
 import com.quillraven.platformer.ecs.component.PlayerComponent;
@@ -55,7 +56,6 @@ public class AnimationSystem extends IteratingSystem {
         final PlayerComponent playerCmp = playerCmpMapper.get(entity);
         final Vector2 velocity = b2dCmp.body.getLinearVelocity();
 
-        aniCmp.animationTime += deltaTime;
         if (playerCmp != null) {
             if (velocity.y >= 5 || velocity.y < -5) {
                 changeAnimation(aniCmp, AnimationManager.AnimationType.PLAYER_JUMP);
@@ -70,7 +70,7 @@ public class AnimationSystem extends IteratingSystem {
 
     private void changeAnimation(final AnimationComponent aniCmp, final AnimationManager.AnimationType newAniType) {
         if (aniCmp.aniType != newAniType) {
-            aniCmp.animationTime = 0;
+            aniCmp.animationStartTime = AnimationClock.getInstance().getTimeNanos();
         }
         aniCmp.aniType = newAniType;
     }
@@ -29,21 +29,31 @@ import com.badlogic.ashley.utils.ImmutableArray;
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.graphics.Camera;
 import com.badlogic.gdx.graphics.Color;
-import com.badlogic.gdx.graphics.GL20;
 import com.badlogic.gdx.graphics.OrthographicCamera;
 import com.badlogic.gdx.graphics.g2d.Animation;
 import com.badlogic.gdx.graphics.g2d.ParticleEffectPool;
+import com.badlogic.gdx.graphics.g2d.ParticleEmitter;
 import com.badlogic.gdx.graphics.g2d.Sprite;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.profiling.GLProfiler;
 import com.badlogic.gdx.maps.tiled.TiledMap;
+import com.badlogic.gdx.math.Rectangle;
 import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.physics.box2d.World;
 import com.badlogic.gdx.utils.Array;
+import com.quillraven.platformer.AnimationClock;
+import com.quillraven.platformer.MetricsManager;
 import com.quillraven.platformer.ParticleEffectManager;
 import com.quillraven.platformer.ecs.EntityEngine;
 import com.quillraven.platformer.ecs.component.AnimationComponent;
 import com.quillraven.platformer.ecs.component.Box2DComponent;
+import com.quillraven.platformer.light.LightLODController;
+import com.quillraven.platformer.light.LightRayCaster;
+import com.quillraven.platformer.light.StaticLightGeometry;
+import com.quillraven.platformer.light.SunLight;
 import com.quillraven.platformer.map.Map;
 import com.quillraven.platformer.map.MapManager;
+import com.quillraven.platformer.map.MapRenderPlan;
 import com.quillraven.platformer.map.MapRenderer;
 import com.quillraven.platformer.ui.AnimationManager;
 
@@ -56,30 +66,73 @@ import static com.quillraven.platformer.Platformer.PPM;
  */
 public class GameRenderSystem extends RenderSystem implements MapManager.MapListener {
     private final static String TAG = GameRenderSystem.class.getSimpleName();
+    private final static float WHITE_BITS = Color.WHITE.toFloatBits();
+    // system property to select the render mode of the map, e.g. -Dplatformer.mapRenderMode=SHADER
+    private final static String MAP_RENDER_MODE_PROPERTY = "platformer.mapRenderMode";
+    // system property to count the texture binds of the world render pass, e.g. -Dplatformer.glProfiler=true
+    private final static String GL_PROFILER_PROPERTY = "platformer.glProfiler";
     private final MapRenderer mapRenderer;
+    private MapRenderer.RenderMode mapRenderMode;
     private final Family renderFamily;
     private final ComponentMapper<Box2DComponent> b2dCmpMapper;
     private final ComponentMapper<AnimationComponent> aniCmpMapper;
     private final RayHandler rayHandler;
+    private final SunLight sunLight;
     private float mapWidth;
     private float mapHeight;
-    private int[] bgdLayerIdx;
-    private int[] fgdLayerIdx;
-    private int[] cloudIdx;
-    private int[] groundIdx;
+    private MapRenderPlan renderPlan;
+    // additional world units around the camera that are still considered visible
+    private float cullingMargin;
+    private final Rectangle cullingBounds;
+    private final RenderQueue renderQueue;
+    private final Family lightFamily;
+    private final LightLODController lightLODController;
+    private final World world;
+    private final StaticLightGeometry lightGeometry;
+    private final LightRayCaster lightRayCaster;
+    // counts the texture binds of the world render pass; null if not enabled because it wraps every GL call
+    private final GLProfiler glProfiler;
 
-    public GameRenderSystem(final EntityEngine engine, final SpriteBatch spriteBatch, final RayHandler rayHandler, final ComponentMapper<Box2DComponent> b2dCmpMapper, final ComponentMapper<AnimationComponent> aniCmpMapper) {
+    public GameRenderSystem(final EntityEngine engine, final World world, final SpriteBatch spriteBatch, final RayHandler rayHandler, final SunLight sunLight, final ComponentMapper<Box2DComponent> b2dCmpMapper, final ComponentMapper<AnimationComponent> aniCmpMapper) {
         super(engine);
         this.rayHandler = rayHandler;
+        this.sunLight = sunLight;
         MapManager.getInstance().addMapListener(this);
         mapRenderer = new MapRenderer(spriteBatch);
+        this.mapRenderMode = MapRenderer.RenderMode.valueOf(System.getProperty(MAP_RENDER_MODE_PROPERTY, MapRenderer.RenderMode.CACHED.name()));
+        // the shader mode is only used once it renders the same pixels as the cached mode (refer to onMapChanged)
+        mapRenderer.setRenderMode(mapRenderMode == MapRenderer.RenderMode.SHADER ? MapRenderer.RenderMode.CACHED : mapRenderMode);
         this.renderFamily = Family.all(AnimationComponent.class, Box2DComponent.class).get();
         this.b2dCmpMapper = b2dCmpMapper;
         this.aniCmpMapper = aniCmpMapper;
+        this.cullingMargin = 1f;
+        this.cullingBounds = new Rectangle();
+        this.renderQueue = new RenderQueue();
+        this.lightFamily = Family.all(Box2DComponent.class).get();
+        // 512 rays for all entity lights; one level of detail less every 4 world units
+        this.lightLODController = new LightLODController(512, 4f);
+        this.world = world;
+        this.lightGeometry = new StaticLightGeometry();
+        this.lightRayCaster = new LightRayCaster(lightGeometry);
+        if (Boolean.getBoolean(GL_PROFILER_PROPERTY)) {
+            this.glProfiler = new GLProfiler(Gdx.graphics);
+            glProfiler.enable();
+        } else {
+            this.glProfiler = null;
+        }
+    }
+
+    public void setCullingMargin(final float cullingMargin) {
+        this.cullingMargin = cullingMargin;
     }
 
     @Override
     public void onRender(final SpriteBatch spriteBatch, final Camera camera, final float alpha) {
+        MetricsManager.getInstance().setValue(MetricsManager.MetricType.MAP_CHUNKS_DRAWN, 0);
+        MetricsManager.getInstance().setValue(MetricsManager.MetricType.MAP_CELLS_OCCLUDED, 0);
+        if (glProfiler != null) {
+            glProfiler.reset();
+        }
         final ImmutableArray<Entity> animatedEntities = engine.getEntitiesFor(renderFamily);
 
         final Entity player = engine.getPlayer();
@@ -96,22 +149,18 @@ public class GameRenderSystem extends RenderSystem implements MapManager.MapList
             camera.update();
         }
 
+        final float cullWidth = camera.viewportWidth * ((OrthographicCamera) camera).zoom + cullingMargin * 2;
+        final float cullHeight = camera.viewportHeight * ((OrthographicCamera) camera).zoom + cullingMargin * 2;
+        cullingBounds.set(camera.position.x - cullWidth * 0.5f, camera.position.y - cullHeight * 0.5f, cullWidth, cullHeight);
+        int entitiesDrawn = 0;
+        int entitiesCulled = 0;
+
+        final int totalRenderCallsBefore = spriteBatch.totalRenderCalls;
+        spriteBatch.maxSpritesInBatch = 0;
         spriteBatch.begin();
         if (mapRenderer.getMap() != null) {
-            mapRenderer.setView((OrthographicCamera) camera);
-            mapRenderer.render(bgdLayerIdx);
-
-            // paralax map effect with clouds
-            final float camX = camera.position.x;
-            camera.position.x *= 0.7f;
-            camera.update();
-            mapRenderer.setView((OrthographicCamera) camera);
-            mapRenderer.render(cloudIdx);
-
-            camera.position.x = camX;
-            camera.update();
-            mapRenderer.setView((OrthographicCamera) camera);
-            mapRenderer.render(groundIdx);
+            renderPlan.renderBackground(mapRenderer, (OrthographicCamera) camera);
+            spriteBatch.setProjectionMatrix(camera.combined);
         }
 
         for (final Entity entity : animatedEntities) {
@@ -124,41 +173,88 @@ public class GameRenderSystem extends RenderSystem implements MapManager.MapList
             final float x = (position.x * alpha + b2dCmp.positionBeforeUpdate.x * invertAlpha) - (b2dCmp.width * 0.5f);
             final float y = (position.y * alpha + b2dCmp.positionBeforeUpdate.y * invertAlpha) - (b2dCmp.height * 0.5f);
 
+            // the sprite might be rotated and therefore the sum of width and height is used as size of the bounding box
+            final float size = aniCmp.width + aniCmp.height;
+            final float centerX = x + b2dCmp.width * 0.5f;
+            final float centerY = y + aniCmp.offsetY + aniCmp.height * 0.5f;
+            if (!overlapsCullingBounds(centerX - size * 0.5f, centerY - size * 0.5f, size, size)) {
+                ++entitiesCulled;
+                continue;
+            }
+            ++entitiesDrawn;
+
             final Animation<Sprite> animation = AnimationManager.getInstance().getAnimation(aniCmp.aniType);
-            final Sprite frame = animation.getKeyFrame(aniCmp.animationTime, true);
-            frame.setColor(Color.WHITE);
-            frame.setFlip(aniCmp.flipHoricontal, false);
-            frame.setOriginCenter();
+            final Sprite frame = animation.getKeyFrame(AnimationClock.getInstance().getSecondsSince(aniCmp.animationStartTime), true);
+            final float rotation;
             if (b2dCmp.body.getLinearVelocity().y >= 5) {
                 // jumping
-                frame.setRotation(0);
+                rotation = 0;
             } else {
-                frame.setRotation(b2dCmp.numGroundContactsLeft == 0 && b2dCmp.numGroundContactsRight > 0 ? 40 : b2dCmp.numGroundContactsLeft > 0 && b2dCmp.numGroundContactsRight == 0 ? 320 : 0);
+                rotation = b2dCmp.numGroundContactsLeft == 0 && b2dCmp.numGroundContactsRight > 0 ? 40 : b2dCmp.numGroundContactsLeft > 0 && b2dCmp.numGroundContactsRight == 0 ? 320 : 0;
             }
-            frame.setBounds(x - (aniCmp.width - b2dCmp.width) * 0.5f, frame.getRotation() == 0 ? y - 2f / PPM + aniCmp.offsetY : y - b2dCmp.height * 0.2f + aniCmp.offsetY, aniCmp.width, aniCmp.height);
-
-            spriteBatch.draw(frame.getTexture(), frame.getVertices(), 0, 20);
+            // the frame is shared between all entities of the same animation and is therefore never modified
+            SpriteEmitter.emit(renderQueue.submitQuad(RenderQueue.LAYER_ENTITIES, frame.getTexture()), 0, frame,
+                    x - (aniCmp.width - b2dCmp.width) * 0.5f, rotation == 0 ? y - 2f / PPM + aniCmp.offsetY : y - b2dCmp.height * 0.2f + aniCmp.offsetY,
+                    aniCmp.width, aniCmp.height, rotation, aniCmp.flipHoricontal, WHITE_BITS);
         }
+        renderQueue.flush(spriteBatch, RenderQueue.LAYER_ENTITIES);
 
         if (mapRenderer.getMap() != null) {
-            mapRenderer.render(fgdLayerIdx);
+            renderPlan.renderForeground(mapRenderer, (OrthographicCamera) camera);
+            spriteBatch.setProjectionMatrix(camera.combined);
         }
 
         // render particle effects
         final Array<ParticleEffectPool.PooledEffect> effects = ParticleEffectManager.getInstance().getEffects();
-        for (int i = effects.size - 1; i >= 0; --i) {
+        int particlesDrawn = 0;
+        int particlesCulled = 0;
+        for (int i = 0; i < effects.size; ++i) {
             final ParticleEffectPool.PooledEffect effect = effects.get(i);
-            effect.draw(spriteBatch, Gdx.graphics.getDeltaTime());
-            if (effect.isComplete()) {
-                effect.free();
-                effects.removeIndex(i);
+            // use the emitter position instead of the bounding box of the effect because that one is calculated over all particles
+            final ParticleEmitter emitter = effect.getEmitters().first();
+            if (cullingBounds.contains(emitter.getX(), emitter.getY())) {
+                renderQueue.submit(RenderQueue.LAYER_EFFECTS, effect);
+                ++particlesDrawn;
+            } else {
+                ++particlesCulled;
             }
         }
-        spriteBatch.setBlendFunction(GL20.GL_SRC_ALPHA, GL20.GL_ONE_MINUS_SRC_ALPHA);
+        renderQueue.flush(spriteBatch, RenderQueue.LAYER_EFFECTS);
         spriteBatch.end();
 
-        rayHandler.setCombinedMatrix((OrthographicCamera) camera);
-        rayHandler.updateAndRender();
+        final MetricsManager metrics = MetricsManager.getInstance();
+        metrics.setValue(MetricsManager.MetricType.RENDER_ENTITIES_DRAWN, entitiesDrawn);
+        metrics.setValue(MetricsManager.MetricType.RENDER_ENTITIES_CULLED, entitiesCulled);
+        metrics.setValue(MetricsManager.MetricType.RENDER_PARTICLES_DRAWN, particlesDrawn);
+        metrics.setValue(MetricsManager.MetricType.RENDER_PARTICLES_CULLED, particlesCulled);
+        // renderCalls of the batch are reset with every begin call which also happens for cached map layers. Therefore,
+        // the render calls of the frame are calculated with the total render calls of the batch
+        metrics.setValue(MetricsManager.MetricType.RENDER_CALLS, spriteBatch.totalRenderCalls - totalRenderCallsBefore);
+        metrics.setValue(MetricsManager.MetricType.RENDER_TOTAL_CALLS, spriteBatch.totalRenderCalls);
+        metrics.setValue(MetricsManager.MetricType.RENDER_MAX_SPRITES_IN_BATCH, spriteBatch.maxSpritesInBatch);
+
+        final ImmutableArray<Entity> lightEntities = engine.getEntitiesFor(lightFamily);
+        lightLODController.update(lightEntities, b2dCmpMapper, (OrthographicCamera) camera);
+        // player and enemies block the light of each other; game objects have no size and are ignored
+        lightRayCaster.clearOccluders();
+        for (final Entity entity : lightEntities) {
+            final Box2DComponent b2dCmp = b2dCmpMapper.get(entity);
+            if (b2dCmp.width > 0) {
+                final Vector2 position = b2dCmp.body.getPosition();
+                final float halfW = b2dCmp.width * 0.5f;
+                final float halfH = b2dCmp.height * 0.5f;
+                lightRayCaster.addOccluder(position.x - halfW, position.y - halfH, position.x + halfW, position.y + halfH);
+            }
+        }
+        lightRayCaster.cast(lightLODController.getActiveLights());
+        sunLight.render(rayHandler, spriteBatch, (OrthographicCamera) camera);
+        if (glProfiler != null) {
+            MetricsManager.getInstance().setValue(MetricsManager.MetricType.TEXTURE_BINDS, glProfiler.getTextureBindings());
+        }
+    }
+
+    private boolean overlapsCullingBounds(final float x, final float y, final float width, final float height) {
+        return x < cullingBounds.x + cullingBounds.width && x + width > cullingBounds.x && y < cullingBounds.y + cullingBounds.height && y + height > cullingBounds.y;
     }
 
     @Override
@@ -166,27 +262,27 @@ public class GameRenderSystem extends RenderSystem implements MapManager.MapList
         Gdx.app.debug(TAG, "Changing map for MapRenderer: " + map.getMapType());
         mapWidth = map.getWidth();
         mapHeight = map.getHeight();
-        bgdLayerIdx = new int[map.getBackgroundLayerIndex().length];
-        for (int i = 0; i < map.getBackgroundLayerIndex().length; ++i) {
-            bgdLayerIdx[i] = map.getBackgroundLayerIndex()[i];
-        }
-        fgdLayerIdx = new int[map.getForegroundLayerIndex().length];
-        for (int i = 0; i < map.getForegroundLayerIndex().length; ++i) {
-            fgdLayerIdx[i] = map.getForegroundLayerIndex()[i];
-        }
-        cloudIdx = new int[map.getCloudsIdx().length];
-        for (int i = 0; i < map.getCloudsIdx().length; ++i) {
-            cloudIdx[i] = map.getCloudsIdx()[i];
-        }
-        groundIdx = new int[map.getGroundIdx().length];
-        for (int i = 0; i < map.getGroundIdx().length; ++i) {
-            groundIdx[i] = map.getGroundIdx()[i];
-        }
+        renderPlan = map.getRenderPlan();
+        mapRenderer.setTileOcclusion(map.getTileOcclusion());
         mapRenderer.setMap(tiledMap);
+        if (mapRenderMode == MapRenderer.RenderMode.SHADER) {
+            if (mapRenderer.verifyRenderMode(MapRenderer.RenderMode.SHADER) == 0) {
+                mapRenderer.setRenderMode(MapRenderer.RenderMode.SHADER);
+            } else {
+                Gdx.app.error(TAG, "Shader render mode does not render the same pixels as the cached mode. Using cached mode instead");
+                mapRenderMode = MapRenderer.RenderMode.CACHED;
+                mapRenderer.setRenderMode(MapRenderer.RenderMode.CACHED);
+            }
+        }
+        lightGeometry.build(world);
     }
 
     @Override
     public void onDispose() {
         mapRenderer.dispose();
+        lightRayCaster.dispose();
+        if (glProfiler != null) {
+            glProfiler.disable();
+        }
     }
 }
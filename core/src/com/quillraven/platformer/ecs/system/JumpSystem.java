@@ -66,7 +66,7 @@ public class JumpSystem extends IteratingSystem implements WorldContactManager.G
             // impulse = 5 - velocity.x * mass <-- the - velocity.x will adjust the impulse so that the result velocity.x will be 5
             b2dCmp.body.applyLinearImpulse(0, (jumpCmp.jumpSpeed - b2dCmp.body.getLinearVelocity().y) * b2dCmp.body.getMass(), worldCenter.x, worldCenter.y, true);
             SoundManager.getInstance().playSound(SoundManager.SoundType.SFX_JUMP);
-            ParticleEffectManager.getInstance().spawnDustEffect(b2dCmp.body.getPosition().x, b2dCmp.body.getPosition().y - b2dCmp.height * 0.5f);
+            ParticleEffectManager.getInstance().spawnEffect(ParticleEffectManager.EffectType.DUST, b2dCmp.body.getPosition().x, b2dCmp.body.getPosition().y - b2dCmp.height * 0.5f);
         }
 
         jumpCmp.jump = false;
@@ -0,0 +1,99 @@
+package com.quillraven.platformer.ecs.system;
+/*
+ * Created by Quillraven on 09.07.2018.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2018 Quillraven
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import com.badlogic.ashley.core.ComponentMapper;
+import com.badlogic.ashley.core.Entity;
+import com.badlogic.ashley.core.Family;
+import com.badlogic.ashley.systems.IteratingSystem;
+import com.badlogic.gdx.maps.tiled.TiledMap;
+import com.quillraven.platformer.MetricsManager;
+import com.quillraven.platformer.ecs.EntityEngine;
+import com.quillraven.platformer.ecs.component.Box2DComponent;
+import com.quillraven.platformer.ecs.component.PlayerComponent;
+import com.quillraven.platformer.map.Map;
+import com.quillraven.platformer.map.MapManager;
+import com.quillraven.platformer.physics.PhysicsBody;
+
+/**
+ * Splits the current map into horizontal regions of {@link Map#getRegionWidth()} world units. Only bodies of entities
+ * within the region of the player and its direct neighbour regions are simulated. All other bodies are deactivated
+ * which removes them from the broadphase and the box2d step until the player gets close to them again.
+ * <br>
+ * Regions are calculated from the body position every update and therefore bodies are automatically handed over to
+ * another region when they cross a region boundary.
+ */
+public class RegionActivationSystem extends IteratingSystem implements MapManager.MapListener {
+    private final ComponentMapper<Box2DComponent> b2dCmpMapper;
+    private float regionWidth;
+    private int playerRegion;
+    private int activeBodies;
+    private int inactiveBodies;
+
+    public RegionActivationSystem(final ComponentMapper<Box2DComponent> b2dCmpMapper) {
+        super(Family.all(Box2DComponent.class).exclude(PlayerComponent.class).get());
+        MapManager.getInstance().addMapListener(this);
+        this.b2dCmpMapper = b2dCmpMapper;
+        this.regionWidth = 0;
+    }
+
+    @Override
+    public void update(final float deltaTime) {
+        final Entity player = ((EntityEngine) getEngine()).getPlayer();
+        if (player == null || regionWidth <= 0) {
+            return;
+        }
+
+        playerRegion = getRegion(b2dCmpMapper.get(player).body);
+        activeBodies = 0;
+        inactiveBodies = 0;
+        super.update(deltaTime);
+
+        MetricsManager.getInstance().setValue(MetricsManager.MetricType.REGION_ACTIVE_BODIES, activeBodies);
+        MetricsManager.getInstance().setValue(MetricsManager.MetricType.REGION_INACTIVE_BODIES, inactiveBodies);
+    }
+
+    @Override
+    protected void processEntity(final Entity entity, final float deltaTime) {
+        final PhysicsBody body = b2dCmpMapper.get(entity).body;
+        final boolean active = Math.abs(getRegion(body) - playerRegion) <= 1;
+        if (body.isActive() != active) {
+            body.setActive(active);
+        }
+
+        if (active) {
+            ++activeBodies;
+        } else {
+            ++inactiveBodies;
+        }
+    }
+
+    private int getRegion(final PhysicsBody body) {
+        return (int) Math.floor(body.getPosition().x / regionWidth);
+    }
+
+    @Override
+    public void onMapChanged(final Map map, final TiledMap tiledMap) {
+        regionWidth = map.getRegionWidth();
+    }
+}
@@ -0,0 +1,179 @@
+package com.quillraven.platformer.ecs.system;
+/*
+ * Created by Quillraven on 13.07.2018.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2018 Quillraven
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.ParticleEffect;
+import com.badlogic.gdx.graphics.g2d.ParticleEmitter;
+import com.badlogic.gdx.graphics.g2d.Sprite;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.utils.Array;
+
+import java.util.Comparator;
+
+/**
+ * Collects draw commands of a render pass and submits them to a {@link SpriteBatch} sorted by layer, blend mode and texture.
+ * Commands with the same sort key keep their submission order which is why the layer must be used for anything that needs
+ * a specific drawing order. This minimizes texture switches and blend function changes which both flush the batch.
+ */
+public class RenderQueue {
+    public static final int LAYER_ENTITIES = 0;
+    public static final int LAYER_EFFECTS = 1;
+    private static final int MAX_BULK_QUADS = 64;
+
+    private final Array<RenderCommand> commands;
+    private final Array<RenderCommand> freeCommands;
+    // consecutive quads of the same texture are copied into this buffer and drawn with a single draw call
+    private final float[] bulkVertices;
+    private int bulkQuads;
+    private Texture bulkTexture;
+    private boolean sorted;
+
+    public RenderQueue() {
+        this.commands = new Array<>(64);
+        this.freeCommands = new Array<>(64);
+        this.bulkVertices = new float[RenderCommand.QUAD_SIZE * MAX_BULK_QUADS];
+        this.bulkQuads = 0;
+        this.bulkTexture = null;
+        this.sorted = true;
+    }
+
+    /**
+     * adds a quad to the queue. The caller writes the vertices of the quad into the returned array, f.e. with the {@link SpriteEmitter}.
+     *
+     * @param layer   render layer of the quad
+     * @param texture texture of the quad
+     * @return array for the 20 vertices of the quad in the format of {@link SpriteBatch#draw(Texture, float[], int, int)}
+     */
+    public float[] submitQuad(final int layer, final Texture texture) {
+        return obtain(layer, texture, false).vertices;
+    }
+
+    /**
+     * adds a particle effect to the queue. The effect is only drawn and not updated when flushing the queue.
+     * The effect should not clean up its blend function since the blend function is reset once after the layer is flushed.
+     *
+     * @param layer  render layer of the effect
+     * @param effect effect to draw
+     */
+    public void submit(final int layer, final ParticleEffect effect) {
+        final Array<ParticleEmitter> emitters = effect.getEmitters();
+        final ParticleEmitter emitter = emitters.first();
+        final Array<Sprite> sprites = emitter.getSprites();
+        final RenderCommand command = obtain(layer, sprites.size == 0 ? null : sprites.first().getTexture(), emitter.isAdditive());
+        command.effect = effect;
+    }
+
+    private RenderCommand obtain(final int layer, final Texture texture, final boolean additive) {
+        final RenderCommand command = freeCommands.size > 0 ? freeCommands.pop() : new RenderCommand();
+        command.layer = layer;
+        command.texture = texture;
+        command.textureKey = texture == null ? 0 : texture.getTextureObjectHandle();
+        command.additive = additive;
+        commands.add(command);
+        sorted = false;
+        return command;
+    }
+
+    /**
+     * draws all commands of the given layer. The batch must already be started.
+     *
+     * @param spriteBatch batch to draw with
+     * @param layer       layer to draw
+     */
+    public void flush(final SpriteBatch spriteBatch, final int layer) {
+        if (!sorted) {
+            commands.sort(COMMAND_COMPARATOR);
+            sorted = true;
+        }
+
+        int start = 0;
+        while (start < commands.size && commands.get(start).layer < layer) {
+            ++start;
+        }
+        int end = start;
+        boolean blendChanged = false;
+        while (end < commands.size && commands.get(end).layer == layer) {
+            final RenderCommand command = commands.get(end);
+            if (command.effect != null) {
+                flushBulk(spriteBatch);
+                command.effect.draw(spriteBatch);
+                blendChanged |= command.additive;
+            } else {
+                if (command.texture != bulkTexture || bulkQuads == MAX_BULK_QUADS) {
+                    flushBulk(spriteBatch);
+                    bulkTexture = command.texture;
+                }
+                System.arraycopy(command.vertices, 0, bulkVertices, bulkQuads * RenderCommand.QUAD_SIZE, RenderCommand.QUAD_SIZE);
+                ++bulkQuads;
+            }
+            command.effect = null;
+            command.texture = null;
+            freeCommands.add(command);
+            ++end;
+        }
+        flushBulk(spriteBatch);
+        if (end > start) {
+            commands.removeRange(start, end - 1);
+        }
+
+        if (blendChanged) {
+            spriteBatch.setBlendFunction(GL20.GL_SRC_ALPHA, GL20.GL_ONE_MINUS_SRC_ALPHA);
+        }
+    }
+
+    private void flushBulk(final SpriteBatch spriteBatch) {
+        if (bulkQuads > 0) {
+            spriteBatch.draw(bulkTexture, bulkVertices, 0, bulkQuads * RenderCommand.QUAD_SIZE);
+            bulkQuads = 0;
+        }
+        bulkTexture = null;
+    }
+
+    private static final Comparator<RenderCommand> COMMAND_COMPARATOR = new Comparator<RenderCommand>() {
+        @Override
+        public int compare(final RenderCommand cmd1, final RenderCommand cmd2) {
+            if (cmd1.layer != cmd2.layer) {
+                return cmd1.layer < cmd2.layer ? -1 : 1;
+            }
+            if (cmd1.additive != cmd2.additive) {
+                return cmd1.additive ? 1 : -1;
+            }
+            if (cmd1.textureKey != cmd2.textureKey) {
+                return cmd1.textureKey < cmd2.textureKey ? -1 : 1;
+            }
+            return 0;
+        }
+    };
+
+    private static class RenderCommand {
+        private static final int QUAD_SIZE = SpriteEmitter.QUAD_SIZE;
+        private final float[] vertices = new float[QUAD_SIZE];
+        private int layer;
+        private Texture texture;
+        private int textureKey;
+        private boolean additive;
+        private ParticleEffect effect;
+    }
+}
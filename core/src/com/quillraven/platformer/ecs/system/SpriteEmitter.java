@@ -0,0 +1,117 @@
+package com.quillraven.platformer.ecs.system;
+/*
+ * Created by Quillraven on 19.07.2018.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2018 Quillraven
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.math.MathUtils;
+
+/**
+ * Writes the vertices of a rotated, flipped and scaled quad straight out of the UVs of a {@link TextureRegion}.
+ * The layout is the same as the one of a {@link com.badlogic.gdx.graphics.g2d.Sprite} (bottom-left, top-left, top-right, bottom-right)
+ * but the region is never modified and can therefore be shared by any amount of entities.
+ */
+public final class SpriteEmitter {
+    public static final int QUAD_SIZE = 20;
+
+    private SpriteEmitter() {
+    }
+
+    /**
+     * @param vertices target array for the 20 vertices of the quad
+     * @param offset   offset of the first vertex within the array
+     * @param region   region of the quad
+     * @param x        x position of the bottom left corner before the rotation
+     * @param y        y position of the bottom left corner before the rotation
+     * @param width    width of the quad
+     * @param height   height of the quad
+     * @param rotation rotation in degrees around the center of the quad
+     * @param flipX    true to mirror the region horizontally
+     * @param color    packed color of the quad
+     */
+    public static void emit(final float[] vertices, final int offset, final TextureRegion region, final float x, final float y, final float width, final float height, final float rotation, final boolean flipX, final float color) {
+        final float halfWidth = width * 0.5f;
+        final float halfHeight = height * 0.5f;
+        final float centerX = x + halfWidth;
+        final float centerY = y + halfHeight;
+
+        final float x1;
+        final float y1;
+        final float x2;
+        final float y2;
+        final float x3;
+        final float y3;
+        final float x4;
+        final float y4;
+        if (rotation == 0) {
+            x1 = -halfWidth;
+            y1 = -halfHeight;
+            x2 = -halfWidth;
+            y2 = halfHeight;
+            x3 = halfWidth;
+            y3 = halfHeight;
+            x4 = halfWidth;
+            y4 = -halfHeight;
+        } else {
+            final float cos = MathUtils.cosDeg(rotation);
+            final float sin = MathUtils.sinDeg(rotation);
+            x1 = -halfWidth * cos + halfHeight * sin;
+            y1 = -halfWidth * sin - halfHeight * cos;
+            x2 = -halfWidth * cos - halfHeight * sin;
+            y2 = -halfWidth * sin + halfHeight * cos;
+            x3 = halfWidth * cos - halfHeight * sin;
+            y3 = halfWidth * sin + halfHeight * cos;
+            x4 = halfWidth * cos + halfHeight * sin;
+            y4 = halfWidth * sin - halfHeight * cos;
+        }
+
+        final float u = flipX ? region.getU2() : region.getU();
+        final float u2 = flipX ? region.getU() : region.getU2();
+        final float v = region.getV();
+        final float v2 = region.getV2();
+
+        int idx = offset;
+        vertices[idx++] = centerX + x1;
+        vertices[idx++] = centerY + y1;
+        vertices[idx++] = color;
+        vertices[idx++] = u;
+        vertices[idx++] = v2;
+
+        vertices[idx++] = centerX + x2;
+        vertices[idx++] = centerY + y2;
+        vertices[idx++] = color;
+        vertices[idx++] = u;
+        vertices[idx++] = v;
+
+        vertices[idx++] = centerX + x3;
+        vertices[idx++] = centerY + y3;
+        vertices[idx++] = color;
+        vertices[idx++] = u2;
+        vertices[idx++] = v;
+
+        vertices[idx++] = centerX + x4;
+        vertices[idx++] = centerY + y4;
+        vertices[idx++] = color;
+        vertices[idx++] = u2;
+        vertices[idx] = v2;
+    }
+}
@@ -22,7 +22,6 @@ package com.quillraven.platformer.gamestate;
  * SOFTWARE.
  */
 
-import box2dLight.DirectionalLight;
 import box2dLight.RayHandler;
 import com.badlogic.ashley.core.Entity;
 import com.badlogic.gdx.Gdx;
@@ -31,7 +30,6 @@ import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.graphics.OrthographicCamera;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.badlogic.gdx.maps.tiled.TiledMap;
-import com.badlogic.gdx.maps.tiled.tiles.AnimatedTiledMapTile;
 import com.badlogic.gdx.math.Vector2;
 import com.badlogic.gdx.physics.box2d.Box2D;
 import com.badlogic.gdx.physics.box2d.World;
@@ -45,8 +43,11 @@ import com.quillraven.platformer.ecs.system.GameObjectCollisionSystem;
 import com.quillraven.platformer.ecs.system.GameProgressSystem;
 import com.quillraven.platformer.ecs.system.JumpSystem;
 import com.quillraven.platformer.ecs.system.MoveSystem;
+import com.quillraven.platformer.light.SunLight;
 import com.quillraven.platformer.map.Map;
 import com.quillraven.platformer.map.MapManager;
+import com.quillraven.platformer.map.TileAnimation;
+import com.quillraven.platformer.physics.Box2DPhysicsWorld;
 import com.quillraven.platformer.ui.AnimationManager;
 import com.quillraven.platformer.ui.GameHUD;
 
@@ -58,8 +59,17 @@ import static com.quillraven.platformer.Platformer.PPM;
 
 public class GSGame extends GameState<GameHUD> implements MapManager.MapListener, GameObjectCollisionSystem.GameObjectListener, GameInputManager.GameKeyListener, GameProgressSystem.GameProgressListener {
     private static final String TAG = GSGame.class.getSimpleName();
+    // time in milliseconds per frame that can be spent to create the bodies and entities of a new map
+    private static final float MAP_BUILD_BUDGET = 4f;
+    // the world statistics traverse all bodies and contacts and are therefore only sampled once per second of steps
+    private static final int WORLD_STATISTICS_INTERVAL = 60;
     private final World world;
+    private final Box2DPhysicsWorld physicsWorld;
+    private final PhysicsGovernor physicsGovernor;
+    private final WorldStatistics worldStatistics;
     private final RayHandler rayHandler;
+    private final SunLight sunLight;
+    private final ResolutionScaler resolutionScaler;
     private final EntityEngine entityEngine;
     private final Viewport gameViewport;
     private final OrthographicCamera gameCamera;
@@ -69,6 +79,8 @@ public class GSGame extends GameState<GameHUD> implements MapManager.MapListener
     private boolean showVictory;
     private boolean showGameOver;
     private float changeLevelDelay;
+    private long mapBuildFrameID;
+    private int stepsUntilWorldStatistics;
     private boolean changeLevel;
 
     public GSGame(final AssetManager assetManager, final GameHUD hud, final SpriteBatch spriteBatch) {
@@ -79,23 +91,32 @@ public class GSGame extends GameState<GameHUD> implements MapManager.MapListener
         showGameOver = false;
         changeLevel = false;
         this.changeLevelDelay = 0f;
+        this.mapBuildFrameID = -1;
 
         this.gameViewport = new FitViewport(Platformer.V_WIDTH / PPM, Platformer.V_HEIGHT / PPM);
         this.gameCamera = (OrthographicCamera) gameViewport.getCamera();
+        // 60 FPS; render the world with 50% - 100% of the screen resolution
+        this.resolutionScaler = new ResolutionScaler(1 / 60f, 0.5f, 1f);
 
         // init box2d
         Box2D.init();
         this.world = new World(new Vector2(0, -PPM), true);
         world.setContactListener(WorldContactManager.getInstance());
+        this.physicsWorld = new Box2DPhysicsWorld(world);
+        // 2 milliseconds budget per step; velocity iterations 3-8; position iterations 1-3; max 3 substeps of 0.25 world units
+        this.physicsGovernor = new PhysicsGovernor(world, new PhysicsGovernor.GovernorParameter(2f, 3, 8, 1, 3, 3, 0.25f));
+        this.worldStatistics = new WorldStatistics();
+        this.stepsUntilWorldStatistics = WORLD_STATISTICS_INTERVAL;
         this.rayHandler = new RayHandler(world);
         // ambient light
         rayHandler.setAmbientLight(0, 0, 0, 0.8f);
         rayHandler.setBlurNum(3);
         // sun
-        new DirectionalLight(rayHandler, 512, new Color(1, 1, 1, 0.4f), 240);
+        this.sunLight = new SunLight(world, rayHandler, 512, new Color(1, 1, 1, 0.4f), 240);
 
         // init ashley entity component system
-        entityEngine = new EntityEngine(world, rayHandler, spriteBatch);
+        entityEngine = new EntityEngine(world, rayHandler, sunLight, spriteBatch);
+        entityEngine.addEntityListener(PhysicsGovernor.DYNAMIC_BODY_FAMILY, physicsGovernor);
         entityEngine.getSystem(GameObjectCollisionSystem.class).addGameObjectListener(this);
         entityEngine.getSystem(GameProgressSystem.class).addGameProgressListener(this);
     }
@@ -128,7 +149,7 @@ public class GSGame extends GameState<GameHUD> implements MapManager.MapListener
             resetMap = true;
         }
 
-        if (MapManager.getInstance().changeMap(assetManager, currentMapType, world, rayHandler, entityEngine, resetMap)) {
+        if (MapManager.getInstance().changeMap(assetManager, currentMapType, physicsWorld, rayHandler, entityEngine, resetMap)) {
             GameInputManager.getInstance().addGameKeyListener(entityEngine.getSystem(MoveSystem.class));
             GameInputManager.getInstance().addGameKeyListener(entityEngine.getSystem(JumpSystem.class));
             GameInputManager.getInstance().addGameKeyListener(this);
@@ -141,7 +162,7 @@ public class GSGame extends GameState<GameHUD> implements MapManager.MapListener
             if (entityEngine.getPlayer() == null) {
                 // create player
                 Gdx.app.debug(TAG, "Creating new player instance at: " + MapManager.getInstance().getCurrentMap().getStartX() / PPM + "/" + MapManager.getInstance().getCurrentMap().getStartY() / PPM);
-                final Entity player = entityEngine.createPlayer(world, rayHandler, MapManager.getInstance().getCurrentMap().getStartX(), MapManager.getInstance().getCurrentMap().getStartY());
+                final Entity player = entityEngine.createPlayer(physicsWorld, rayHandler, MapManager.getInstance().getCurrentMap().getStartX(), MapManager.getInstance().getCurrentMap().getStartY());
                 final PlayerComponent playerCmp = player.getComponent(PlayerComponent.class);
                 hud.updateLifeInfo(playerCmp.currentLife, playerCmp.maxLife);
             } else {
@@ -156,6 +177,7 @@ public class GSGame extends GameState<GameHUD> implements MapManager.MapListener
     @Override
     public void onDeactivation() {
         Gdx.app.debug(TAG, "Deactivating GSGame");
+        ParticleEffectManager.getInstance().savePeaks();
         GameInputManager.getInstance().removeGameKeyListener(entityEngine.getSystem(MoveSystem.class));
         GameInputManager.getInstance().removeGameKeyListener(entityEngine.getSystem(JumpSystem.class));
         GameInputManager.getInstance().removeGameKeyListener(this);
@@ -183,6 +205,20 @@ public class GSGame extends GameState<GameHUD> implements MapManager.MapListener
             return;
         }
 
+        if (MapManager.getInstance().isBuilding()) {
+            // the map is created in slices (one per frame) while the fade is playing. It is not playable before it is finished
+            final long frameID = AnimationClock.getInstance().getFrameID();
+            if (mapBuildFrameID != frameID) {
+                mapBuildFrameID = frameID;
+                if (MapManager.getInstance().updateBuild(physicsWorld, rayHandler, entityEngine, MAP_BUILD_BUDGET)) {
+                    worldStatistics.update(world, physicsGovernor.getLastStepTime());
+                    Gdx.app.debug(TAG, "World statistics for " + currentMapType + ": " + worldStatistics);
+                }
+            }
+            super.onUpdate(gsManager, fixedTimeStep);
+            return;
+        }
+
         if (!hud.isFading()) {
             if (showMenu) {
                 gsManager.setState(GameStateManager.GameStateType.MENU);
@@ -204,7 +240,15 @@ public class GSGame extends GameState<GameHUD> implements MapManager.MapListener
             // the body position BEFORE the step in some components.
             // This is f.e. needed to interpolate the rendering
             entityEngine.update(fixedTimeStep);
-            world.step(fixedTimeStep, 6, 2);
+            ParticleEffectManager.getInstance().update(fixedTimeStep);
+            if (entityEngine.getPlayer() != null) {
+                MapManager.getInstance().updatePreload(assetManager, entityEngine.getPlayer().getComponent(Box2DComponent.class).body.getPosition().x);
+            }
+            physicsGovernor.step(fixedTimeStep);
+            if (--stepsUntilWorldStatistics <= 0) {
+                stepsUntilWorldStatistics = WORLD_STATISTICS_INTERVAL;
+                worldStatistics.update(world, physicsGovernor.getLastStepTime());
+            }
         }
 
         super.onUpdate(gsManager, fixedTimeStep);
@@ -212,8 +256,17 @@ public class GSGame extends GameState<GameHUD> implements MapManager.MapListener
 
     @Override
     public void onRender(final SpriteBatch spriteBatch, final float alpha) {
-        gameViewport.apply();
-        entityEngine.onRender(spriteBatch, gameCamera, alpha);
+        if (resolutionScaler.update(Gdx.graphics.getRawDeltaTime(), MetricsManager.getInstance().getValue(MetricsManager.MetricType.FRAME_WORK_TIME) / 1000f)) {
+            updateWorldRenderSize();
+        }
+        resolutionScaler.begin();
+        if (!MapManager.getInstance().isBuilding()) {
+            // the renderers switch to a new map once it is built. Until then the world stays hidden to not draw the
+            // new entities over the previous map
+            entityEngine.onRender(spriteBatch, gameCamera, alpha);
+        }
+        resolutionScaler.end(spriteBatch, gameViewport);
+        // the HUD is rendered with the native resolution
         super.onRender(spriteBatch, alpha);
     }
 
@@ -221,7 +274,9 @@ public class GSGame extends GameState<GameHUD> implements MapManager.MapListener
     public void onDispose() {
         world.dispose();
         entityEngine.dispose();
+        sunLight.dispose();
         rayHandler.dispose();
+        resolutionScaler.dispose();
         super.onDispose();
     }
 
@@ -229,7 +284,18 @@ public class GSGame extends GameState<GameHUD> implements MapManager.MapListener
     public void onResize(final int width, final int height) {
         super.onResize(width, height);
         gameViewport.update(width, height);
-        rayHandler.useCustomViewport(gameViewport.getScreenX(), gameViewport.getScreenY(), gameViewport.getScreenWidth(), gameViewport.getScreenHeight());
+        resolutionScaler.resize(gameViewport.getScreenWidth(), gameViewport.getScreenHeight());
+        updateWorldRenderSize();
+    }
+
+    private void updateWorldRenderSize() {
+        // the world is rendered into the frame buffer of the resolution scaler and the light map scales with it
+        final int width = resolutionScaler.getWidth();
+        final int height = resolutionScaler.getHeight();
+        rayHandler.useCustomViewport(0, 0, width, height);
+        rayHandler.resizeFBO(Math.max(1, width / 4), Math.max(1, height / 4));
+        sunLight.setViewport(0, 0, width, height);
+        sunLight.setTargetBuffer(resolutionScaler.getFrameBuffer());
     }
 
     @Override
@@ -246,14 +312,8 @@ public class GSGame extends GameState<GameHUD> implements MapManager.MapListener
         if (numCoinsCollected >= maxCoins) {
             SoundManager.getInstance().playSound(SoundManager.SoundType.SFX_ALL_COINS);
             // stop flag pole at the end of the level
-            // flag pole has 3 animation frames; set the time for the first 2 frames to negative to skip them
-            final Map currentMap = MapManager.getInstance().getCurrentMap();
-            final AnimatedTiledMapTile flagTile = (AnimatedTiledMapTile) currentMap.getCoinFlagObject().getTile();
-            final int[] intervals = flagTile.getAnimationIntervals();
-            intervals[0] = -1;
-            intervals[1] = -1;
-            intervals[2] = 150;
-            flagTile.setAnimationIntervals(intervals);
+            final TileAnimation flagPoleAnimation = MapManager.getInstance().getCurrentMap().getCoinFlagAnimation();
+            flagPoleAnimation.setFrameRange(flagPoleAnimation.getNumFrames() - 1, flagPoleAnimation.getNumFrames() - 1);
         }
     }
 
@@ -51,7 +51,6 @@ abstract class GameState<T extends HUD> {
     abstract public void onDeactivation();
 
     public void onUpdate(final GameStateManager gsManager, final float fixedTimeStep) {
-        hud.onUpdate(fixedTimeStep);
     }
 
     public void onRender(final SpriteBatch spriteBatch, final float alpha) {
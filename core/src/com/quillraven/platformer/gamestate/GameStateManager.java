@@ -32,7 +32,6 @@ import com.badlogic.gdx.graphics.g2d.BitmapFont;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.badlogic.gdx.graphics.g2d.freetype.FreeTypeFontGenerator;
 import com.badlogic.gdx.graphics.g2d.freetype.FreeTypeFontGeneratorLoader;
-import com.badlogic.gdx.graphics.g2d.freetype.FreetypeFontLoader;
 import com.badlogic.gdx.maps.tiled.TiledMap;
 import com.badlogic.gdx.maps.tiled.TmxMapLoader;
 import com.badlogic.gdx.utils.Array;
@@ -41,7 +40,11 @@ import com.badlogic.gdx.utils.I18NBundle;
 import com.badlogic.gdx.utils.ObjectMap;
 import com.badlogic.gdx.utils.viewport.FitViewport;
 import com.badlogic.gdx.utils.viewport.Viewport;
+import com.quillraven.platformer.AssetResidencyManager;
 import com.quillraven.platformer.Platformer;
+import com.quillraven.platformer.map.BinaryMapFormat;
+import com.quillraven.platformer.map.BinaryMapLoader;
+import com.quillraven.platformer.map.MapManager;
 import com.quillraven.platformer.ui.*;
 
 /**
@@ -76,8 +79,10 @@ public class GameStateManager {
         final FileHandleResolver resolver = new InternalFileHandleResolver();
         this.assetManager = new AssetManager();
         assetManager.setLoader(TiledMap.class, new TmxMapLoader(resolver));
+        assetManager.setLoader(TiledMap.class, BinaryMapFormat.FILE_EXTENSION, new BinaryMapLoader(resolver));
         assetManager.setLoader(FreeTypeFontGenerator.class, new FreeTypeFontGeneratorLoader(resolver));
-        assetManager.setLoader(BitmapFont.class, ".ttf", new FreetypeFontLoader(resolver));
+        // fonts are rasterized by FreeType only once and are then loaded from the local font cache
+        assetManager.setLoader(BitmapFont.class, ".ttf", new CachedFreeTypeFontLoader(resolver));
         assetManager.setLoader(Skin.class, new SkinLoader(resolver));
         assetManager.load("hud/hud.json", Skin.class, new SkinLoader.SkinParameter("hud/font.ttf", 16, 24, 32));
         assetManager.load("i18n/strings", I18NBundle.class);
@@ -139,12 +144,13 @@ public class GameStateManager {
             return false;
         }
 
-        if (assetManager.getProgress() != 1 && !(stateStack.peek() instanceof GSLoading)) {
-            // assets need to be loaded -> change to loading state
+        if (assetManager.getProgress() != 1 && !MapManager.getInstance().isPreloading(assetManager) && !(stateStack.peek() instanceof GSLoading)) {
+            // assets need to be loaded -> change to loading state. Maps that are preloaded in the background are ignored
             activateGameState(getState(GameStateType.LOADING));
         }
 
         stateStack.peek().onUpdate(this, fixedTimeStep);
+        AssetResidencyManager.getInstance().update(assetManager);
 
         return true;
     }
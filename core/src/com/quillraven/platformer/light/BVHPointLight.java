@@ -0,0 +1,71 @@
+package com.quillraven.platformer.light;
+/*
+ * Created by Quillraven on 17.07.2018.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2018 Quillraven
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.utils.FloatArray;
+
+import box2dLight.PointLight;
+import box2dLight.RayHandler;
+
+/**
+ * A {@link PointLight} whose rays are cast by the {@link LightRayCaster} before the {@link RayHandler} updates it.
+ * If the rays were not cast for the current light position then it falls back to the box2d ray cast of box2dlights.
+ */
+public class BVHPointLight extends PointLight {
+    private boolean raysCast;
+    private float castX;
+    private float castY;
+
+    public BVHPointLight(final RayHandler rayHandler, final int rays, final Color color, final float distance) {
+        super(rayHandler, rays, color, distance, 0, 0);
+        this.raysCast = false;
+    }
+
+    /**
+     * casts all rays of the light from the given position. Called by the worker threads of the {@link LightRayCaster}.
+     */
+    void castRays(final StaticLightGeometry geometry, final FloatArray occluders, final float x, final float y, final int[] stack) {
+        for (int i = 0; i < rayNum; ++i) {
+            float fraction = geometry.rayCast(x, y, endX[i], endY[i], 1f, stack);
+            fraction = LightRayCaster.rayCastOccluders(occluders, x, y, endX[i], endY[i], fraction);
+            mx[i] = x + endX[i] * fraction;
+            my[i] = y + endY[i] * fraction;
+            f[i] = fraction;
+        }
+        castX = x;
+        castY = y;
+        raysCast = true;
+    }
+
+    @Override
+    protected void updateMesh() {
+        if (raysCast && MathUtils.isEqual(castX, start.x, 0.001f) && MathUtils.isEqual(castY, start.y, 0.001f)) {
+            setMesh();
+        } else {
+            super.updateMesh();
+        }
+        raysCast = false;
+    }
+}
@@ -0,0 +1,123 @@
+package com.quillraven.platformer.light;
+/*
+ * Created by Quillraven on 14.07.2018.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2018 Quillraven
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.physics.box2d.Body;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+import box2dLight.RayHandler;
+
+/**
+ * A point light that is attached to a body with different levels of detail. Every level is a separate {@link BVHPointLight}
+ * with its own amount of rays because box2dlights does not support changing the rays of an existing light.
+ * Only the light of the current level is active and inactive lights are skipped by the {@link RayHandler}.
+ */
+public class LightLOD {
+    private final BVHPointLight[] levels;
+    private final float offsetX;
+    private final float offsetY;
+    private final float distance;
+    private int level;
+    // distance to the camera of the current frame; used by the LightLODController to prioritize lights
+    float cameraDistance;
+    // light position of the current frame; used by the LightRayCaster
+    float x;
+    float y;
+
+    /**
+     * @param rayNums amount of rays per level; the first level is the one with the most detail
+     */
+    public LightLOD(final RayHandler rayHandler, final int[] rayNums, final Color color, final float distance, final Body body, final float offsetX, final float offsetY) {
+        if (rayNums.length == 0) {
+            throw new GdxRuntimeException("A LightLOD needs at least one level");
+        }
+
+        this.levels = new BVHPointLight[rayNums.length];
+        for (int i = 0; i < rayNums.length; ++i) {
+            levels[i] = new BVHPointLight(rayHandler, rayNums[i], color, distance);
+            levels[i].attachToBody(body, offsetX, offsetY);
+            levels[i].setActive(i == 0);
+        }
+        this.offsetX = offsetX;
+        this.offsetY = offsetY;
+        this.distance = distance;
+        this.level = 0;
+    }
+
+    public int getNumLevels() {
+        return levels.length;
+    }
+
+    public int getRayNum(final int level) {
+        return levels[level].getRayNum();
+    }
+
+    /**
+     * @return light of the current level or null if the light is disabled
+     */
+    public BVHPointLight getActiveLight() {
+        return level < 0 ? null : levels[level];
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * activates the light of the given level and deactivates all other levels
+     *
+     * @param level level to activate or -1 to disable the light completely
+     */
+    public void setLevel(final int level) {
+        if (this.level == level) {
+            return;
+        }
+
+        if (this.level >= 0) {
+            levels[this.level].setActive(false);
+        }
+        this.level = level;
+        if (level >= 0) {
+            levels[level].setActive(true);
+        }
+    }
+
+    public float getOffsetX() {
+        return offsetX;
+    }
+
+    public float getOffsetY() {
+        return offsetY;
+    }
+
+    public float getDistance() {
+        return distance;
+    }
+
+    public void remove() {
+        for (final BVHPointLight light : levels) {
+            light.remove();
+        }
+    }
+}
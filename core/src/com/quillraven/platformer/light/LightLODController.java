@@ -0,0 +1,138 @@
+package com.quillraven.platformer.light;
+/*
+ * Created by Quillraven on 14.07.2018.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2018 Quillraven
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import com.badlogic.ashley.core.ComponentMapper;
+import com.badlogic.ashley.core.Entity;
+import com.badlogic.ashley.utils.ImmutableArray;
+import com.badlogic.gdx.graphics.OrthographicCamera;
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.quillraven.platformer.MetricsManager;
+import com.quillraven.platformer.ecs.component.Box2DComponent;
+
+import java.util.Comparator;
+
+/**
+ * Selects the level of detail of entity lights before the {@link box2dLight.RayHandler} updates them.
+ * Lights whose radius does not reach the viewport are disabled. The remaining lights lose detail with their distance
+ * to the camera and the lights closest to the camera get their rays first until the ray budget is used up.
+ */
+public class LightLODController {
+    private final int rayBudget;
+    private final float lodDistance;
+    private final Array<LightLOD> visibleLights;
+    private final Array<LightLOD> activeLights;
+
+    /**
+     * @param rayBudget   maximum amount of rays of all entity lights per frame
+     * @param lodDistance distance to the camera in world units after which a light drops one level of detail
+     */
+    public LightLODController(final int rayBudget, final float lodDistance) {
+        if (rayBudget < 0) {
+            throw new GdxRuntimeException("Ray budget must not be negative: " + rayBudget);
+        } else if (lodDistance <= 0) {
+            throw new GdxRuntimeException("LOD distance must be greater than zero: " + lodDistance);
+        }
+
+        this.rayBudget = rayBudget;
+        this.lodDistance = lodDistance;
+        this.visibleLights = new Array<>();
+        this.activeLights = new Array<>();
+    }
+
+    public void update(final ImmutableArray<Entity> entities, final ComponentMapper<Box2DComponent> b2dCmpMapper, final OrthographicCamera camera) {
+        final float halfViewWidth = camera.viewportWidth * camera.zoom * 0.5f;
+        final float halfViewHeight = camera.viewportHeight * camera.zoom * 0.5f;
+        final float camX = camera.position.x;
+        final float camY = camera.position.y;
+        int culledLights = 0;
+
+        visibleLights.clear();
+        activeLights.clear();
+        for (final Entity entity : entities) {
+            final Box2DComponent b2dCmp = b2dCmpMapper.get(entity);
+            final LightLOD light = b2dCmp.light;
+            if (light == null) {
+                continue;
+            }
+
+            final Vector2 position = b2dCmp.body.getPosition();
+            final float lightX = position.x + light.getOffsetX();
+            final float lightY = position.y + light.getOffsetY();
+            // distance of the light to the closest point of the viewport
+            final float dx = lightX - MathUtils.clamp(lightX, camX - halfViewWidth, camX + halfViewWidth);
+            final float dy = lightY - MathUtils.clamp(lightY, camY - halfViewHeight, camY + halfViewHeight);
+            if (dx * dx + dy * dy > light.getDistance() * light.getDistance()) {
+                light.setLevel(-1);
+                ++culledLights;
+                continue;
+            }
+
+            light.cameraDistance = Vector2.dst(lightX, lightY, camX, camY);
+            light.x = lightX;
+            light.y = lightY;
+            visibleLights.add(light);
+        }
+
+        visibleLights.sort(DISTANCE_COMPARATOR);
+        int remainingRays = rayBudget;
+        for (final LightLOD light : visibleLights) {
+            int level = Math.min(light.getNumLevels() - 1, (int) (light.cameraDistance / lodDistance));
+            while (level < light.getNumLevels() && light.getRayNum(level) > remainingRays) {
+                ++level;
+            }
+
+            if (level == light.getNumLevels()) {
+                // out of budget
+                light.setLevel(-1);
+                ++culledLights;
+            } else {
+                light.setLevel(level);
+                remainingRays -= light.getRayNum(level);
+                activeLights.add(light);
+            }
+        }
+
+        final MetricsManager metrics = MetricsManager.getInstance();
+        metrics.setValue(MetricsManager.MetricType.LIGHT_RAYS, rayBudget - remainingRays);
+        metrics.setValue(MetricsManager.MetricType.LIGHTS_ACTIVE, activeLights.size);
+        metrics.setValue(MetricsManager.MetricType.LIGHTS_CULLED, culledLights);
+    }
+
+    /**
+     * @return lights that are active in the current frame
+     */
+    public Array<LightLOD> getActiveLights() {
+        return activeLights;
+    }
+
+    private static final Comparator<LightLOD> DISTANCE_COMPARATOR = new Comparator<LightLOD>() {
+        @Override
+        public int compare(final LightLOD light1, final LightLOD light2) {
+            return Float.compare(light1.cameraDistance, light2.cameraDistance);
+        }
+    };
+}
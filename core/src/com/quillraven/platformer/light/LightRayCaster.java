@@ -0,0 +1,169 @@
+package com.quillraven.platformer.light;
+/*
+ * Created by Quillraven on 17.07.2018.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2018 Quillraven
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.FloatArray;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.TimeUtils;
+import com.quillraven.platformer.MetricsManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Casts the rays of the active entity lights in parallel against the {@link StaticLightGeometry} of the map and
+ * the bounding boxes of the dynamic bodies (occluders). The lights are split between one task per available core
+ * and the render thread waits until all tasks are done.
+ */
+public class LightRayCaster implements Disposable {
+    private static final String TAG = LightRayCaster.class.getSimpleName();
+
+    private final StaticLightGeometry geometry;
+    // minX, minY, maxX, maxY of every occluder
+    private final FloatArray occluders;
+    private final ExecutorService executor;
+    private final List<CastTask> tasks;
+    private final int[] stack;
+    private Array<LightLOD> lights;
+
+    public LightRayCaster(final StaticLightGeometry geometry) {
+        this.geometry = geometry;
+        this.occluders = new FloatArray();
+        this.stack = new int[StaticLightGeometry.STACK_SIZE];
+        this.tasks = new ArrayList<>();
+
+        final int numThreads = Runtime.getRuntime().availableProcessors();
+        if (numThreads > 1) {
+            for (int i = 0; i < numThreads; ++i) {
+                tasks.add(new CastTask());
+            }
+            this.executor = Executors.newFixedThreadPool(numThreads, new ThreadFactory() {
+                private int threadIdx = 0;
+
+                @Override
+                public Thread newThread(final Runnable runnable) {
+                    final Thread thread = new Thread(runnable, TAG + "-" + threadIdx++);
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        } else {
+            this.executor = null;
+        }
+        Gdx.app.debug(TAG, "Casting light rays with " + numThreads + " thread(s)");
+    }
+
+    public void clearOccluders() {
+        occluders.clear();
+    }
+
+    public void addOccluder(final float minX, final float minY, final float maxX, final float maxY) {
+        occluders.add(minX, minY, maxX, maxY);
+    }
+
+    public void cast(final Array<LightLOD> lights) {
+        final long startTime = TimeUtils.nanoTime();
+        if (executor == null || lights.size < 2) {
+            castLights(lights, 0, lights.size, stack);
+        } else {
+            this.lights = lights;
+            final int numTasks = Math.min(tasks.size(), lights.size);
+            final int lightsPerTask = (lights.size + numTasks - 1) / numTasks;
+            for (int i = 0; i < tasks.size(); ++i) {
+                final CastTask task = tasks.get(i);
+                task.start = Math.min(lights.size, i * lightsPerTask);
+                task.end = Math.min(lights.size, task.start + lightsPerTask);
+            }
+
+            try {
+                for (final Future<Void> future : executor.invokeAll(tasks)) {
+                    future.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                throw new GdxRuntimeException("Could not cast light rays", e.getCause());
+            }
+            this.lights = null;
+        }
+        MetricsManager.getInstance().setValue(MetricsManager.MetricType.LIGHT_CAST_TIME, TimeUtils.timeSinceNanos(startTime) / 1000000f);
+    }
+
+    private void castLights(final Array<LightLOD> lights, final int start, final int end, final int[] stack) {
+        for (int i = start; i < end; ++i) {
+            final LightLOD light = lights.get(i);
+            light.getActiveLight().castRays(geometry, occluders, light.x, light.y, stack);
+        }
+    }
+
+    /**
+     * @return fraction of the closest occluder hit or maxFraction if nothing closer was hit. Occluders that contain the
+     * start of the ray are ignored because those are the bodies that the lights are attached to.
+     */
+    static float rayCastOccluders(final FloatArray occluders, final float x, final float y, final float dx, final float dy, float maxFraction) {
+        final float[] items = occluders.items;
+        for (int i = 0; i < occluders.size; i += 4) {
+            final float minX = items[i];
+            final float minY = items[i + 1];
+            final float maxX = items[i + 2];
+            final float maxY = items[i + 3];
+            if (x >= minX && x <= maxX && y >= minY && y <= maxY) {
+                continue;
+            }
+
+            final float fraction = StaticLightGeometry.intersectAABB(x, y, dx, dy, minX, minY, maxX, maxY, maxFraction);
+            if (fraction < maxFraction) {
+                maxFraction = fraction;
+            }
+        }
+        return maxFraction;
+    }
+
+    @Override
+    public void dispose() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private class CastTask implements Callable<Void> {
+        private final int[] stack = new int[StaticLightGeometry.STACK_SIZE];
+        private int start;
+        private int end;
+
+        @Override
+        public Void call() {
+            castLights(lights, start, end, stack);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package com.quillraven.platformer.light;
+/*
+ * Created by Quillraven on 17.07.2018.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2018 Quillraven
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.physics.box2d.Body;
+import com.badlogic.gdx.physics.box2d.BodyDef;
+import com.badlogic.gdx.physics.box2d.ChainShape;
+import com.badlogic.gdx.physics.box2d.Fixture;
+import com.badlogic.gdx.physics.box2d.Shape;
+import com.badlogic.gdx.physics.box2d.World;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.FloatArray;
+import com.badlogic.gdx.utils.IntArray;
+import com.quillraven.platformer.Platformer;
+
+/**
+ * Bounding volume hierarchy of the static ground chains of a map. It is used to cast light rays on the java side
+ * instead of calling {@link World#rayCast} through JNI for every ray. Ray casts do not modify the hierarchy and can
+ * therefore be done from several threads at the same time as long as every thread uses its own traversal stack.
+ */
+public class StaticLightGeometry {
+    private static final String TAG = StaticLightGeometry.class.getSimpleName();
+    public static final int STACK_SIZE = 64;
+    private static final int MAX_LEAF_SEGMENTS = 4;
+    static final float NO_HIT = Float.MAX_VALUE;
+
+    private final Array<Body> bodies;
+    private final Vector2 vertex;
+    private final Vector2 prevVertex;
+    // x1, y1, x2, y2 of every segment
+    private final FloatArray segments;
+    private final IntArray segmentOrder;
+    // minX, minY, maxX, maxY of every node
+    private final FloatArray nodeBounds;
+    private final IntArray nodeLeft;
+    private final IntArray nodeRight;
+    private final IntArray nodeStart;
+    private final IntArray nodeCount;
+
+    public StaticLightGeometry() {
+        this.bodies = new Array<>();
+        this.vertex = new Vector2();
+        this.prevVertex = new Vector2();
+        this.segments = new FloatArray();
+        this.segmentOrder = new IntArray();
+        this.nodeBounds = new FloatArray();
+        this.nodeLeft = new IntArray();
+        this.nodeRight = new IntArray();
+        this.nodeStart = new IntArray();
+        this.nodeCount = new IntArray();
+    }
+
+    /**
+     * rebuilds the hierarchy out of the chain fixtures of all static ground bodies of the world
+     */
+    public void build(final World world) {
+        segments.clear();
+        segmentOrder.clear();
+        nodeBounds.clear();
+        nodeLeft.clear();
+        nodeRight.clear();
+        nodeStart.clear();
+        nodeCount.clear();
+
+        world.getBodies(bodies);
+        for (final Body body : bodies) {
+            if (body.getType() != BodyDef.BodyType.StaticBody) {
+                continue;
+            }
+
+            final Vector2 position = body.getPosition();
+            for (final Fixture fixture : body.getFixtureList()) {
+                if ((fixture.getFilterData().categoryBits & Platformer.BIT_GROUND) == 0 || fixture.getType() != Shape.Type.Chain) {
+                    continue;
+                }
+
+                // loops already contain their first vertex as last vertex
+                final ChainShape chain = (ChainShape) fixture.getShape();
+                chain.getVertex(0, prevVertex);
+                for (int i = 1; i < chain.getVertexCount(); ++i) {
+                    chain.getVertex(i, vertex);
+                    segmentOrder.add(segments.size / 4);
+                    segments.add(position.x + prevVertex.x, position.y + prevVertex.y, position.x + vertex.x, position.y + vertex.y);
+                    prevVertex.set(vertex);
+                }
+            }
+        }
+        bodies.clear();
+
+        if (segmentOrder.size > 0) {
+            buildNode(0, segmentOrder.size);
+        }
+        Gdx.app.debug(TAG, "Created light geometry with " + segmentOrder.size + " segments and " + nodeStart.size + " nodes");
+    }
+
+    private int buildNode(final int start, final int count) {
+        final int node = nodeStart.size;
+        nodeStart.add(start);
+        nodeCount.add(count);
+        nodeLeft.add(-1);
+        nodeRight.add(-1);
+
+        float minX = Float.MAX_VALUE;
+        float minY = Float.MAX_VALUE;
+        float maxX = -Float.MAX_VALUE;
+        float maxY = -Float.MAX_VALUE;
+        for (int i = start; i < start + count; ++i) {
+            final int offset = segmentOrder.get(i) * 4;
+            minX = Math.min(minX, Math.min(segments.get(offset), segments.get(offset + 2)));
+            minY = Math.min(minY, Math.min(segments.get(offset + 1), segments.get(offset + 3)));
+            maxX = Math.max(maxX, Math.max(segments.get(offset), segments.get(offset + 2)));
+            maxY = Math.max(maxY, Math.max(segments.get(offset + 1), segments.get(offset + 3)));
+        }
+        nodeBounds.add(minX, minY, maxX, maxY);
+
+        if (count > MAX_LEAF_SEGMENTS) {
+            // split at the median of the longer axis; maps only have a few hundred segments so insertion sort is fine
+            final int axis = maxX - minX >= maxY - minY ? 0 : 1;
+            for (int i = start + 1; i < start + count; ++i) {
+                final int segment = segmentOrder.get(i);
+                final float center = getCenter(segment, axis);
+                int j = i - 1;
+                while (j >= start && getCenter(segmentOrder.get(j), axis) > center) {
+                    segmentOrder.set(j + 1, segmentOrder.get(j));
+                    --j;
+                }
+                segmentOrder.set(j + 1, segment);
+            }
+
+            final int leftCount = count / 2;
+            final int left = buildNode(start, leftCount);
+            final int right = buildNode(start + leftCount, count - leftCount);
+            nodeLeft.set(node, left);
+            nodeRight.set(node, right);
+        }
+
+        return node;
+    }
+
+    private float getCenter(final int segment, final int axis) {
+        return (segments.get(segment * 4 + axis) + segments.get(segment * 4 + 2 + axis)) * 0.5f;
+    }
+
+    /**
+     * casts a ray from x/y to x+dx/y+dy
+     *
+     * @param maxFraction fraction of the ray where a closer hit was already found
+     * @param stack       traversal stack of the calling thread with a size of {@link #STACK_SIZE}
+     * @return fraction of the closest hit or maxFraction if nothing closer was hit
+     */
+    public float rayCast(final float x, final float y, final float dx, final float dy, float maxFraction, final int[] stack) {
+        if (nodeStart.size == 0) {
+            return maxFraction;
+        }
+
+        final float[] bounds = nodeBounds.items;
+        final float[] segs = segments.items;
+        final int[] order = segmentOrder.items;
+        int top = 0;
+        stack[top++] = 0;
+        while (top > 0) {
+            final int node = stack[--top];
+            final int boundsOffset = node * 4;
+            if (intersectAABB(x, y, dx, dy, bounds[boundsOffset], bounds[boundsOffset + 1], bounds[boundsOffset + 2], bounds[boundsOffset + 3], maxFraction) >= maxFraction) {
+                continue;
+            }
+
+            final int left = nodeLeft.get(node);
+            if (left == -1) {
+                final int end = nodeStart.get(node) + nodeCount.get(node);
+                for (int i = nodeStart.get(node); i < end; ++i) {
+                    final int offset = order[i] * 4;
+                    final float fraction = intersectSegment(x, y, dx, dy, segs[offset], segs[offset + 1], segs[offset + 2], segs[offset + 3]);
+                    if (fraction < maxFraction) {
+                        maxFraction = fraction;
+                    }
+                }
+            } else {
+                stack[top++] = left;
+                stack[top++] = nodeRight.get(node);
+            }
+        }
+        return maxFraction;
+    }
+
+    /**
+     * @return fraction where the ray enters the box or {@link #NO_HIT}
+     */
+    static float intersectAABB(final float x, final float y, final float dx, final float dy, final float minX, final float minY, final float maxX, final float maxY, final float maxFraction) {
+        float tMin = 0;
+        float tMax = maxFraction;
+        if (Math.abs(dx) < 0.000001f) {
+            if (x < minX || x > maxX) {
+                return NO_HIT;
+            }
+        } else {
+            final float t1 = (minX - x) / dx;
+            final float t2 = (maxX - x) / dx;
+            tMin = Math.max(tMin, Math.min(t1, t2));
+            tMax = Math.min(tMax, Math.max(t1, t2));
+        }
+        if (Math.abs(dy) < 0.000001f) {
+            if (y < minY || y > maxY) {
+                return NO_HIT;
+            }
+        } else {
+            final float t1 = (minY - y) / dy;
+            final float t2 = (maxY - y) / dy;
+            tMin = Math.max(tMin, Math.min(t1, t2));
+            tMax = Math.min(tMax, Math.max(t1, t2));
+        }
+        return tMin > tMax ? NO_HIT : tMin;
+    }
+
+    private static float intersectSegment(final float x, final float y, final float dx, final float dy, final float x1, final float y1, final float x2, final float y2) {
+        final float ex = x2 - x1;
+        final float ey = y2 - y1;
+        final float denominator = dx * ey - dy * ex;
+        if (Math.abs(denominator) < 0.000001f) {
+            // parallel
+            return NO_HIT;
+        }
+
+        final float wx = x1 - x;
+        final float wy = y1 - y;
+        final float t = (wx * ey - wy * ex) / denominator;
+        final float u = (wx * dy - wy * dx) / denominator;
+        return t >= 0 && t <= 1 && u >= 0 && u <= 1 ? t : NO_HIT;
+    }
+}
@@ -0,0 +1,191 @@
+package com.quillraven.platformer.light;
+/*
+ * Created by Quillraven on 15.07.2018.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2018 Quillraven
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.OrthographicCamera;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.glutils.FrameBuffer;
+import com.badlogic.gdx.maps.tiled.TiledMap;
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.physics.box2d.World;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.TimeUtils;
+import com.quillraven.platformer.Platformer;
+import com.quillraven.platformer.map.Map;
+import com.quillraven.platformer.map.MapManager;
+
+import box2dLight.DirectionalLight;
+import box2dLight.LightMapRenderer;
+import box2dLight.RayHandler;
+
+/**
+ * The sun of a level. It only casts shadows of the static map geometry and therefore it is baked into a light map
+ * texture whenever a map is loaded. The baked texture is added to the light map of the game's {@link RayHandler}
+ * every frame so that only the dynamic entity lights need to cast rays.
+ * If baking is disabled then the sun is a normal {@link DirectionalLight} that is updated every frame.
+ */
+public class SunLight implements MapManager.MapListener, Disposable {
+    private static final String TAG = SunLight.class.getSimpleName();
+    // pixels of the baked light map per world unit
+    private static final int BAKE_RESOLUTION = 16;
+
+    private final World world;
+    private final int rays;
+    private final Color color;
+    private final float direction;
+    private final DirectionalLight liveLight;
+    private final OrthographicCamera bakeCamera;
+    private RayHandler bakeHandler;
+    private boolean baked;
+    private float mapWidth;
+    private float mapHeight;
+    private int viewportX;
+    private int viewportY;
+    private int viewportWidth;
+    private int viewportHeight;
+    private FrameBuffer targetBuffer;
+
+    public SunLight(final World world, final RayHandler rayHandler, final int rays, final Color color, final float direction) {
+        this.world = world;
+        this.rays = rays;
+        this.color = new Color(color);
+        this.direction = direction;
+        this.liveLight = new DirectionalLight(rayHandler, rays, color, direction);
+        this.liveLight.setActive(false);
+        // the light map is drawn by render after the baked light was added to it
+        rayHandler.setLightMapRendering(false);
+        this.bakeCamera = new OrthographicCamera();
+        this.bakeHandler = null;
+        this.baked = true;
+        setViewport(0, 0, Gdx.graphics.getWidth(), Gdx.graphics.getHeight());
+        MapManager.getInstance().addMapListener(this);
+    }
+
+    public boolean isBaked() {
+        return baked;
+    }
+
+    public void setBaked(final boolean baked) {
+        this.baked = baked;
+        liveLight.setActive(!baked);
+        if (baked && bakeHandler == null && mapWidth > 0) {
+            bake();
+        }
+    }
+
+    /**
+     * sets the screen viewport of the game which is needed to restore it after the baked light was added to the light map
+     */
+    public void setViewport(final int x, final int y, final int width, final int height) {
+        this.viewportX = x;
+        this.viewportY = y;
+        this.viewportWidth = width;
+        this.viewportHeight = height;
+    }
+
+    /**
+     * sets the frame buffer that the game world is rendered into. The light map of the {@link RayHandler} is a frame
+     * buffer as well and ending it binds the default frame buffer. Therefore, the target buffer is bound again before
+     * the light map is rendered.
+     *
+     * @param targetBuffer frame buffer of the game world or null for the default frame buffer
+     */
+    public void setTargetBuffer(final FrameBuffer targetBuffer) {
+        this.targetBuffer = targetBuffer;
+    }
+
+    @Override
+    public void onMapChanged(final Map map, final TiledMap tiledMap) {
+        mapWidth = map.getWidth();
+        mapHeight = map.getHeight();
+        disposeBakeHandler();
+        if (baked) {
+            bake();
+        }
+    }
+
+    private void bake() {
+        final long startTime = TimeUtils.nanoTime();
+        bakeHandler = new RayHandler(world, MathUtils.ceil(mapWidth * BAKE_RESOLUTION), MathUtils.ceil(mapHeight * BAKE_RESOLUTION));
+        bakeHandler.setAmbientLight(0, 0, 0, 0);
+        bakeHandler.setBlurNum(3);
+        bakeHandler.setLightMapRendering(false);
+        final DirectionalLight sun = new DirectionalLight(bakeHandler, rays, color, direction);
+        // dynamic bodies must not be part of the baked shadows
+        sun.setContactFilter(Platformer.BIT_LIGHT, (short) 0, Platformer.BIT_GROUND);
+
+        // cast the rays over the entire map instead of the current camera view
+        bakeCamera.setToOrtho(false, mapWidth, mapHeight);
+        bakeCamera.update();
+        bakeHandler.setCombinedMatrix(bakeCamera);
+        bakeHandler.updateAndRender();
+        Gdx.app.debug(TAG, "Baked sun light in " + TimeUtils.nanosToMillis(TimeUtils.timeSinceNanos(startTime)) + " ms");
+    }
+
+    /**
+     * updates and renders the lights of the given ray handler and adds the baked sun light to its light map
+     */
+    public void render(final RayHandler rayHandler, final SpriteBatch spriteBatch, final OrthographicCamera camera) {
+        rayHandler.setCombinedMatrix(camera);
+        rayHandler.update();
+        rayHandler.render();
+        if (baked && bakeHandler != null) {
+            addBakedLight(rayHandler, spriteBatch, camera);
+        }
+        if (targetBuffer != null) {
+            targetBuffer.bind();
+        }
+        LightMapRenderer.render(rayHandler);
+    }
+
+    private void addBakedLight(final RayHandler rayHandler, final SpriteBatch spriteBatch, final OrthographicCamera camera) {
+        final FrameBuffer lightMapBuffer = rayHandler.getLightMapBuffer();
+        final Texture bakedTexture = bakeHandler.getLightMapTexture();
+        lightMapBuffer.begin();
+        spriteBatch.setProjectionMatrix(camera.combined);
+        // lights are added to each other in the light map
+        spriteBatch.setBlendFunction(GL20.GL_SRC_ALPHA, GL20.GL_ONE);
+        spriteBatch.begin();
+        // frame buffer textures are upside down
+        spriteBatch.draw(bakedTexture, 0, 0, mapWidth, mapHeight, 0, 0, bakedTexture.getWidth(), bakedTexture.getHeight(), false, true);
+        spriteBatch.end();
+        spriteBatch.setBlendFunction(GL20.GL_SRC_ALPHA, GL20.GL_ONE_MINUS_SRC_ALPHA);
+        lightMapBuffer.end(viewportX, viewportY, viewportWidth, viewportHeight);
+    }
+
+    private void disposeBakeHandler() {
+        if (bakeHandler != null) {
+            bakeHandler.dispose();
+            bakeHandler = null;
+        }
+    }
+
+    @Override
+    public void dispose() {
+        disposeBakeHandler();
+    }
+}
@@ -0,0 +1,73 @@
+package com.quillraven.platformer.map;
+/*
+ * Created by Quillraven on 25.07.2018.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2018 Quillraven
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+/**
+ * Constants of the binary map format that is written by the map compiler of the tools module and read by the
+ * {@link BinaryMapLoader}. All values are big endian.
+ * <br>
+ * <pre>
+ * file       := MAGIC VERSION properties(map) width height tileWidth tileHeight
+ *               tilesetCount tileset* layerCount layer*
+ * tileset    := name firstGid imagePath imageWidth imageHeight tileWidth tileHeight spacing margin properties
+ *               animationCount (tileID frameCount (tileID duration)*)*
+ * layer      := type name visible opacity offsetX offsetY properties (tileLayer | objectLayer)
+ * tileLayer  := width height gid[width * height]     (rows from bottom to top, gids include the Tiled flip flags)
+ * objectLayer:= objectCount object*
+ * object     := type name visible properties (rectangle | polyline | tile)
+ * rectangle  := x y width height
+ * polyline   := x y vertexCount vertex[vertexCount]
+ * tile       := gid x y scaleX scaleY rotation
+ * properties := count (key type value)*
+ * string     := byteLength utf8Bytes
+ * </pre>
+ * Object coordinates are already converted to the y-up coordinate system of libgdx and the object properties contain
+ * the same values as the ones created by the TmxMapLoader (x, y, width, height, id, type, gid, ...).
+ */
+public final class BinaryMapFormat {
+    public static final String FILE_EXTENSION = ".pmap";
+    // "PMAP"
+    public static final int MAGIC = 0x504D4150;
+    public static final int VERSION = 1;
+
+    public static final byte LAYER_TILES = 0;
+    public static final byte LAYER_OBJECTS = 1;
+
+    public static final byte OBJECT_RECTANGLE = 0;
+    public static final byte OBJECT_POLYLINE = 1;
+    public static final byte OBJECT_TILE = 2;
+
+    public static final byte PROPERTY_STRING = 0;
+    public static final byte PROPERTY_INT = 1;
+    public static final byte PROPERTY_FLOAT = 2;
+    public static final byte PROPERTY_BOOLEAN = 3;
+
+    // flags of a gid (same as in the Tiled TMX format)
+    public static final int FLAG_FLIP_HORIZONTALLY = 0x80000000;
+    public static final int FLAG_FLIP_VERTICALLY = 0x40000000;
+    public static final int FLAG_FLIP_DIAGONALLY = 0x20000000;
+    public static final int MASK_CLEAR = 0xE0000000;
+
+    private BinaryMapFormat() {
+    }
+}
@@ -0,0 +1,398 @@
+package com.quillraven.platformer.map;
+/*
+ * Created by Quillraven on 25.07.2018.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2018 Quillraven
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import com.badlogic.gdx.Application;
+import com.badlogic.gdx.Files;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.assets.AssetDescriptor;
+import com.badlogic.gdx.assets.AssetLoaderParameters;
+import com.badlogic.gdx.assets.AssetManager;
+import com.badlogic.gdx.assets.loaders.AsynchronousAssetLoader;
+import com.badlogic.gdx.assets.loaders.FileHandleResolver;
+import com.badlogic.gdx.assets.loaders.TextureLoader;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.maps.MapLayer;
+import com.badlogic.gdx.maps.MapObject;
+import com.badlogic.gdx.maps.MapProperties;
+import com.badlogic.gdx.maps.objects.PolylineMapObject;
+import com.badlogic.gdx.maps.objects.RectangleMapObject;
+import com.badlogic.gdx.maps.tiled.TiledMap;
+import com.badlogic.gdx.maps.tiled.TiledMapTile;
+import com.badlogic.gdx.maps.tiled.TiledMapTileLayer;
+import com.badlogic.gdx.maps.tiled.TiledMapTileSet;
+import com.badlogic.gdx.maps.tiled.objects.TiledMapTileMapObject;
+import com.badlogic.gdx.maps.tiled.tiles.AnimatedTiledMapTile;
+import com.badlogic.gdx.maps.tiled.tiles.StaticTiledMapTile;
+import com.badlogic.gdx.math.Polyline;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.IntArray;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**
+ * Loads a {@link TiledMap} from the binary format of {@link BinaryMapFormat}. Compared to the TmxMapLoader there is no
+ * XML parsing, base64 decoding or zlib inflation. The file is memory mapped if it is a real file of the file system.
+ * Otherwise (f.e. internal files of an android APK) it is read into a heap buffer.
+ * <br>
+ * The created map contains the same tilesets, tiles, layers, objects and properties as a map that is loaded by the
+ * TmxMapLoader. Tiles are created for the whole grid of a tileset image like the TmxMapLoader does.
+ */
+public class BinaryMapLoader extends AsynchronousAssetLoader<TiledMap, BinaryMapLoader.Parameters> {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private TiledMap map;
+
+    public BinaryMapLoader(final FileHandleResolver resolver) {
+        super(resolver);
+        this.map = null;
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public Array<AssetDescriptor> getDependencies(final String fileName, final FileHandle file, final Parameters parameter) {
+        final TextureLoader.TextureParameter textureParameter = new TextureLoader.TextureParameter();
+        if (parameter != null) {
+            textureParameter.genMipMaps = parameter.generateMipMaps;
+            textureParameter.minFilter = parameter.textureMinFilter;
+            textureParameter.magFilter = parameter.textureMagFilter;
+        }
+
+        final Array<AssetDescriptor> dependencies = new Array<>();
+        final ByteBuffer buffer = mapFile(file);
+        readHeader(buffer, file);
+        readProperties(buffer, new MapProperties());
+        // width, height, tileWidth, tileHeight
+        buffer.position(buffer.position() + 16);
+        final int numTilesets = buffer.getInt();
+        for (int i = 0; i < numTilesets; ++i) {
+            final TilesetInfo info = readTilesetInfo(buffer);
+            dependencies.add(new AssetDescriptor<>(getRelativeFileHandle(file, info.imagePath), Texture.class, textureParameter));
+            readProperties(buffer, new MapProperties());
+            skipAnimations(buffer);
+        }
+        return dependencies;
+    }
+
+    @Override
+    public void loadAsync(final AssetManager manager, final String fileName, final FileHandle file, final Parameters parameter) {
+        final ByteBuffer buffer = mapFile(file);
+        readHeader(buffer, file);
+
+        map = new TiledMap();
+        readProperties(buffer, map.getProperties());
+        final int width = buffer.getInt();
+        final int height = buffer.getInt();
+        final int tileWidth = buffer.getInt();
+        final int tileHeight = buffer.getInt();
+
+        final int numTilesets = buffer.getInt();
+        for (int i = 0; i < numTilesets; ++i) {
+            map.getTileSets().addTileSet(readTileset(buffer, manager, file));
+        }
+
+        final int numLayers = buffer.getInt();
+        for (int i = 0; i < numLayers; ++i) {
+            map.getLayers().add(readLayer(buffer, width, height, tileWidth, tileHeight));
+        }
+    }
+
+    @Override
+    public TiledMap loadSync(final AssetManager manager, final String fileName, final FileHandle file, final Parameters parameter) {
+        final TiledMap result = map;
+        map = null;
+        return result;
+    }
+
+    private ByteBuffer mapFile(final FileHandle file) {
+        final boolean isPackaged = file.type() == Files.FileType.Classpath || (file.type() == Files.FileType.Internal && Gdx.app.getType() == Application.ApplicationType.Android);
+        if (isPackaged || !file.file().exists()) {
+            return ByteBuffer.wrap(file.readBytes());
+        }
+
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file.file(), "r"); FileChannel channel = randomAccessFile.getChannel()) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException e) {
+            throw new GdxRuntimeException("Could not map file " + file.path(), e);
+        }
+    }
+
+    private void readHeader(final ByteBuffer buffer, final FileHandle file) {
+        if (buffer.getInt() != BinaryMapFormat.MAGIC) {
+            throw new GdxRuntimeException("File is not a binary map: " + file.path());
+        }
+        final int version = buffer.getInt();
+        if (version != BinaryMapFormat.VERSION) {
+            throw new GdxRuntimeException("Unsupported binary map version " + version + " of " + file.path() + ". Please recompile the map");
+        }
+    }
+
+    private String readString(final ByteBuffer buffer) {
+        final byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, UTF8);
+    }
+
+    private void readProperties(final ByteBuffer buffer, final MapProperties properties) {
+        final int numProperties = buffer.getInt();
+        for (int i = 0; i < numProperties; ++i) {
+            final String key = readString(buffer);
+            final byte type = buffer.get();
+            switch (type) {
+                case BinaryMapFormat.PROPERTY_STRING:
+                    properties.put(key, readString(buffer));
+                    break;
+                case BinaryMapFormat.PROPERTY_INT:
+                    properties.put(key, buffer.getInt());
+                    break;
+                case BinaryMapFormat.PROPERTY_FLOAT:
+                    properties.put(key, buffer.getFloat());
+                    break;
+                case BinaryMapFormat.PROPERTY_BOOLEAN:
+                    properties.put(key, buffer.get() != 0);
+                    break;
+                default:
+                    throw new GdxRuntimeException("Unsupported property type " + type + " of property " + key);
+            }
+        }
+    }
+
+    private TilesetInfo readTilesetInfo(final ByteBuffer buffer) {
+        final TilesetInfo info = new TilesetInfo();
+        info.name = readString(buffer);
+        info.firstGid = buffer.getInt();
+        info.imagePath = readString(buffer);
+        info.imageWidth = buffer.getInt();
+        info.imageHeight = buffer.getInt();
+        info.tileWidth = buffer.getInt();
+        info.tileHeight = buffer.getInt();
+        info.spacing = buffer.getInt();
+        info.margin = buffer.getInt();
+        return info;
+    }
+
+    private void skipAnimations(final ByteBuffer buffer) {
+        final int numAnimations = buffer.getInt();
+        for (int i = 0; i < numAnimations; ++i) {
+            // tile id
+            buffer.getInt();
+            // frames of tile id and duration
+            buffer.position(buffer.position() + buffer.getInt() * 8);
+        }
+    }
+
+    private TiledMapTileSet readTileset(final ByteBuffer buffer, final AssetManager manager, final FileHandle file) {
+        final TilesetInfo info = readTilesetInfo(buffer);
+        final FileHandle imageFile = getRelativeFileHandle(file, info.imagePath);
+        final Texture texture = manager.get(imageFile.path(), Texture.class);
+
+        final TiledMapTileSet tileset = new TiledMapTileSet();
+        tileset.setName(info.name);
+        final MapProperties properties = tileset.getProperties();
+        properties.put("firstgid", info.firstGid);
+        properties.put("imagesource", imageFile.path());
+        properties.put("imagewidth", info.imageWidth);
+        properties.put("imageheight", info.imageHeight);
+        properties.put("tilewidth", info.tileWidth);
+        properties.put("tileheight", info.tileHeight);
+        properties.put("margin", info.margin);
+        properties.put("spacing", info.spacing);
+        readProperties(buffer, properties);
+
+        final int stopWidth = texture.getWidth() - info.tileWidth;
+        final int stopHeight = texture.getHeight() - info.tileHeight;
+        int id = info.firstGid;
+        for (int y = info.margin; y <= stopHeight; y += info.tileHeight + info.spacing) {
+            for (int x = info.margin; x <= stopWidth; x += info.tileWidth + info.spacing) {
+                final StaticTiledMapTile tile = new StaticTiledMapTile(new TextureRegion(texture, x, y, info.tileWidth, info.tileHeight));
+                tile.setId(id);
+                tileset.putTile(id++, tile);
+            }
+        }
+
+        final int numAnimations = buffer.getInt();
+        for (int i = 0; i < numAnimations; ++i) {
+            final int tileID = info.firstGid + buffer.getInt();
+            final int numFrames = buffer.getInt();
+            final Array<StaticTiledMapTile> frameTiles = new Array<>(numFrames);
+            final IntArray intervals = new IntArray(numFrames);
+            for (int j = 0; j < numFrames; ++j) {
+                frameTiles.add((StaticTiledMapTile) tileset.getTile(info.firstGid + buffer.getInt()));
+                intervals.add(buffer.getInt());
+            }
+            final AnimatedTiledMapTile animatedTile = new AnimatedTiledMapTile(intervals, frameTiles);
+            animatedTile.setId(tileID);
+            tileset.putTile(tileID, animatedTile);
+        }
+        return tileset;
+    }
+
+    private MapLayer readLayer(final ByteBuffer buffer, final int mapWidth, final int mapHeight, final int tileWidth, final int tileHeight) {
+        final byte type = buffer.get();
+        final String name = readString(buffer);
+        final boolean visible = buffer.get() != 0;
+        final float opacity = buffer.getFloat();
+        final float offsetX = buffer.getFloat();
+        final float offsetY = buffer.getFloat();
+        final MapProperties properties = new MapProperties();
+        readProperties(buffer, properties);
+
+        final MapLayer layer;
+        if (type == BinaryMapFormat.LAYER_TILES) {
+            final int width = buffer.getInt();
+            final int height = buffer.getInt();
+            final TiledMapTileLayer tileLayer = new TiledMapTileLayer(width, height, tileWidth, tileHeight);
+            for (int y = 0; y < height; ++y) {
+                for (int x = 0; x < width; ++x) {
+                    final int gid = buffer.getInt();
+                    if (gid != 0) {
+                        tileLayer.setCell(x, y, createCell(gid));
+                    }
+                }
+            }
+            layer = tileLayer;
+        } else if (type == BinaryMapFormat.LAYER_OBJECTS) {
+            layer = new MapLayer();
+            final int numObjects = buffer.getInt();
+            for (int i = 0; i < numObjects; ++i) {
+                layer.getObjects().add(readObject(buffer));
+            }
+        } else {
+            throw new GdxRuntimeException("Unsupported layer type " + type + " of layer " + name);
+        }
+
+        layer.setName(name);
+        layer.setVisible(visible);
+        layer.setOpacity(opacity);
+        layer.setOffsetX(offsetX);
+        layer.setOffsetY(offsetY);
+        layer.getProperties().putAll(properties);
+        return layer;
+    }
+
+    private TiledMapTileLayer.Cell createCell(final int gid) {
+        final boolean flipHorizontally = (gid & BinaryMapFormat.FLAG_FLIP_HORIZONTALLY) != 0;
+        final boolean flipVertically = (gid & BinaryMapFormat.FLAG_FLIP_VERTICALLY) != 0;
+        final boolean flipDiagonally = (gid & BinaryMapFormat.FLAG_FLIP_DIAGONALLY) != 0;
+        final TiledMapTileLayer.Cell cell = new TiledMapTileLayer.Cell();
+        cell.setTile(map.getTileSets().getTile(gid & ~BinaryMapFormat.MASK_CLEAR));
+        // same flip and rotation rules as the TmxMapLoader
+        if (flipDiagonally) {
+            if (flipHorizontally && flipVertically) {
+                cell.setFlipHorizontally(true);
+                cell.setRotation(TiledMapTileLayer.Cell.ROTATE_270);
+            } else if (flipHorizontally) {
+                cell.setRotation(TiledMapTileLayer.Cell.ROTATE_270);
+            } else if (flipVertically) {
+                cell.setRotation(TiledMapTileLayer.Cell.ROTATE_90);
+            } else {
+                cell.setFlipVertically(true);
+                cell.setRotation(TiledMapTileLayer.Cell.ROTATE_270);
+            }
+        } else {
+            cell.setFlipHorizontally(flipHorizontally);
+            cell.setFlipVertically(flipVertically);
+        }
+        return cell;
+    }
+
+    private MapObject readObject(final ByteBuffer buffer) {
+        final byte type = buffer.get();
+        final String name = readString(buffer);
+        final boolean visible = buffer.get() != 0;
+        final MapProperties properties = new MapProperties();
+        readProperties(buffer, properties);
+
+        final MapObject mapObject;
+        if (type == BinaryMapFormat.OBJECT_RECTANGLE) {
+            mapObject = new RectangleMapObject(buffer.getFloat(), buffer.getFloat(), buffer.getFloat(), buffer.getFloat());
+        } else if (type == BinaryMapFormat.OBJECT_POLYLINE) {
+            final float x = buffer.getFloat();
+            final float y = buffer.getFloat();
+            final float[] vertices = new float[buffer.getInt()];
+            for (int i = 0; i < vertices.length; ++i) {
+                vertices[i] = buffer.getFloat();
+            }
+            final Polyline polyline = new Polyline(vertices);
+            polyline.setPosition(x, y);
+            mapObject = new PolylineMapObject(polyline);
+        } else if (type == BinaryMapFormat.OBJECT_TILE) {
+            final int gid = buffer.getInt();
+            final TiledMapTile tile = map.getTileSets().getTile(gid & ~BinaryMapFormat.MASK_CLEAR);
+            final TiledMapTileMapObject tileMapObject = new TiledMapTileMapObject(tile, (gid & BinaryMapFormat.FLAG_FLIP_HORIZONTALLY) != 0, (gid & BinaryMapFormat.FLAG_FLIP_VERTICALLY) != 0);
+            tileMapObject.setX(buffer.getFloat());
+            tileMapObject.setY(buffer.getFloat());
+            tileMapObject.setScaleX(buffer.getFloat());
+            tileMapObject.setScaleY(buffer.getFloat());
+            tileMapObject.setRotation(buffer.getFloat());
+            mapObject = tileMapObject;
+        } else {
+            throw new GdxRuntimeException("Unsupported object type " + type + " of object " + name);
+        }
+
+        mapObject.setName(name.isEmpty() ? null : name);
+        mapObject.setVisible(visible);
+        mapObject.getProperties().putAll(properties);
+        return mapObject;
+    }
+
+    /**
+     * Resolves a path that is relative to the map file. Same as the TmxMapLoader to get the same asset names.
+     */
+    private static FileHandle getRelativeFileHandle(final FileHandle file, final String path) {
+        FileHandle result = file.parent();
+        for (final String token : path.split("/")) {
+            if ("..".equals(token)) {
+                result = result.parent();
+            } else if (!token.isEmpty() && !".".equals(token)) {
+                result = result.child(token);
+            }
+        }
+        return result;
+    }
+
+    private static class TilesetInfo {
+        private String name;
+        private int firstGid;
+        private String imagePath;
+        private int imageWidth;
+        private int imageHeight;
+        private int tileWidth;
+        private int tileHeight;
+        private int spacing;
+        private int margin;
+    }
+
+    public static class Parameters extends AssetLoaderParameters<TiledMap> {
+        public boolean generateMipMaps = false;
+        public Texture.TextureFilter textureMinFilter = Texture.TextureFilter.Nearest;
+        public Texture.TextureFilter textureMagFilter = Texture.TextureFilter.Nearest;
+    }
+}
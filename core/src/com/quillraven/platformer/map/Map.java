@@ -22,11 +22,8 @@ package com.quillraven.platformer.map;
  * SOFTWARE.
  */
 
-import com.badlogic.gdx.maps.MapLayer;
 import com.badlogic.gdx.maps.MapProperties;
 import com.badlogic.gdx.maps.tiled.TiledMap;
-import com.badlogic.gdx.maps.tiled.objects.TiledMapTileMapObject;
-import com.badlogic.gdx.utils.Array;
 
 import static com.quillraven.platformer.Platformer.PPM;
 
@@ -41,36 +38,21 @@ public class Map {
     private final String name;
     private final float width;
     private final float height;
-    private final Array<Integer> cloudsIdx;
-    private final Array<Integer> groundIdx;
-    private final Array<Integer> bgdLayerIdx;
-    private final Array<Integer> fgdLayerIdx;
+    private final float regionWidth;
+    private final MapRenderPlan renderPlan;
+    private final TileOcclusion tileOcclusion;
     private float startX;
     private float startY;
     private int maxCoins;
-    private TiledMapTileMapObject coinFlagObject;
+    private TileAnimation coinFlagAnimation;
     private final TiledMap tiledMap;
 
     Map(final MapManager.MapType mapType, final TiledMap tiledMap) {
         this.mapType = mapType;
         this.tiledMap = tiledMap;
-        this.bgdLayerIdx = new Array<>();
-        this.fgdLayerIdx = new Array<>();
-        this.cloudsIdx = new Array<>();
-        this.groundIdx = new Array<>();
         final MapProperties mapProperties = tiledMap.getProperties();
-        for (final MapLayer mapLayer : tiledMap.getLayers()) {
-            if (mapLayer.getName().startsWith("background")) {
-                bgdLayerIdx.add(tiledMap.getLayers().getIndex(mapLayer));
-            } else if (mapLayer.getName().startsWith("foreground")) {
-                fgdLayerIdx.add(tiledMap.getLayers().getIndex(mapLayer));
-            } else if ("clouds".equals(mapLayer.getName())) {
-                cloudsIdx.add(tiledMap.getLayers().getIndex(mapLayer));
-            } else if ("ground".equals(mapLayer.getName())) {
-                groundIdx.add(tiledMap.getLayers().getIndex(mapLayer));
-            }
-        }
-        groundIdx.add(tiledMap.getLayers().getIndex("objects"));
+        this.renderPlan = new MapRenderPlan(tiledMap);
+        this.tileOcclusion = new TileOcclusion(tiledMap);
 
         final String nextLevelStr = mapProperties.get("nextLevel", String.class);
         this.nextLevel = nextLevelStr == null || nextLevelStr.isEmpty() ? null : MapManager.MapType.valueOf(nextLevelStr);
@@ -78,8 +60,10 @@ public class Map {
         this.width = mapProperties.get("width", Integer.class) * mapProperties.get("tilewidth", Integer.class) / PPM;
         this.height = mapProperties.get("height", Integer.class) * mapProperties.get("tileheight", Integer.class) / PPM;
         this.name = mapProperties.get("name", String.class);
+        // width of a simulation region in tiles (refer to RegionActivationSystem)
+        this.regionWidth = mapProperties.get("regionWidth", 12, Integer.class) * mapProperties.get("tilewidth", Integer.class) / PPM;
         this.maxCoins = 0;
-        this.coinFlagObject = null;
+        this.coinFlagAnimation = null;
 
         this.startX = mapProperties.get("startX", Integer.class) * PPM;
         this.startY = mapProperties.get("startY", Integer.class) * PPM;
@@ -113,20 +97,16 @@ public class Map {
         return height;
     }
 
-    public Integer[] getBackgroundLayerIndex() {
-        return bgdLayerIdx.toArray(Integer.class);
+    public float getRegionWidth() {
+        return regionWidth;
     }
 
-    public Integer[] getForegroundLayerIndex() {
-        return fgdLayerIdx.toArray(Integer.class);
+    public MapRenderPlan getRenderPlan() {
+        return renderPlan;
     }
 
-    public Integer[] getCloudsIdx() {
-        return cloudsIdx.toArray(Integer.class);
-    }
-
-    public Integer[] getGroundIdx() {
-        return groundIdx.toArray(Integer.class);
+    public TileOcclusion getTileOcclusion() {
+        return tileOcclusion;
     }
 
     public String getName() {
@@ -141,11 +121,11 @@ public class Map {
         this.maxCoins = maxCoins;
     }
 
-    public TiledMapTileMapObject getCoinFlagObject() {
-        return coinFlagObject;
+    public TileAnimation getCoinFlagAnimation() {
+        return coinFlagAnimation;
     }
 
-    public void setCoinFlagObject(final TiledMapTileMapObject mapObj) {
-        this.coinFlagObject = mapObj;
+    public void setCoinFlagAnimation(final TileAnimation coinFlagAnimation) {
+        this.coinFlagAnimation = coinFlagAnimation;
     }
 }
@@ -37,15 +37,16 @@ import com.badlogic.gdx.maps.tiled.tiles.AnimatedTiledMapTile;
 import com.badlogic.gdx.math.Polyline;
 import com.badlogic.gdx.math.Rectangle;
 import com.badlogic.gdx.physics.box2d.Body;
-import com.badlogic.gdx.physics.box2d.BodyDef;
-import com.badlogic.gdx.physics.box2d.ChainShape;
-import com.badlogic.gdx.physics.box2d.FixtureDef;
 import com.badlogic.gdx.physics.box2d.World;
 import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.GdxRuntimeException;
 import com.badlogic.gdx.utils.ObjectMap;
-import com.quillraven.platformer.Platformer;
+import com.badlogic.gdx.utils.TimeUtils;
+import com.quillraven.platformer.AssetResidencyManager;
+import com.quillraven.platformer.MetricsManager;
 import com.quillraven.platformer.SoundManager;
 import com.quillraven.platformer.ecs.EntityEngine;
+import com.quillraven.platformer.physics.Box2DPhysicsWorld;
 
 import box2dLight.RayHandler;
 
@@ -54,7 +55,7 @@ import static com.quillraven.platformer.Platformer.PPM;
 /**
  * TODO add class description
  */
-public class MapManager {
+public class MapManager implements AssetResidencyManager.ResidencyListener {
     private final static String TAG = MapManager.class.getSimpleName();
 
     private static final MapManager instance = new MapManager();
@@ -62,18 +63,43 @@ public class MapManager {
     private final ObjectMap<MapType, Map> mapCache;
     private final Array<MapListener> mapListeners;
     private Map currentMap;
-    private final BodyDef bodyDef;
-    private final FixtureDef fixtureDef;
+    // music of the current map; it is acquired as long as the map is the current map
+    private SoundManager.SoundType currentMusicType;
+    // next level and its music that are loaded in the background while the current level is played
+    private MapType preloadMapType;
+    private SoundManager.SoundType preloadMusicType;
+    // map that is loaded with a loading screen; it is acquired until it becomes the current map. The music is only
+    // set if it was handed over by a preload
+    private MapType pendingMapType;
+    private SoundManager.SoundType pendingMusicType;
+    private float preloadFraction;
     private final Array<Body> worldBodies;
+    // map objects of the current map whose bodies and entities are not created yet (refer to updateBuild)
+    private final Array<MapObject> pendingMapObjects;
+    private int pendingMapObjectIdx;
+    // true from changing the map until its listeners are notified; also for maps without any map objects
+    private boolean buildPending;
+    private long buildTime;
+    private int buildSlices;
     private final float[] rectVertices = new float[8];
 
     private MapManager() {
         this.mapListeners = new Array<>();
         this.currentMap = null;
+        this.currentMusicType = null;
+        this.preloadMapType = null;
+        this.preloadMusicType = null;
+        this.pendingMapType = null;
+        this.pendingMusicType = null;
+        this.preloadFraction = 0;
         this.mapCache = new ObjectMap<>();
-        this.bodyDef = new BodyDef();
-        this.fixtureDef = new FixtureDef();
         this.worldBodies = new Array<>();
+        this.pendingMapObjects = new Array<>();
+        this.pendingMapObjectIdx = 0;
+        this.buildPending = false;
+        this.buildTime = 0;
+        this.buildSlices = 0;
+        AssetResidencyManager.getInstance().addResidencyListener(this);
     }
 
     public static MapManager getInstance() {
@@ -88,16 +114,89 @@ public class MapManager {
         this.mapListeners.removeValue(listener, true);
     }
 
-    public boolean changeMap(final AssetManager assetManager, final MapType mapType, final World world, final RayHandler rayHandler, final EntityEngine entityEngine, boolean resetMap) {
-        if (assetManager.isLoaded(mapType.filePath)) {
+    /**
+     * Sets the fraction of the current map's width that the player needs to pass until the next level gets preloaded.
+     * 0 means that the next level is preloaded as soon as the current level starts.
+     */
+    public void setPreloadFraction(final float preloadFraction) {
+        if (preloadFraction < 0 || preloadFraction > 1) {
+            throw new GdxRuntimeException("Preload fraction must be between 0 and 1: " + preloadFraction);
+        }
+        this.preloadFraction = preloadFraction;
+    }
+
+    /**
+     * Starts loading the next level in the background once the player passed the preload fraction of the current map
+     * and continues loading it. Needs to be called every update while a level is played.
+     */
+    public void updatePreload(final AssetManager assetManager, final float playerX) {
+        if (currentMap == null) {
+            return;
+        }
+
+        final MapType nextLevel = currentMap.getNextLevel();
+        if (preloadMapType == null && nextLevel != null && !assetManager.isLoaded(nextLevel.filePath) && playerX >= currentMap.getWidth() * preloadFraction) {
+            Gdx.app.debug(TAG, "Preloading map " + nextLevel);
+            preloadMapType = nextLevel;
+            assetManager.load(nextLevel.filePath, TiledMap.class);
+            AssetResidencyManager.getInstance().acquire(assetManager, nextLevel.filePath);
+        }
+        if (preloadMapType != null && preloadMusicType == null && assetManager.isLoaded(preloadMapType.filePath)) {
+            // the music is a property of the map and can therefore only be preloaded once the map is loaded
+            preloadMusicType = getMusicType(assetManager.get(preloadMapType.filePath, TiledMap.class));
+            Gdx.app.debug(TAG, "Preloading music " + preloadMusicType + " of map " + preloadMapType);
+            SoundManager.getInstance().loadMusic(assetManager, preloadMusicType);
+            AssetResidencyManager.getInstance().acquire(assetManager, preloadMusicType.getFilePath());
+        }
+        if (isPreloading(assetManager)) {
+            assetManager.update();
+        }
+    }
+
+    /**
+     * @return true if the next level or its music is currently loaded in the background. Loading them does not require a loading screen
+     */
+    public boolean isPreloading(final AssetManager assetManager) {
+        if (preloadMapType == null) {
+            return false;
+        }
+        return !assetManager.isLoaded(preloadMapType.filePath) || (preloadMusicType != null && !assetManager.isLoaded(preloadMusicType.getFilePath()));
+    }
+
+    /**
+     * Changes the current map. If the map is loaded then its bodies and entities are created afterwards by
+     * {@link #updateBuild(Box2DPhysicsWorld, RayHandler, EntityEngine, float)} and the {@link MapListener}s are notified once
+     * all of them are created.
+     *
+     * @return false if the map or its music is not loaded yet. In that case they are queued for loading
+     */
+    public boolean changeMap(final AssetManager assetManager, final MapType mapType, final Box2DPhysicsWorld physicsWorld, final RayHandler rayHandler, final EntityEngine entityEngine, boolean resetMap) {
+        final boolean mapLoaded = assetManager.isLoaded(mapType.filePath);
+        final SoundManager.SoundType musicType = mapLoaded ? getMusicType(assetManager.get(mapType.filePath, TiledMap.class)) : null;
+        if (mapLoaded && SoundManager.getInstance().loadMusic(assetManager, musicType)) {
             if (!resetMap && currentMap != null && mapType.equals(currentMap.getMapType())) {
                 // map already loaded
-                SoundManager.getInstance().playSound(SoundManager.SoundType.valueOf(currentMap.getTiledMap().getProperties().get("music", String.class)));
+                SoundManager.getInstance().playSound(musicType);
                 return true;
             }
 
             // map loaded -> change it
             Gdx.app.debug(TAG, "Changing map to " + mapType);
+            if (preloadMapType == mapType) {
+                // only a finished preload is a hit; maps of a pending load were loaded with a loading screen
+                MetricsManager.getInstance().addValue(MetricsManager.MetricType.MAP_PRELOAD_HITS, 1);
+            }
+            // the new map and its music need to be acquired before the previous, the preloaded and the pending ones are released to keep them loaded
+            final AssetResidencyManager residencyManager = AssetResidencyManager.getInstance();
+            residencyManager.acquire(assetManager, mapType.filePath);
+            residencyManager.acquire(assetManager, musicType.getFilePath());
+            if (currentMap != null) {
+                residencyManager.release(assetManager, currentMap.getMapType().filePath);
+                residencyManager.release(assetManager, currentMusicType.getFilePath());
+            }
+            currentMusicType = musicType;
+            releasePreload(assetManager);
+            releasePending(assetManager);
             Map map = mapCache.get(mapType);
             if (map == null) {
                 Gdx.app.debug(TAG, "Creating new map " + mapType);
@@ -107,28 +206,76 @@ public class MapManager {
 
             if (currentMap != null) {
                 Gdx.app.debug(TAG, "Removing current bodies and entities");
-                removeMapBodies(world, entityEngine);
+                removeMapBodies(physicsWorld.getWorld(), entityEngine);
             }
 
             currentMap = map;
             currentMap.setMaxCoins(0);
-            createMapBodies(currentMap.getTiledMap().getLayers(), world, rayHandler, entityEngine);
-
-            SoundManager.getInstance().playSound(SoundManager.SoundType.valueOf(currentMap.getTiledMap().getProperties().get("music", String.class)));
-
-            for (final MapListener listener : mapListeners) {
-                listener.onMapChanged(currentMap, currentMap.getTiledMap());
-            }
-
+            startBuild(currentMap.getTiledMap().getLayers());
             return true;
         } else {
-            // map not loaded yet
-            Gdx.app.debug(TAG, "Map " + mapType + " not loaded yet");
-            assetManager.load(mapType.filePath, TiledMap.class);
+            // map or its music not loaded yet
+            Gdx.app.debug(TAG, "Map " + mapType + " or its music not loaded yet");
+            if (currentMap != null) {
+                MetricsManager.getInstance().addValue(MetricsManager.MetricType.MAP_PRELOAD_MISSES, 1);
+            }
+            if (pendingMapType != mapType) {
+                releasePending(assetManager);
+                if (preloadMapType == mapType) {
+                    // a preload that is not finished yet becomes a regular load with a loading screen. The map and
+                    // its music are already queued and their references are handed over to the pending load
+                    pendingMusicType = preloadMusicType;
+                    preloadMapType = null;
+                    preloadMusicType = null;
+                } else {
+                    releasePreload(assetManager);
+                    if (!mapLoaded) {
+                        assetManager.load(mapType.filePath, TiledMap.class);
+                    }
+                    AssetResidencyManager.getInstance().acquire(assetManager, mapType.filePath);
+                }
+                pendingMapType = mapType;
+            }
             return false;
         }
     }
 
+    private void releasePreload(final AssetManager assetManager) {
+        if (preloadMapType != null) {
+            AssetResidencyManager.getInstance().release(assetManager, preloadMapType.filePath);
+            preloadMapType = null;
+        }
+        if (preloadMusicType != null) {
+            AssetResidencyManager.getInstance().release(assetManager, preloadMusicType.getFilePath());
+            preloadMusicType = null;
+        }
+    }
+
+    private void releasePending(final AssetManager assetManager) {
+        if (pendingMapType != null) {
+            AssetResidencyManager.getInstance().release(assetManager, pendingMapType.filePath);
+            pendingMapType = null;
+        }
+        if (pendingMusicType != null) {
+            AssetResidencyManager.getInstance().release(assetManager, pendingMusicType.getFilePath());
+            pendingMusicType = null;
+        }
+    }
+
+    private static SoundManager.SoundType getMusicType(final TiledMap tiledMap) {
+        return SoundManager.SoundType.valueOf(tiledMap.getProperties().get("music", String.class));
+    }
+
+    @Override
+    public void onAssetUnloaded(final String fileName) {
+        for (final MapType mapType : MapType.values()) {
+            if (mapType.filePath.equals(fileName)) {
+                Gdx.app.debug(TAG, "Removing unloaded map " + mapType + " from cache");
+                mapCache.remove(mapType);
+            }
+        }
+    }
+
     public Map getCurrentMap() {
         return currentMap;
     }
@@ -147,13 +294,18 @@ public class MapManager {
         entityEngine.removeAllEntities();
     }
 
-    private void createMapBodies(final MapLayers mapLayers, final World world, final RayHandler rayHandler, final EntityEngine entityEngine) {
-        createMapBodiesForLayer(mapLayers, "collisions", world, rayHandler, entityEngine);
-        createMapBodiesForLayer(mapLayers, "objects", world, rayHandler, entityEngine);
-        createMapBodiesForLayer(mapLayers, "enemies", world, rayHandler, entityEngine);
+    private void startBuild(final MapLayers mapLayers) {
+        pendingMapObjects.clear();
+        pendingMapObjectIdx = 0;
+        buildPending = true;
+        buildTime = 0;
+        buildSlices = 0;
+        addPendingMapObjects(mapLayers, "collisions");
+        addPendingMapObjects(mapLayers, "objects");
+        addPendingMapObjects(mapLayers, "enemies");
     }
 
-    private void createMapBodiesForLayer(final MapLayers mapLayers, final String layerName, final World world, final RayHandler rayHandler, final EntityEngine entityEngine) {
+    private void addPendingMapObjects(final MapLayers mapLayers, final String layerName) {
         final MapLayer layer = mapLayers.get(layerName);
         if (layer == null) {
             Gdx.app.log(TAG, "Map does not have layer " + layerName);
@@ -161,64 +313,90 @@ public class MapManager {
         }
 
         for (MapObject mapObj : layer.getObjects()) {
-            if (mapObj instanceof RectangleMapObject) {
-                final RectangleMapObject rectMapObj = (RectangleMapObject) mapObj;
-                if (rectMapObj.getRectangle().width == 0) {
-                    // point object --> create enemy
-                    createEnemy(rectMapObj, world, rayHandler, entityEngine);
-                } else {
-                    // rect object --> create collision object
-                    createRectangleCollisionBody(rectMapObj, world);
-                }
-            } else if (mapObj instanceof PolylineMapObject) {
-                // create polyline collision object
-                createPolylineCollisionBody(((PolylineMapObject) mapObj).getPolyline(), world);
-            } else if (mapObj instanceof TiledMapTileMapObject) {
-                createMapObject((TiledMapTileMapObject) mapObj, world, entityEngine);
-            } else {
-                Gdx.app.error(TAG, "Unsupported map object type: " + mapObj.getClass().getSimpleName());
-            }
+            pendingMapObjects.add(mapObj);
         }
     }
 
-    private void createEnemy(final RectangleMapObject mapObj, final World world, final RayHandler rayHandler, final EntityEngine entityEngine) {
-        final MapProperties properties = mapObj.getProperties();
-
-        final float x = properties.get("x", Float.class) / PPM;
-        final float y = properties.get("y", Float.class) / PPM;
-        entityEngine.createEnemy(world, rayHandler, x, y, properties.get("enemyType", String.class));
+    /**
+     * @return true if the bodies and entities of the current map are not completely created yet. The map is not
+     * playable until then
+     */
+    public boolean isBuilding() {
+        return buildPending;
     }
 
-    private Body createCollisionBody(final World world, final float x, final float y, final float[] vertices, final boolean createLoop, final short categoryBit, final boolean isSensor) {
-        return createCollisionBody(world, x, y, vertices, createLoop, categoryBit, isSensor, null);
+    /**
+     * Creates the bodies and entities of the current map until the given time budget is used up. At least one map
+     * object is created per call. Once all of them are created, the music of the map is played and the
+     * {@link MapListener}s are notified. A map without map objects is finished with the first call.
+     *
+     * @param budgetMillis time in milliseconds that can be spent during this call
+     * @return true if the map was finished during this call
+     */
+    public boolean updateBuild(final Box2DPhysicsWorld physicsWorld, final RayHandler rayHandler, final EntityEngine entityEngine, final float budgetMillis) {
+        if (!isBuilding()) {
+            return false;
+        }
+
+        final long startTime = TimeUtils.nanoTime();
+        final long budgetNanos = (long) (budgetMillis * 1000000);
+        while (pendingMapObjectIdx < pendingMapObjects.size) {
+            createMapBody(pendingMapObjects.get(pendingMapObjectIdx), physicsWorld, rayHandler, entityEngine);
+            ++pendingMapObjectIdx;
+            if (TimeUtils.timeSinceNanos(startTime) >= budgetNanos) {
+                break;
+            }
+        }
+        buildTime += TimeUtils.timeSinceNanos(startTime);
+        ++buildSlices;
+
+        if (pendingMapObjectIdx < pendingMapObjects.size) {
+            return false;
+        }
+
+        pendingMapObjects.clear();
+        pendingMapObjectIdx = 0;
+        buildPending = false;
+        Gdx.app.debug(TAG, "Created " + currentMap.getMapType() + " in " + buildTime / 1000000f + " ms using " + buildSlices + " slices");
+        MetricsManager.getInstance().setValue(MetricsManager.MetricType.MAP_BUILD_TIME, buildTime / 1000000f);
+        MetricsManager.getInstance().setValue(MetricsManager.MetricType.MAP_BUILD_SLICES, buildSlices);
+
+        SoundManager.getInstance().playSound(currentMusicType);
+        for (final MapListener listener : mapListeners) {
+            listener.onMapChanged(currentMap, currentMap.getTiledMap());
+        }
+        return true;
     }
 
-    private Body createCollisionBody(final World world, final float x, final float y, final float[] vertices, final boolean createLoop, final short categoryBit, final boolean isSensor, final String userData) {
-        bodyDef.type = BodyDef.BodyType.StaticBody;
-        bodyDef.position.set(x, y);
-        final Body body = world.createBody(bodyDef);
-        final ChainShape shape = new ChainShape();
-        if (createLoop) {
-            shape.createLoop(vertices);
+    private void createMapBody(final MapObject mapObj, final Box2DPhysicsWorld physicsWorld, final RayHandler rayHandler, final EntityEngine entityEngine) {
+        if (mapObj instanceof RectangleMapObject) {
+            final RectangleMapObject rectMapObj = (RectangleMapObject) mapObj;
+            if (rectMapObj.getRectangle().width == 0) {
+                // point object --> create enemy
+                createEnemy(rectMapObj, physicsWorld, rayHandler, entityEngine);
+            } else {
+                // rect object --> create collision object
+                createRectangleCollisionBody(rectMapObj, physicsWorld);
+            }
+        } else if (mapObj instanceof PolylineMapObject) {
+            // create polyline collision object
+            createPolylineCollisionBody((PolylineMapObject) mapObj, physicsWorld);
+        } else if (mapObj instanceof TiledMapTileMapObject) {
+            createMapObject((TiledMapTileMapObject) mapObj, physicsWorld, entityEngine);
         } else {
-            shape.createChain(vertices);
+            Gdx.app.error(TAG, "Unsupported map object type: " + mapObj.getClass().getSimpleName());
         }
-        fixtureDef.shape = shape;
-        fixtureDef.friction = 0;
-        fixtureDef.filter.categoryBits = categoryBit;
-        fixtureDef.filter.maskBits = Platformer.BIT_PLAYER | Platformer.BIT_ENEMY;
-        fixtureDef.isSensor = isSensor;
-        body.createFixture(fixtureDef).setUserData(userData);
-        shape.dispose();
+    }
 
-        if ("coin".equals(userData)) {
-            currentMap.setMaxCoins(currentMap.getMaxCoins() + 1);
-        }
+    private void createEnemy(final RectangleMapObject mapObj, final Box2DPhysicsWorld physicsWorld, final RayHandler rayHandler, final EntityEngine entityEngine) {
+        final MapProperties properties = mapObj.getProperties();
 
-        return body;
+        final float x = properties.get("x", Float.class) / PPM;
+        final float y = properties.get("y", Float.class) / PPM;
+        entityEngine.createEnemy(physicsWorld, rayHandler, x, y, properties.get("enemyType", String.class));
     }
 
-    private void createRectangleCollisionBody(final RectangleMapObject mapObj, final World world) {
+    private void createRectangleCollisionBody(final RectangleMapObject mapObj, final Box2DPhysicsWorld physicsWorld) {
         final Rectangle rect = mapObj.getRectangle();
         final float halfW = rect.width / PPM * 0.5f;
         final float halfH = rect.height / PPM * 0.5f;
@@ -235,58 +413,44 @@ public class MapManager {
         rectVertices[6] = halfW;
         rectVertices[7] = -halfH;
 
-        createCollisionBody(world, rect.x / PPM + halfW, rect.y / PPM + halfH, rectVertices, true, Platformer.BIT_GROUND, false);
+        physicsWorld.createGround(rect.x / PPM + halfW, rect.y / PPM + halfH, rectVertices, true, isOneWay(mapObj));
     }
 
-    private void createPolylineCollisionBody(final Polyline polyline, final World world) {
+    private void createPolylineCollisionBody(final PolylineMapObject mapObj, final Box2DPhysicsWorld physicsWorld) {
+        final Polyline polyline = mapObj.getPolyline();
         final float[] vertices = polyline.getVertices().clone();
         for (int i = 0; i < vertices.length; i += 2) {
             vertices[i] = vertices[i] / PPM;
             vertices[i + 1] = vertices[i + 1] / PPM;
         }
 
-        createCollisionBody(world, polyline.getX() / PPM, polyline.getY() / PPM, vertices, false, Platformer.BIT_GROUND, false);
+        physicsWorld.createGround(polyline.getX() / PPM, polyline.getY() / PPM, vertices, false, isOneWay(mapObj));
     }
 
-    private void createMapObject(final TiledMapTileMapObject mapObj, final World world, final EntityEngine entityEngine) {
-        mapObj.setVisible(true); // coins might be invisible if reloading a level (check GameObjectCollisionSystem)
-        final MapProperties properties = mapObj.getProperties();
-        final float halfW = properties.get("width", Float.class) / PPM * 0.5f;
-        final float halfH = properties.get("height", Float.class) / PPM * 0.5f;
-
-        // left-bot
-        rectVertices[0] = -halfW;
-        rectVertices[1] = -halfH;
-        // left-top
-        rectVertices[2] = -halfW;
-        rectVertices[3] = halfH;
-        // right-top
-        rectVertices[4] = halfW;
-        rectVertices[5] = halfH;
-        // right-bot
-        rectVertices[6] = halfW;
-        rectVertices[7] = -halfH;
+    // collision objects are one-way platforms unless the map object has a property "oneWay" that is set to false
+    public static boolean isOneWay(final MapObject mapObj) {
+        return mapObj.getProperties().get("oneWay", true, Boolean.class);
+    }
 
-        final float centerX = properties.get("x", Float.class) / PPM + halfW;
-        final float centerY = properties.get("y", Float.class) / PPM + halfH;
-        final String userData = properties.get("userData", String.class);
-        if ("coinFlag".equals(userData)) {
-            currentMap.setCoinFlagObject(mapObj);
-            final AnimatedTiledMapTile flagPoleTile = (AnimatedTiledMapTile) mapObj.getTile();
-            final int[] intervals = flagPoleTile.getAnimationIntervals();
-            intervals[0] = 150;
-            intervals[1] = 150;
-            intervals[2] = -1;
-            flagPoleTile.setAnimationIntervals(intervals);
+    private void createMapObject(final TiledMapTileMapObject mapObj, final Box2DPhysicsWorld physicsWorld, final EntityEngine entityEngine) {
+        mapObj.setVisible(true); // coins might be invisible if reloading a level (check GameObjectCollisionSystem)
+        final String userData = mapObj.getProperties().get("userData", String.class);
+        if ("coin".equals(userData)) {
+            currentMap.setMaxCoins(currentMap.getMaxCoins() + 1);
+        } else if ("coinFlag".equals(userData)) {
+            // flag pole has 3 animation frames; the last frame is only shown once all coins are collected
+            final TileAnimation flagPoleAnimation = new TileAnimation((AnimatedTiledMapTile) mapObj.getTile());
+            flagPoleAnimation.setFrameRange(0, flagPoleAnimation.getNumFrames() - 2);
+            mapObj.getProperties().put(TileAnimation.PROPERTY_KEY, flagPoleAnimation);
+            currentMap.setCoinFlagAnimation(flagPoleAnimation);
         }
-        final Body body = createCollisionBody(world, centerX, centerY, rectVertices, true, Platformer.BIT_OBJECT, true, userData);
-        entityEngine.createGameObj(body, mapObj);
+        entityEngine.createGameObj(physicsWorld, mapObj);
     }
 
     public enum MapType {
-        LEVEL_1("maps/level1.tmx"),
-        LEVEL_2("maps/level2.tmx"),
-        LEVEL_3("maps/level3.tmx");
+        LEVEL_1("maps/level1.pmap"),
+        LEVEL_2("maps/level2.pmap"),
+        LEVEL_3("maps/level3.pmap");
 
         private final String filePath;
 
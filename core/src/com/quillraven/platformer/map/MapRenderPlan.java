@@ -0,0 +1,128 @@
+package com.quillraven.platformer.map;
+/*
+ * Created by Quillraven on 12.07.2018.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2018 Quillraven
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import com.badlogic.gdx.graphics.OrthographicCamera;
+import com.badlogic.gdx.maps.MapLayer;
+import com.badlogic.gdx.maps.MapLayers;
+import com.badlogic.gdx.maps.MapProperties;
+import com.badlogic.gdx.maps.tiled.TiledMap;
+import com.badlogic.gdx.maps.tiled.TiledMapTileLayer;
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntArray;
+
+/**
+ * Ordered list of layer groups of a map that is compiled once per map. Consecutive layers with the same parallax factor
+ * are rendered together. The parallax factors are read from the layer properties "parallaxX" and "parallaxY" (default 1).
+ * <br>
+ * All tile layers and the "objects" layer are rendered. Layers whose name starts with "foreground" are rendered after the
+ * entities and all other layers before them.
+ * <br>
+ * Instead of moving the camera for every parallax layer, the view matrix of a group is derived from the camera's
+ * combined matrix by translating it with the parallax offset.
+ */
+public class MapRenderPlan {
+    private final Array<LayerGroup> backgroundGroups;
+    private final Array<LayerGroup> foregroundGroups;
+
+    MapRenderPlan(final TiledMap tiledMap) {
+        this.backgroundGroups = new Array<>();
+        this.foregroundGroups = new Array<>();
+
+        final MapLayers mapLayers = tiledMap.getLayers();
+        for (int i = 0; i < mapLayers.getCount(); ++i) {
+            final MapLayer mapLayer = mapLayers.get(i);
+            if (!(mapLayer instanceof TiledMapTileLayer) && !"objects".equals(mapLayer.getName())) {
+                // collision and enemy layers are not rendered
+                continue;
+            }
+
+            final MapProperties properties = mapLayer.getProperties();
+            final float parallaxX = properties.get("parallaxX", 1f, Float.class);
+            final float parallaxY = properties.get("parallaxY", 1f, Float.class);
+            final Array<LayerGroup> groups = mapLayer.getName().startsWith("foreground") ? foregroundGroups : backgroundGroups;
+            if (groups.size > 0 && groups.peek().parallaxX == parallaxX && groups.peek().parallaxY == parallaxY) {
+                groups.peek().layerIdx.add(i);
+            } else {
+                groups.add(new LayerGroup(parallaxX, parallaxY, i));
+            }
+        }
+
+        for (final LayerGroup group : backgroundGroups) {
+            group.compile();
+        }
+        for (final LayerGroup group : foregroundGroups) {
+            group.compile();
+        }
+    }
+
+    /**
+     * Renders all layers that are behind the entities. The batch of the map renderer needs to be active.
+     * Afterwards the projection matrix of the batch is not the one of the camera anymore.
+     */
+    public void renderBackground(final MapRenderer mapRenderer, final OrthographicCamera camera) {
+        render(backgroundGroups, mapRenderer, camera);
+    }
+
+    /**
+     * Renders all layers that are in front of the entities. The batch of the map renderer needs to be active.
+     * Afterwards the projection matrix of the batch is not the one of the camera anymore.
+     */
+    public void renderForeground(final MapRenderer mapRenderer, final OrthographicCamera camera) {
+        render(foregroundGroups, mapRenderer, camera);
+    }
+
+    private void render(final Array<LayerGroup> groups, final MapRenderer mapRenderer, final OrthographicCamera camera) {
+        final float viewWidth = camera.viewportWidth * camera.zoom;
+        final float viewHeight = camera.viewportHeight * camera.zoom;
+        for (final LayerGroup group : groups) {
+            // moving the camera to position * parallax is the same as moving the world by position * (1 - parallax)
+            final float offsetX = camera.position.x * (1 - group.parallaxX);
+            final float offsetY = camera.position.y * (1 - group.parallaxY);
+            group.viewMatrix.set(camera.combined).translate(offsetX, offsetY, 0);
+            mapRenderer.setView(group.viewMatrix, camera.position.x - offsetX - viewWidth * 0.5f, camera.position.y - offsetY - viewHeight * 0.5f, viewWidth, viewHeight);
+            mapRenderer.render(group.layers);
+        }
+    }
+
+    private static class LayerGroup {
+        private final float parallaxX;
+        private final float parallaxY;
+        private final IntArray layerIdx;
+        private final Matrix4 viewMatrix;
+        private int[] layers;
+
+        private LayerGroup(final float parallaxX, final float parallaxY, final int firstLayerIdx) {
+            this.parallaxX = parallaxX;
+            this.parallaxY = parallaxY;
+            this.layerIdx = new IntArray();
+            this.viewMatrix = new Matrix4();
+            layerIdx.add(firstLayerIdx);
+        }
+
+        private void compile() {
+            layers = layerIdx.toArray();
+        }
+    }
+}
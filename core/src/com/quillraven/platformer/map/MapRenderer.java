@@ -22,15 +22,31 @@ package com.quillraven.platformer.map;
  * SOFTWARE.
  */
 
+import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.OrthographicCamera;
+import com.badlogic.gdx.graphics.Pixmap;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.g2d.SpriteCache;
 import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.graphics.glutils.FrameBuffer;
+import com.badlogic.gdx.graphics.glutils.ShaderProgram;
 import com.badlogic.gdx.maps.MapLayer;
 import com.badlogic.gdx.maps.MapObject;
+import com.badlogic.gdx.maps.tiled.TiledMap;
 import com.badlogic.gdx.maps.tiled.TiledMapTile;
+import com.badlogic.gdx.maps.tiled.TiledMapTileLayer;
 import com.badlogic.gdx.maps.tiled.objects.TiledMapTileMapObject;
 import com.badlogic.gdx.maps.tiled.renderers.OrthogonalTiledMapRenderer;
 import com.badlogic.gdx.maps.tiled.tiles.AnimatedTiledMapTile;
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.ScreenUtils;
+import com.quillraven.platformer.MetricsManager;
 
 import static com.badlogic.gdx.graphics.g2d.Batch.C1;
 import static com.badlogic.gdx.graphics.g2d.Batch.C2;
@@ -56,19 +72,439 @@ import static com.quillraven.platformer.Platformer.PPM;
 
 /**
  * TODO add class description
+ * <br>
+ * In {@link RenderMode#CACHED} the static cells of every tile layer are compiled once per map into chunks of
+ * {@link #CHUNK_SIZE}x{@link #CHUNK_SIZE} cells of a {@link SpriteCache}. Rendering a layer then only draws the chunks
+ * that are within the view bounds. Animated cells are still rendered every frame with the batch. Layers with rotated
+ * cells are not cached at all. Cells that are covered by opaque cells of a later layer (refer to {@link TileOcclusion})
+ * are not part of the cache. The cached vertices only contain the layer opacity. The color of the batch is applied as
+ * tint by the shader of the cache.
+ * <br>
+ * In {@link RenderMode#SHADER} every supported tile layer is drawn with a single quad by a {@link ShaderLayerRenderer}.
+ * Unsupported layers are rendered dynamically.
  */
 
 public class MapRenderer extends OrthogonalTiledMapRenderer {
+    private static final String TAG = MapRenderer.class.getSimpleName();
+    private static final int CHUNK_SIZE = 16;
+    // maximum amount of sprites of a SpriteCache that uses indices
+    private static final int MAX_CACHE_SIZE = 8191;
+    // maximum size of the frame buffer of verifyRenderMode and the maximum difference of a color channel
+    private static final int VERIFY_MAX_SIZE = 2048;
+    private static final int VERIFY_TOLERANCE = 2;
+    // default shader of a SpriteCache with an additional tint color
+    private static final String CACHE_VERTEX_SHADER = "attribute vec4 " + ShaderProgram.POSITION_ATTRIBUTE + ";\n"
+            + "attribute vec4 " + ShaderProgram.COLOR_ATTRIBUTE + ";\n"
+            + "attribute vec2 " + ShaderProgram.TEXCOORD_ATTRIBUTE + "0;\n"
+            + "uniform mat4 u_projectionViewMatrix;\n"
+            + "varying vec4 v_color;\n"
+            + "varying vec2 v_texCoords;\n"
+            + "void main() {\n"
+            + "    v_color = " + ShaderProgram.COLOR_ATTRIBUTE + ";\n"
+            + "    v_color.a = v_color.a * (255.0 / 254.0);\n"
+            + "    v_texCoords = " + ShaderProgram.TEXCOORD_ATTRIBUTE + "0;\n"
+            + "    gl_Position = u_projectionViewMatrix * " + ShaderProgram.POSITION_ATTRIBUTE + ";\n"
+            + "}\n";
+    private static final String CACHE_FRAGMENT_SHADER = "#ifdef GL_ES\n"
+            + "precision mediump float;\n"
+            + "#endif\n"
+            + "varying vec4 v_color;\n"
+            + "varying vec2 v_texCoords;\n"
+            + "uniform sampler2D u_texture;\n"
+            + "uniform vec4 u_tint;\n"
+            + "void main() {\n"
+            + "    gl_FragColor = u_tint * v_color * texture2D(u_texture, v_texCoords);\n"
+            + "}\n";
+
+    private RenderMode renderMode;
+    private SpriteCache spriteCache;
+    // shader of the sprite cache; disposed by the cache
+    private ShaderProgram cacheShader;
+    private ShaderLayerRenderer shaderLayerRenderer;
+    private TileOcclusion tileOcclusion;
+    // cache information per layer index; null if a layer is not cached
+    private final Array<TileLayerCache> layerCaches;
+    // one animation per animated tile of the cached layers; shared by all cells of the same tile
+    private final Array<TileAnimation> tileAnimations;
+    private final Matrix4 projectionMatrix;
+
     public MapRenderer(final SpriteBatch spriteBatch) {
         super(null, 1 / PPM, spriteBatch);
+        this.renderMode = RenderMode.DYNAMIC;
+        this.spriteCache = null;
+        this.cacheShader = null;
+        this.shaderLayerRenderer = null;
+        this.tileOcclusion = null;
+        this.layerCaches = new Array<>();
+        this.tileAnimations = new Array<>();
+        this.projectionMatrix = new Matrix4();
+    }
+
+    public void setRenderMode(final RenderMode renderMode) {
+        this.renderMode = renderMode;
+        if (map != null) {
+            updateLayerCaches();
+        }
+    }
+
+    /**
+     * Sets the occluded cells of the next map. Needs to be called before {@link #setMap(TiledMap)}.
+     */
+    public void setTileOcclusion(final TileOcclusion tileOcclusion) {
+        this.tileOcclusion = tileOcclusion;
+    }
+
+    @Override
+    public void setMap(final TiledMap map) {
+        super.setMap(map);
+        updateLayerCaches();
+    }
+
+    @Override
+    public void setView(final OrthographicCamera camera) {
+        super.setView(camera);
+        projectionMatrix.set(camera.combined);
+    }
+
+    @Override
+    public void setView(final Matrix4 projection, final float x, final float y, final float width, final float height) {
+        super.setView(projection, x, y, width, height);
+        projectionMatrix.set(projection);
     }
 
     @Override
     public void render(final int[] layers) {
-        AnimatedTiledMapTile.updateAnimationBaseTime();
         for (int layerIdx : layers) {
-            MapLayer layer = map.getLayers().get(layerIdx);
-            renderMapLayer(layer);
+            final TileLayerCache layerCache = layerIdx < layerCaches.size ? layerCaches.get(layerIdx) : null;
+            if (layerCache != null) {
+                renderCachedLayer((TiledMapTileLayer) map.getLayers().get(layerIdx), layerCache);
+            } else if (shaderLayerRenderer != null && shaderLayerRenderer.isSupported(layerIdx)) {
+                renderShaderLayer((TiledMapTileLayer) map.getLayers().get(layerIdx), layerIdx);
+            } else {
+                MapLayer layer = map.getLayers().get(layerIdx);
+                renderMapLayer(layer);
+            }
+        }
+    }
+
+    private void renderCachedLayer(final TiledMapTileLayer layer, final TileLayerCache layerCache) {
+        if (!layer.isVisible()) {
+            return;
+        }
+
+        // SpriteCache and SpriteBatch cannot be used at the same time
+        batch.end();
+        Gdx.gl.glEnable(GL20.GL_BLEND);
+        Gdx.gl.glBlendFunc(GL20.GL_SRC_ALPHA, GL20.GL_ONE_MINUS_SRC_ALPHA);
+        spriteCache.setProjectionMatrix(projectionMatrix);
+        spriteCache.begin();
+        cacheShader.setUniformf("u_tint", batch.getColor());
+        int chunksDrawn = 0;
+        int cellsOccluded = 0;
+        for (final TileChunk chunk : layerCache.chunks) {
+            if (viewBounds.overlaps(chunk.bounds)) {
+                cellsOccluded += chunk.numOccludedCells;
+                if (chunk.cacheID != -1) {
+                    spriteCache.draw(chunk.cacheID);
+                    ++chunksDrawn;
+                }
+            }
+        }
+        spriteCache.end();
+        batch.begin();
+        MetricsManager.getInstance().addValue(MetricsManager.MetricType.MAP_CHUNKS_DRAWN, chunksDrawn);
+        MetricsManager.getInstance().addValue(MetricsManager.MetricType.MAP_CELLS_OCCLUDED, cellsOccluded);
+
+        // animated cells
+        final Color batchColor = batch.getColor();
+        final float color = Color.toFloatBits(batchColor.r, batchColor.g, batchColor.b, batchColor.a * layer.getOpacity());
+        final float tileWidth = layer.getTileWidth() * unitScale;
+        final float tileHeight = layer.getTileHeight() * unitScale;
+        final IntArray dynamicCells = layerCache.dynamicCells;
+        for (int i = 0; i < dynamicCells.size; i += 3) {
+            final float x = dynamicCells.get(i) * tileWidth;
+            final float y = dynamicCells.get(i + 1) * tileHeight;
+            if (x + tileWidth < viewBounds.x || x > viewBounds.x + viewBounds.width || y + tileHeight < viewBounds.y || y > viewBounds.y + viewBounds.height) {
+                continue;
+            }
+            final TiledMapTileLayer.Cell cell = layer.getCell(dynamicCells.get(i), dynamicCells.get(i + 1));
+            final TiledMapTile tile = cell.getTile();
+            final TextureRegion region = tileAnimations.get(dynamicCells.get(i + 2)).getTextureRegion();
+            setCellVertices(cell, region, x + tile.getOffsetX() * unitScale, y + tile.getOffsetY() * unitScale, color);
+            batch.draw(region.getTexture(), vertices, 0, NUM_VERTICES);
+        }
+    }
+
+    private void renderShaderLayer(final TiledMapTileLayer layer, final int layerIdx) {
+        if (!layer.isVisible()) {
+            return;
+        }
+
+        batch.end();
+        Gdx.gl.glEnable(GL20.GL_BLEND);
+        Gdx.gl.glBlendFunc(GL20.GL_SRC_ALPHA, GL20.GL_ONE_MINUS_SRC_ALPHA);
+        shaderLayerRenderer.render(layer, layerIdx, projectionMatrix, viewBounds, unitScale, batch.getColor());
+        batch.begin();
+    }
+
+    private void updateLayerCaches() {
+        if (spriteCache != null) {
+            spriteCache.dispose();
+            spriteCache = null;
+            cacheShader = null;
+        }
+        layerCaches.clear();
+        tileAnimations.clear();
+        if (renderMode == RenderMode.SHADER) {
+            if (shaderLayerRenderer == null) {
+                shaderLayerRenderer = new ShaderLayerRenderer();
+            }
+            shaderLayerRenderer.setMap(map, tileOcclusion);
+            return;
+        } else if (shaderLayerRenderer != null) {
+            shaderLayerRenderer.dispose();
+            shaderLayerRenderer = null;
+        }
+        if (renderMode != RenderMode.CACHED || map == null) {
+            return;
+        }
+
+        // count static cells to create a cache that is big enough
+        int staticCells = 0;
+        for (int i = 0; i < map.getLayers().getCount(); ++i) {
+            final MapLayer mapLayer = map.getLayers().get(i);
+            if (mapLayer instanceof TiledMapTileLayer && isCacheable((TiledMapTileLayer) mapLayer)) {
+                staticCells += countStaticCells((TiledMapTileLayer) mapLayer, i);
+            }
+        }
+        if (staticCells == 0) {
+            return;
+        } else if (staticCells > MAX_CACHE_SIZE) {
+            Gdx.app.error(TAG, "Map has too many static cells for a SpriteCache: " + staticCells + ". Rendering layers dynamically");
+            return;
+        }
+
+        cacheShader = new ShaderProgram(CACHE_VERTEX_SHADER, CACHE_FRAGMENT_SHADER);
+        if (!cacheShader.isCompiled()) {
+            throw new GdxRuntimeException("Could not compile tile cache shader: " + cacheShader.getLog());
+        }
+        spriteCache = new SpriteCache(staticCells, cacheShader, true);
+        for (int i = 0; i < map.getLayers().getCount(); ++i) {
+            final MapLayer mapLayer = map.getLayers().get(i);
+            if (mapLayer instanceof TiledMapTileLayer && isCacheable((TiledMapTileLayer) mapLayer)) {
+                layerCaches.add(createLayerCache((TiledMapTileLayer) mapLayer, i));
+            } else {
+                layerCaches.add(null);
+            }
+        }
+    }
+
+    private boolean isCacheable(final TiledMapTileLayer layer) {
+        for (int y = 0; y < layer.getHeight(); ++y) {
+            for (int x = 0; x < layer.getWidth(); ++x) {
+                final TiledMapTileLayer.Cell cell = layer.getCell(x, y);
+                if (cell != null && cell.getRotation() != TiledMapTileLayer.Cell.ROTATE_0) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private boolean isOccluded(final int layerIdx, final int x, final int y) {
+        return tileOcclusion != null && tileOcclusion.isOccluded(layerIdx, x, y);
+    }
+
+    private int countStaticCells(final TiledMapTileLayer layer, final int layerIdx) {
+        int result = 0;
+        for (int y = 0; y < layer.getHeight(); ++y) {
+            for (int x = 0; x < layer.getWidth(); ++x) {
+                final TiledMapTileLayer.Cell cell = layer.getCell(x, y);
+                if (cell != null && cell.getTile() != null && !(cell.getTile() instanceof AnimatedTiledMapTile) && !isOccluded(layerIdx, x, y)) {
+                    ++result;
+                }
+            }
+        }
+        return result;
+    }
+
+    private TileLayerCache createLayerCache(final TiledMapTileLayer layer, final int layerIdx) {
+        final TileLayerCache layerCache = new TileLayerCache();
+        final float color = Color.toFloatBits(1, 1, 1, layer.getOpacity());
+        final float tileWidth = layer.getTileWidth() * unitScale;
+        final float tileHeight = layer.getTileHeight() * unitScale;
+
+        for (int chunkY = 0; chunkY < layer.getHeight(); chunkY += CHUNK_SIZE) {
+            for (int chunkX = 0; chunkX < layer.getWidth(); chunkX += CHUNK_SIZE) {
+                final int maxX = Math.min(layer.getWidth(), chunkX + CHUNK_SIZE);
+                final int maxY = Math.min(layer.getHeight(), chunkY + CHUNK_SIZE);
+                int numCells = 0;
+                int numOccludedCells = 0;
+                spriteCache.beginCache();
+                for (int y = chunkY; y < maxY; ++y) {
+                    for (int x = chunkX; x < maxX; ++x) {
+                        final TiledMapTileLayer.Cell cell = layer.getCell(x, y);
+                        if (cell == null || cell.getTile() == null) {
+                            continue;
+                        } else if (isOccluded(layerIdx, x, y)) {
+                            ++numOccludedCells;
+                            continue;
+                        }
+
+                        final TiledMapTile tile = cell.getTile();
+                        if (tile instanceof AnimatedTiledMapTile) {
+                            layerCache.dynamicCells.add(x, y, getTileAnimationIndex((AnimatedTiledMapTile) tile));
+                            continue;
+                        }
+
+                        setCellVertices(cell, tile.getTextureRegion(), x * tileWidth + tile.getOffsetX() * unitScale, y * tileHeight + tile.getOffsetY() * unitScale, color);
+                        spriteCache.add(tile.getTextureRegion().getTexture(), vertices, 0, NUM_VERTICES);
+                        ++numCells;
+                    }
+                }
+                final int cacheID = spriteCache.endCache();
+                if (numCells > 0 || numOccludedCells > 0) {
+                    // add a tile as margin because tiles can be bigger than the cell size
+                    layerCache.chunks.add(new TileChunk(numCells > 0 ? cacheID : -1, numOccludedCells, new Rectangle((chunkX - 1) * tileWidth, (chunkY - 1) * tileHeight, (maxX - chunkX + 2) * tileWidth, (maxY - chunkY + 2) * tileHeight)));
+                }
+            }
+        }
+        return layerCache;
+    }
+
+    private int getTileAnimationIndex(final AnimatedTiledMapTile tile) {
+        for (int i = 0; i < tileAnimations.size; ++i) {
+            if (tileAnimations.get(i).getTile() == tile) {
+                return i;
+            }
+        }
+        tileAnimations.add(new TileAnimation(tile));
+        return tileAnimations.size - 1;
+    }
+
+    private void setCellVertices(final TiledMapTileLayer.Cell cell, final TextureRegion region, final float x1, final float y1, final float color) {
+        final float x2 = x1 + region.getRegionWidth() * unitScale;
+        final float y2 = y1 + region.getRegionHeight() * unitScale;
+
+        float u1 = region.getU();
+        float v1 = region.getV2();
+        float u2 = region.getU2();
+        float v2 = region.getV();
+        if (cell.getFlipHorizontally()) {
+            final float tmp = u1;
+            u1 = u2;
+            u2 = tmp;
+        }
+        if (cell.getFlipVertically()) {
+            final float tmp = v1;
+            v1 = v2;
+            v2 = tmp;
+        }
+
+        // bot-left
+        vertices[X1] = x1;
+        vertices[Y1] = y1;
+        vertices[C1] = color;
+        vertices[U1] = u1;
+        vertices[V1] = v1;
+        // top-left
+        vertices[X2] = x1;
+        vertices[Y2] = y2;
+        vertices[C2] = color;
+        vertices[U2] = u1;
+        vertices[V2] = v2;
+        // top-right
+        vertices[X3] = x2;
+        vertices[Y3] = y2;
+        vertices[C3] = color;
+        vertices[U3] = u2;
+        vertices[V3] = v2;
+        // bot-right
+        vertices[X4] = x2;
+        vertices[Y4] = y1;
+        vertices[C4] = color;
+        vertices[U4] = u2;
+        vertices[V4] = v1;
+    }
+
+    /**
+     * Renders all tile layers of the current map with {@link RenderMode#CACHED} and with the given render mode into a
+     * frame buffer and compares the pixels. This verifies a render mode on the current device. The render mode of the
+     * renderer is not changed.
+     *
+     * @return number of pixels that differ by more than {@link #VERIFY_TOLERANCE} in a color channel
+     */
+    public int verifyRenderMode(final RenderMode mode) {
+        if (map == null) {
+            throw new GdxRuntimeException("A map is needed to verify render mode " + mode);
+        }
+
+        final IntArray tileLayers = new IntArray();
+        for (int i = 0; i < map.getLayers().getCount(); ++i) {
+            if (map.getLayers().get(i) instanceof TiledMapTileLayer) {
+                tileLayers.add(i);
+            }
+        }
+        final int width = Math.min(VERIFY_MAX_SIZE, map.getProperties().get("width", Integer.class) * map.getProperties().get("tilewidth", Integer.class));
+        final int height = Math.min(VERIFY_MAX_SIZE, map.getProperties().get("height", Integer.class) * map.getProperties().get("tileheight", Integer.class));
+        final RenderMode originalMode = renderMode;
+        final Matrix4 batchProjection = new Matrix4(batch.getProjectionMatrix());
+        final OrthographicCamera camera = new OrthographicCamera();
+        // one pixel of the frame buffer per pixel of the map starting at the bottom left corner
+        camera.setToOrtho(false, width * unitScale, height * unitScale);
+        camera.update();
+        final FrameBuffer frameBuffer = new FrameBuffer(Pixmap.Format.RGBA8888, width, height, false);
+
+        setRenderMode(RenderMode.CACHED);
+        final Pixmap expected = renderToPixmap(frameBuffer, camera, tileLayers.toArray(), width, height);
+        setRenderMode(mode);
+        final Pixmap actual = renderToPixmap(frameBuffer, camera, tileLayers.toArray(), width, height);
+        int differentPixels = 0;
+        for (int y = 0; y < height; ++y) {
+            for (int x = 0; x < width; ++x) {
+                final int expectedPixel = expected.getPixel(x, y);
+                final int actualPixel = actual.getPixel(x, y);
+                for (int shift = 0; shift < 32; shift += 8) {
+                    if (Math.abs((expectedPixel >>> shift & 0xFF) - (actualPixel >>> shift & 0xFF)) > VERIFY_TOLERANCE) {
+                        ++differentPixels;
+                        break;
+                    }
+                }
+            }
+        }
+        Gdx.app.debug(TAG, "Verified render mode " + mode + ": " + differentPixels + " of " + width * height + " pixels differ");
+
+        expected.dispose();
+        actual.dispose();
+        frameBuffer.dispose();
+        setRenderMode(originalMode);
+        batch.setProjectionMatrix(batchProjection);
+        return differentPixels;
+    }
+
+    private Pixmap renderToPixmap(final FrameBuffer frameBuffer, final OrthographicCamera camera, final int[] layers, final int width, final int height) {
+        frameBuffer.begin();
+        Gdx.gl.glClearColor(0, 0, 0, 0);
+        Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
+        setView(camera);
+        batch.begin();
+        render(layers);
+        batch.end();
+        final Pixmap pixmap = ScreenUtils.getFrameBufferPixmap(0, 0, width, height);
+        frameBuffer.end();
+        return pixmap;
+    }
+
+    @Override
+    public void dispose() {
+        super.dispose();
+        if (spriteCache != null) {
+            spriteCache.dispose();
+            spriteCache = null;
+        }
+        if (shaderLayerRenderer != null) {
+            shaderLayerRenderer.dispose();
+            shaderLayerRenderer = null;
         }
     }
 
@@ -85,7 +521,9 @@ public class MapRenderer extends OrthogonalTiledMapRenderer {
             if (tile != null) {
                 final Color batchColor = batch.getColor();
                 final float color = Color.toFloatBits(batchColor.r, batchColor.g, batchColor.b, batchColor.a * tileMapObj.getOpacity());
-                final TextureRegion region = tile.getTextureRegion();
+                // objects can have their own animation state (e.g. the flag pole at the end of a level)
+                final TileAnimation animation = tileMapObj.getProperties().get(TileAnimation.PROPERTY_KEY, TileAnimation.class);
+                final TextureRegion region = animation != null ? animation.getTextureRegion() : tile.getTextureRegion();
 
                 final float x1 = tileMapObj.getX() * unitScale + tile.getOffsetX() * unitScale;
                 final float y1 = tileMapObj.getY() * unitScale + tile.getOffsetY() * unitScale;
@@ -125,4 +563,32 @@ public class MapRenderer extends OrthogonalTiledMapRenderer {
             }
         }
     }
+
+    public enum RenderMode {
+        // vertices of all visible cells are created every frame
+        DYNAMIC,
+        // static cells are compiled once per map into a SpriteCache
+        CACHED,
+        // tile layers are uploaded once per map as textures and drawn with one quad per layer
+        SHADER
+    }
+
+    private static class TileLayerCache {
+        private final Array<TileChunk> chunks = new Array<>();
+        // x/y/tileAnimation index triples of animated cells that need to be rendered every frame
+        private final IntArray dynamicCells = new IntArray();
+    }
+
+    private static class TileChunk {
+        // -1 if all cells of the chunk are occluded
+        private final int cacheID;
+        private final int numOccludedCells;
+        private final Rectangle bounds;
+
+        private TileChunk(final int cacheID, final int numOccludedCells, final Rectangle bounds) {
+            this.cacheID = cacheID;
+            this.numOccludedCells = numOccludedCells;
+            this.bounds = bounds;
+        }
+    }
 }
@@ -0,0 +1,355 @@
+package com.quillraven.platformer.map;
+/*
+ * Created by Quillraven on 22.07.2018.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2018 Quillraven
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Mesh;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.VertexAttribute;
+import com.badlogic.gdx.graphics.VertexAttributes;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.graphics.glutils.ShaderProgram;
+import com.badlogic.gdx.maps.MapLayer;
+import com.badlogic.gdx.maps.MapLayers;
+import com.badlogic.gdx.maps.tiled.TiledMap;
+import com.badlogic.gdx.maps.tiled.TiledMapTile;
+import com.badlogic.gdx.maps.tiled.TiledMapTileLayer;
+import com.badlogic.gdx.maps.tiled.tiles.AnimatedTiledMapTile;
+import com.badlogic.gdx.maps.tiled.tiles.StaticTiledMapTile;
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.ObjectIntMap;
+import com.quillraven.platformer.AnimationClock;
+
+/**
+ * Renders a whole {@link TiledMapTileLayer} with a single quad. The cells of a layer are uploaded once per map into an
+ * index texture (one texel per cell) that refers to an entry of the tile table texture. The tile table stores the pixel
+ * position of every tile within the tileset texture. Entries of animated tiles are rewritten once per frame of the
+ * {@link AnimationClock} and therefore the index textures never change.
+ * <br>
+ * Texel format of an index texture: r/g = tile table index (low/high byte), b = flip flags (1 = horizontal,
+ * 2 = vertical), a = 255 if the cell has a tile.
+ * <br>
+ * Texel format of the tile table: r/g = x position (high/low byte), b/a = y position (high/low byte).
+ * <br>
+ * Layers are only supported if all of their tiles are regions of the same texture, have the size of a cell, have no
+ * offset and if no cell is rotated. Occluded cells (refer to {@link TileOcclusion}) are uploaded as empty cells.
+ */
+class ShaderLayerRenderer implements Disposable {
+    private static final String TAG = ShaderLayerRenderer.class.getSimpleName();
+    // texture units of the shader; the tileset uses unit 0 like the SpriteBatch
+    private static final int UNIT_TILESET = 0;
+    private static final int UNIT_TILE_TABLE = 1;
+    private static final int UNIT_CELLS = 2;
+    private static final String VERTEX_SHADER = "attribute vec4 " + ShaderProgram.POSITION_ATTRIBUTE + ";\n"
+            + "uniform mat4 u_projTrans;\n"
+            + "uniform vec2 u_cellSize;\n"
+            + "varying vec2 v_cellPos;\n"
+            + "void main() {\n"
+            + "    v_cellPos = " + ShaderProgram.POSITION_ATTRIBUTE + ".xy / u_cellSize;\n"
+            + "    gl_Position = u_projTrans * " + ShaderProgram.POSITION_ATTRIBUTE + ";\n"
+            + "}\n";
+    private static final String FRAGMENT_SHADER = "#ifdef GL_ES\n"
+            + "#ifdef GL_FRAGMENT_PRECISION_HIGH\n"
+            + "precision highp float;\n"
+            + "#else\n"
+            + "precision mediump float;\n"
+            + "#endif\n"
+            + "#endif\n"
+            + "uniform sampler2D u_tileset;\n"
+            + "uniform sampler2D u_tileTable;\n"
+            + "uniform sampler2D u_cells;\n"
+            + "uniform vec2 u_layerSize;\n"
+            + "uniform vec2 u_tilesetSize;\n"
+            + "uniform vec2 u_tileSize;\n"
+            + "uniform float u_tableSize;\n"
+            + "uniform vec4 u_color;\n"
+            + "varying vec2 v_cellPos;\n"
+            + "float decode(float value) {\n"
+            + "    return floor(value * 255.0 + 0.5);\n"
+            + "}\n"
+            + "void main() {\n"
+            + "    vec2 cell = floor(v_cellPos);\n"
+            + "    vec4 cellInfo = texture2D(u_cells, (cell + 0.5) / u_layerSize);\n"
+            + "    if (cellInfo.a < 0.5) {\n"
+            + "        discard;\n"
+            + "    }\n"
+            + "    float tableIdx = decode(cellInfo.r) + decode(cellInfo.g) * 256.0;\n"
+            + "    vec4 tile = texture2D(u_tileTable, vec2((tableIdx + 0.5) / u_tableSize, 0.5));\n"
+            + "    vec2 tilePos = vec2(decode(tile.r) * 256.0 + decode(tile.g), decode(tile.b) * 256.0 + decode(tile.a));\n"
+            + "    float flags = decode(cellInfo.b);\n"
+            + "    vec2 local = v_cellPos - cell;\n"
+            + "    if (mod(flags, 2.0) >= 1.0) {\n"
+            + "        local.x = 1.0 - local.x;\n"
+            + "    }\n"
+            + "    if (flags >= 2.0) {\n"
+            + "        local.y = 1.0 - local.y;\n"
+            + "    }\n"
+            // texture y axis points down; stay half a pixel inside the tile to not sample the spacing between tiles
+            + "    vec2 pixel = clamp(vec2(local.x, 1.0 - local.y) * u_tileSize, vec2(0.5), u_tileSize - 0.5);\n"
+            + "    gl_FragColor = texture2D(u_tileset, (tilePos + pixel) / u_tilesetSize) * u_color;\n"
+            + "}\n";
+
+    private final ShaderProgram shader;
+    private final Mesh quad;
+    private final float[] quadVertices;
+    // index texture per layer index; null if a layer is not supported
+    private final Array<Texture> cellTextures;
+    // tiles of the tile table and their animation (null for static tiles)
+    private final Array<TiledMapTile> tableTiles;
+    private final Array<TileAnimation> tableAnimations;
+    private final ObjectIntMap<TiledMapTile> tableIndices;
+    private Pixmap tableData;
+    private Texture tileTable;
+    private Texture tileset;
+    private long frameID;
+
+    ShaderLayerRenderer() {
+        this.shader = new ShaderProgram(VERTEX_SHADER, FRAGMENT_SHADER);
+        if (!shader.isCompiled()) {
+            throw new GdxRuntimeException("Could not compile tile layer shader: " + shader.getLog());
+        }
+        this.quad = new Mesh(false, 4, 6, new VertexAttribute(VertexAttributes.Usage.Position, 2, ShaderProgram.POSITION_ATTRIBUTE));
+        quad.setIndices(new short[]{0, 1, 2, 2, 3, 0});
+        this.quadVertices = new float[8];
+        this.cellTextures = new Array<>();
+        this.tableTiles = new Array<>();
+        this.tableAnimations = new Array<>();
+        this.tableIndices = new ObjectIntMap<>();
+        this.tableData = null;
+        this.tileTable = null;
+        this.tileset = null;
+        this.frameID = -1;
+    }
+
+    void setMap(final TiledMap map, final TileOcclusion tileOcclusion) {
+        disposeMapResources();
+        if (map == null) {
+            return;
+        }
+
+        final MapLayers layers = map.getLayers();
+        for (int i = 0; i < layers.getCount(); ++i) {
+            final MapLayer mapLayer = layers.get(i);
+            if (mapLayer instanceof TiledMapTileLayer && isSupported((TiledMapTileLayer) mapLayer)) {
+                cellTextures.add(createCellTexture((TiledMapTileLayer) mapLayer, i, tileOcclusion));
+            } else {
+                cellTextures.add(null);
+            }
+        }
+        if (tableTiles.size == 0) {
+            return;
+        }
+
+        tableData = new Pixmap(tableTiles.size, 1, Pixmap.Format.RGBA8888);
+        tableData.setBlending(Pixmap.Blending.None);
+        for (int i = 0; i < tableTiles.size; ++i) {
+            writeTableEntry(i, tableTiles.get(i).getTextureRegion());
+        }
+        tileTable = new Texture(tableData);
+        frameID = -1;
+        Gdx.app.debug(TAG, "Tile table with " + tableTiles.size + " tiles created");
+    }
+
+    private boolean isSupported(final TiledMapTileLayer layer) {
+        for (int y = 0; y < layer.getHeight(); ++y) {
+            for (int x = 0; x < layer.getWidth(); ++x) {
+                final TiledMapTileLayer.Cell cell = layer.getCell(x, y);
+                if (cell == null || cell.getTile() == null) {
+                    continue;
+                }
+                if (cell.getRotation() != TiledMapTileLayer.Cell.ROTATE_0) {
+                    return false;
+                }
+
+                final TiledMapTile tile = cell.getTile();
+                if (tile.getOffsetX() != 0 || tile.getOffsetY() != 0) {
+                    return false;
+                }
+                if (tile instanceof AnimatedTiledMapTile) {
+                    for (final StaticTiledMapTile frameTile : ((AnimatedTiledMapTile) tile).getFrameTiles()) {
+                        if (!isSupported(layer, frameTile.getTextureRegion())) {
+                            return false;
+                        }
+                    }
+                } else if (!isSupported(layer, tile.getTextureRegion())) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private boolean isSupported(final TiledMapTileLayer layer, final TextureRegion region) {
+        if (tileset == null) {
+            tileset = region.getTexture();
+        }
+        return region.getTexture() == tileset && region.getRegionWidth() == layer.getTileWidth() && region.getRegionHeight() == layer.getTileHeight();
+    }
+
+    private Texture createCellTexture(final TiledMapTileLayer layer, final int layerIdx, final TileOcclusion tileOcclusion) {
+        final Pixmap cells = new Pixmap(layer.getWidth(), layer.getHeight(), Pixmap.Format.RGBA8888);
+        cells.setBlending(Pixmap.Blending.None);
+        cells.setColor(0, 0, 0, 0);
+        cells.fill();
+        for (int y = 0; y < layer.getHeight(); ++y) {
+            for (int x = 0; x < layer.getWidth(); ++x) {
+                final TiledMapTileLayer.Cell cell = layer.getCell(x, y);
+                if (cell == null || cell.getTile() == null || (tileOcclusion != null && tileOcclusion.isOccluded(layerIdx, x, y))) {
+                    continue;
+                }
+
+                final int tableIdx = getTableIndex(cell.getTile());
+                final int flags = (cell.getFlipHorizontally() ? 1 : 0) | (cell.getFlipVertically() ? 2 : 0);
+                // pixmap row y is the texture row that the shader samples at t = (y + 0.5) / height, the same
+                // convention as for the tile table. Therefore, the bottom cell row is stored in the first pixmap row
+                cells.drawPixel(x, y, (tableIdx & 0xFF) << 24 | (tableIdx >> 8 & 0xFF) << 16 | flags << 8 | 0xFF);
+            }
+        }
+        final Texture texture = new Texture(cells);
+        cells.dispose();
+        return texture;
+    }
+
+    private int getTableIndex(final TiledMapTile tile) {
+        int tableIdx = tableIndices.get(tile, -1);
+        if (tableIdx == -1) {
+            tableIdx = tableTiles.size;
+            if (tableIdx > 0xFFFF) {
+                throw new GdxRuntimeException("Too many different tiles for the tile table: " + tableIdx);
+            }
+            tableTiles.add(tile);
+            tableAnimations.add(tile instanceof AnimatedTiledMapTile ? new TileAnimation((AnimatedTiledMapTile) tile) : null);
+            tableIndices.put(tile, tableIdx);
+        }
+        return tableIdx;
+    }
+
+    private void writeTableEntry(final int tableIdx, final TextureRegion region) {
+        final int x = region.getRegionX();
+        final int y = region.getRegionY();
+        tableData.drawPixel(tableIdx, 0, (x >> 8 & 0xFF) << 24 | (x & 0xFF) << 16 | (y >> 8 & 0xFF) << 8 | y & 0xFF);
+    }
+
+    private void updateAnimations() {
+        final long clockFrameID = AnimationClock.getInstance().getFrameID();
+        if (frameID == clockFrameID) {
+            return;
+        }
+
+        frameID = clockFrameID;
+        boolean changed = false;
+        for (int i = 0; i < tableAnimations.size; ++i) {
+            final TileAnimation animation = tableAnimations.get(i);
+            if (animation != null) {
+                writeTableEntry(i, animation.getTextureRegion());
+                changed = true;
+            }
+        }
+        if (changed) {
+            tileTable.draw(tableData, 0, 0);
+        }
+    }
+
+    boolean isSupported(final int layerIdx) {
+        return tileTable != null && layerIdx < cellTextures.size && cellTextures.get(layerIdx) != null;
+    }
+
+    /**
+     * Renders the part of the layer that is within the view bounds with a single quad. No batch or cache may be active.
+     */
+    void render(final TiledMapTileLayer layer, final int layerIdx, final Matrix4 projection, final Rectangle viewBounds, final float unitScale, final Color color) {
+        final float cellWidth = layer.getTileWidth() * unitScale;
+        final float cellHeight = layer.getTileHeight() * unitScale;
+        final float x1 = Math.max(0, viewBounds.x);
+        final float y1 = Math.max(0, viewBounds.y);
+        final float x2 = Math.min(layer.getWidth() * cellWidth, viewBounds.x + viewBounds.width);
+        final float y2 = Math.min(layer.getHeight() * cellHeight, viewBounds.y + viewBounds.height);
+        if (x1 >= x2 || y1 >= y2) {
+            return;
+        }
+
+        updateAnimations();
+        quadVertices[0] = x1;
+        quadVertices[1] = y1;
+        quadVertices[2] = x1;
+        quadVertices[3] = y2;
+        quadVertices[4] = x2;
+        quadVertices[5] = y2;
+        quadVertices[6] = x2;
+        quadVertices[7] = y1;
+        quad.setVertices(quadVertices);
+
+        cellTextures.get(layerIdx).bind(UNIT_CELLS);
+        tileTable.bind(UNIT_TILE_TABLE);
+        tileset.bind(UNIT_TILESET);
+        shader.begin();
+        shader.setUniformMatrix("u_projTrans", projection);
+        shader.setUniformi("u_tileset", UNIT_TILESET);
+        shader.setUniformi("u_tileTable", UNIT_TILE_TABLE);
+        shader.setUniformi("u_cells", UNIT_CELLS);
+        shader.setUniformf("u_cellSize", cellWidth, cellHeight);
+        shader.setUniformf("u_layerSize", layer.getWidth(), layer.getHeight());
+        shader.setUniformf("u_tilesetSize", tileset.getWidth(), tileset.getHeight());
+        shader.setUniformf("u_tileSize", layer.getTileWidth(), layer.getTileHeight());
+        shader.setUniformf("u_tableSize", tableTiles.size);
+        shader.setUniformf("u_color", color.r, color.g, color.b, color.a * layer.getOpacity());
+        quad.render(shader, GL20.GL_TRIANGLES);
+        shader.end();
+    }
+
+    private void disposeMapResources() {
+        for (final Texture texture : cellTextures) {
+            if (texture != null) {
+                texture.dispose();
+            }
+        }
+        cellTextures.clear();
+        tableTiles.clear();
+        tableAnimations.clear();
+        tableIndices.clear();
+        if (tileTable != null) {
+            tileTable.dispose();
+            tileTable = null;
+        }
+        if (tableData != null) {
+            tableData.dispose();
+            tableData = null;
+        }
+        // the tileset texture is owned by the map
+        tileset = null;
+    }
+
+    @Override
+    public void dispose() {
+        disposeMapResources();
+        shader.dispose();
+        quad.dispose();
+    }
+}
@@ -0,0 +1,99 @@
+package com.quillraven.platformer.map;
+/*
+ * Created by Quillraven on 21.07.2018.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2018 Quillraven
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.maps.tiled.tiles.AnimatedTiledMapTile;
+import com.badlogic.gdx.maps.tiled.tiles.StaticTiledMapTile;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.quillraven.platformer.AnimationClock;
+
+/**
+ * Animation state of an {@link AnimatedTiledMapTile} instance. The frames and intervals of the tile are shared by
+ * every cell and object of the tileset and are never modified. Instead, each TileAnimation plays its own range of
+ * frames and evaluates its current frame at most once per frame of the {@link AnimationClock}.
+ */
+public class TileAnimation {
+    public static final String PROPERTY_KEY = "tileAnimation";
+
+    private final AnimatedTiledMapTile tile;
+    private int firstFrame;
+    private int lastFrame;
+    private long frameID;
+    private TextureRegion currentRegion;
+
+    public TileAnimation(final AnimatedTiledMapTile tile) {
+        this.tile = tile;
+        setFrameRange(0, tile.getFrameTiles().length - 1);
+    }
+
+    AnimatedTiledMapTile getTile() {
+        return tile;
+    }
+
+    public int getNumFrames() {
+        return tile.getFrameTiles().length;
+    }
+
+    /**
+     * Plays the frames from firstFrame to lastFrame (both inclusive) in a loop
+     */
+    public void setFrameRange(final int firstFrame, final int lastFrame) {
+        if (firstFrame < 0 || lastFrame >= getNumFrames() || firstFrame > lastFrame) {
+            throw new GdxRuntimeException("Invalid frame range [" + firstFrame + ", " + lastFrame + "] for an animation with " + getNumFrames() + " frames");
+        }
+        this.firstFrame = firstFrame;
+        this.lastFrame = lastFrame;
+        this.frameID = -1;
+    }
+
+    public TextureRegion getTextureRegion() {
+        final AnimationClock clock = AnimationClock.getInstance();
+        if (frameID != clock.getFrameID()) {
+            frameID = clock.getFrameID();
+            currentRegion = getFrameTile(clock.getTimeMillis()).getTextureRegion();
+        }
+        return currentRegion;
+    }
+
+    private StaticTiledMapTile getFrameTile(final long timeMillis) {
+        final StaticTiledMapTile[] frameTiles = tile.getFrameTiles();
+        final int[] intervals = tile.getAnimationIntervals();
+        long loopDuration = 0;
+        for (int i = firstFrame; i <= lastFrame; ++i) {
+            loopDuration += intervals[i];
+        }
+        if (loopDuration <= 0) {
+            return frameTiles[firstFrame];
+        }
+
+        long currentTime = timeMillis % loopDuration;
+        for (int i = firstFrame; i < lastFrame; ++i) {
+            if (currentTime < intervals[i]) {
+                return frameTiles[i];
+            }
+            currentTime -= intervals[i];
+        }
+        return frameTiles[lastFrame];
+    }
+}
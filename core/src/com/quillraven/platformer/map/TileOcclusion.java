@@ -0,0 +1,195 @@
+package com.quillraven.platformer.map;
+/*
+ * Created by Quillraven on 23.07.2018.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2018 Quillraven
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.TextureData;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.maps.MapLayer;
+import com.badlogic.gdx.maps.MapLayers;
+import com.badlogic.gdx.maps.MapProperties;
+import com.badlogic.gdx.maps.tiled.TiledMap;
+import com.badlogic.gdx.maps.tiled.TiledMapTile;
+import com.badlogic.gdx.maps.tiled.TiledMapTileLayer;
+import com.badlogic.gdx.maps.tiled.tiles.AnimatedTiledMapTile;
+import com.badlogic.gdx.maps.tiled.tiles.StaticTiledMapTile;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.ObjectMap;
+
+/**
+ * Cells of tile layers that are completely covered by an opaque cell of a layer that is rendered later. Covered cells
+ * never contribute a visible pixel and are therefore skipped by the {@link MapRenderer}.
+ * <br>
+ * A tile is opaque if every pixel of its region (of every frame for animated tiles) has full alpha. The pixels are
+ * read once when the occlusion of a map is computed. Only layers with the same parallax factor and cell size can
+ * cover each other because layers with a different parallax factor move relative to each other.
+ */
+public class TileOcclusion {
+    private static final String TAG = TileOcclusion.class.getSimpleName();
+
+    // covered cells per layer index (x + y * width); null if no cell of a layer is covered
+    private final Array<boolean[]> occludedCells;
+    private final IntArray layerWidths;
+    private final ObjectMap<TiledMapTile, Boolean> tileOpacity;
+    private final ObjectMap<Texture, Pixmap> texturePixels;
+    private int numOccludedCells;
+
+    TileOcclusion(final TiledMap tiledMap) {
+        this.occludedCells = new Array<>();
+        this.layerWidths = new IntArray();
+        this.tileOpacity = new ObjectMap<>();
+        this.texturePixels = new ObjectMap<>();
+        this.numOccludedCells = 0;
+
+        final MapLayers layers = tiledMap.getLayers();
+        for (int i = 0; i < layers.getCount(); ++i) {
+            final MapLayer mapLayer = layers.get(i);
+            if (mapLayer instanceof TiledMapTileLayer) {
+                occludedCells.add(computeOccludedCells(layers, i));
+                layerWidths.add(((TiledMapTileLayer) mapLayer).getWidth());
+            } else {
+                occludedCells.add(null);
+                layerWidths.add(0);
+            }
+        }
+
+        // pixels are only needed to compute the opacity of the tiles
+        for (final Pixmap pixmap : texturePixels.values()) {
+            pixmap.dispose();
+        }
+        texturePixels.clear();
+        tileOpacity.clear();
+        Gdx.app.debug(TAG, "Occluded cells: " + numOccludedCells);
+    }
+
+    private boolean[] computeOccludedCells(final MapLayers layers, final int layerIdx) {
+        final TiledMapTileLayer layer = (TiledMapTileLayer) layers.get(layerIdx);
+        boolean[] result = null;
+        for (int i = layerIdx + 1; i < layers.getCount(); ++i) {
+            final MapLayer mapLayer = layers.get(i);
+            if (!(mapLayer instanceof TiledMapTileLayer) || !canCover(layer, (TiledMapTileLayer) mapLayer)) {
+                continue;
+            }
+
+            final TiledMapTileLayer coverLayer = (TiledMapTileLayer) mapLayer;
+            for (int y = 0; y < layer.getHeight(); ++y) {
+                for (int x = 0; x < layer.getWidth(); ++x) {
+                    final TiledMapTileLayer.Cell cell = layer.getCell(x, y);
+                    if (cell == null || cell.getTile() == null || (result != null && result[x + y * layer.getWidth()])) {
+                        continue;
+                    }
+
+                    final TiledMapTileLayer.Cell coverCell = coverLayer.getCell(x, y);
+                    if (coverCell != null && coverCell.getTile() != null && isOpaque(coverCell.getTile(), coverLayer)) {
+                        if (result == null) {
+                            result = new boolean[layer.getWidth() * layer.getHeight()];
+                        }
+                        result[x + y * layer.getWidth()] = true;
+                        ++numOccludedCells;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    private boolean canCover(final TiledMapTileLayer layer, final TiledMapTileLayer coverLayer) {
+        final MapProperties properties = layer.getProperties();
+        final MapProperties coverProperties = coverLayer.getProperties();
+        return coverLayer.isVisible() && coverLayer.getOpacity() >= 1
+                && coverLayer.getWidth() == layer.getWidth() && coverLayer.getHeight() == layer.getHeight()
+                && coverLayer.getTileWidth() == layer.getTileWidth() && coverLayer.getTileHeight() == layer.getTileHeight()
+                && properties.get("parallaxX", 1f, Float.class).equals(coverProperties.get("parallaxX", 1f, Float.class))
+                && properties.get("parallaxY", 1f, Float.class).equals(coverProperties.get("parallaxY", 1f, Float.class));
+    }
+
+    private boolean isOpaque(final TiledMapTile tile, final TiledMapTileLayer layer) {
+        Boolean opaque = tileOpacity.get(tile);
+        if (opaque == null) {
+            if (tile.getOffsetX() != 0 || tile.getOffsetY() != 0) {
+                opaque = false;
+            } else if (tile instanceof AnimatedTiledMapTile) {
+                opaque = true;
+                for (final StaticTiledMapTile frameTile : ((AnimatedTiledMapTile) tile).getFrameTiles()) {
+                    opaque &= isOpaque(frameTile.getTextureRegion(), layer);
+                }
+            } else {
+                opaque = isOpaque(tile.getTextureRegion(), layer);
+            }
+            tileOpacity.put(tile, opaque);
+        }
+        return opaque;
+    }
+
+    private boolean isOpaque(final TextureRegion region, final TiledMapTileLayer layer) {
+        if (region.getRegionWidth() != layer.getTileWidth() || region.getRegionHeight() != layer.getTileHeight()) {
+            return false;
+        }
+
+        final Pixmap pixmap = getPixels(region.getTexture());
+        for (int y = region.getRegionY(); y < region.getRegionY() + region.getRegionHeight(); ++y) {
+            for (int x = region.getRegionX(); x < region.getRegionX() + region.getRegionWidth(); ++x) {
+                // getPixel always returns RGBA8888
+                if ((pixmap.getPixel(x, y) & 0xFF) != 0xFF) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private Pixmap getPixels(final Texture texture) {
+        Pixmap pixmap = texturePixels.get(texture);
+        if (pixmap == null) {
+            final TextureData textureData = texture.getTextureData();
+            if (!textureData.isPrepared()) {
+                textureData.prepare();
+            }
+            pixmap = textureData.consumePixmap();
+            if (!textureData.disposePixmap()) {
+                // pixmap is still used by the texture data -> work on a copy
+                final Pixmap copy = new Pixmap(pixmap.getWidth(), pixmap.getHeight(), pixmap.getFormat());
+                copy.setBlending(Pixmap.Blending.None);
+                copy.drawPixmap(pixmap, 0, 0);
+                pixmap = copy;
+            }
+            texturePixels.put(texture, pixmap);
+        }
+        return pixmap;
+    }
+
+    public boolean isOccluded(final int layerIdx, final int x, final int y) {
+        if (layerIdx >= occludedCells.size) {
+            return false;
+        }
+        final boolean[] cells = occludedCells.get(layerIdx);
+        return cells != null && cells[x + y * layerWidths.get(layerIdx)];
+    }
+
+    public int getNumOccludedCells() {
+        return numOccludedCells;
+    }
+}
@@ -0,0 +1,92 @@
+package com.quillraven.platformer.physics;
+/*
+ * Created by Quillraven on 10.07.2018.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2018 Quillraven
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.physics.box2d.Body;
+import com.badlogic.gdx.physics.box2d.Fixture;
+
+/**
+ * {@link PhysicsBody} implementation that delegates to a box2d {@link Body}.
+ */
+public class Box2DPhysicsBody implements PhysicsBody {
+    private final Body body;
+
+    public Box2DPhysicsBody(final Body body) {
+        this.body = body;
+    }
+
+    public Body getBody() {
+        return body;
+    }
+
+    @Override
+    public Vector2 getPosition() {
+        return body.getPosition();
+    }
+
+    @Override
+    public Vector2 getWorldCenter() {
+        return body.getWorldCenter();
+    }
+
+    @Override
+    public Vector2 getLinearVelocity() {
+        return body.getLinearVelocity();
+    }
+
+    @Override
+    public float getMass() {
+        return body.getMass();
+    }
+
+    @Override
+    public void applyLinearImpulse(final float impulseX, final float impulseY, final float pointX, final float pointY, final boolean wake) {
+        body.applyLinearImpulse(impulseX, impulseY, pointX, pointY, wake);
+    }
+
+    @Override
+    public void setTransform(final float x, final float y, final float angle) {
+        body.setTransform(x, y, angle);
+    }
+
+    @Override
+    public boolean isActive() {
+        return body.isActive();
+    }
+
+    @Override
+    public void setActive(final boolean active) {
+        body.setActive(active);
+    }
+
+    @Override
+    public void destroy() {
+        // remove user data to ignore the contacts that get removed together with the body (refer to WorldContactManager)
+        body.setUserData(null);
+        for (final Fixture fix : body.getFixtureList()) {
+            fix.setUserData(null);
+        }
+        body.getWorld().destroyBody(body);
+    }
+}
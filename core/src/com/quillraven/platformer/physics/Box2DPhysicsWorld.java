@@ -0,0 +1,143 @@
+package com.quillraven.platformer.physics;
+/*
+ * Created by Quillraven on 10.07.2018.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2018 Quillraven
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import com.badlogic.ashley.core.Entity;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.physics.box2d.Body;
+import com.badlogic.gdx.physics.box2d.BodyDef;
+import com.badlogic.gdx.physics.box2d.ChainShape;
+import com.badlogic.gdx.physics.box2d.FixtureDef;
+import com.badlogic.gdx.physics.box2d.PolygonShape;
+import com.badlogic.gdx.physics.box2d.World;
+import com.quillraven.platformer.Platformer;
+
+/**
+ * {@link PhysicsWorld} implementation that creates the bodies in a box2d {@link World}. Static ground and sensors are
+ * chain shapes which are also used by the lights (refer to {@link Platformer#BIT_LIGHT}).
+ */
+public class Box2DPhysicsWorld implements PhysicsWorld {
+    private static final short STATIC_MASK_BITS = Platformer.BIT_PLAYER | Platformer.BIT_ENEMY | Platformer.BIT_LIGHT;
+
+    private final World world;
+    private final BodyDef bodyDef;
+    private final FixtureDef fixtureDef;
+    private final float[] rectVertices;
+
+    public Box2DPhysicsWorld(final World world) {
+        this.world = world;
+        this.bodyDef = new BodyDef();
+        this.fixtureDef = new FixtureDef();
+        this.rectVertices = new float[8];
+    }
+
+    public World getWorld() {
+        return world;
+    }
+
+    @Override
+    public Box2DPhysicsBody createBody(final Entity entity, final float x, final float y, final float width, final float height, final float gravityScale, final short categoryBits, final short maskBits, final String userData) {
+        bodyDef.type = BodyDef.BodyType.DynamicBody;
+        bodyDef.position.set(x, y);
+        bodyDef.gravityScale = gravityScale;
+        final Body body = world.createBody(bodyDef);
+        body.setUserData(entity);
+
+        final PolygonShape shape = new PolygonShape();
+        shape.setAsBox(width * 0.5f, height * 0.5f);
+        fixtureDef.shape = shape;
+        fixtureDef.friction = 0.2f;
+        fixtureDef.isSensor = false;
+        fixtureDef.filter.categoryBits = categoryBits;
+        fixtureDef.filter.maskBits = maskBits;
+        body.createFixture(fixtureDef).setUserData(userData);
+        shape.dispose();
+        return new Box2DPhysicsBody(body);
+    }
+
+    @Override
+    public void createFootSensors(final PhysicsBody body, final float width, final float height) {
+        final Body b2dBody = ((Box2DPhysicsBody) body).getBody();
+        createFootSensor(b2dBody, width, height, -width * 0.2f, "foot-left");
+        createFootSensor(b2dBody, width, height, width * 0.2f, "foot-right");
+    }
+
+    private void createFootSensor(final Body body, final float width, final float height, final float offsetX, final String userData) {
+        final PolygonShape shape = new PolygonShape();
+        shape.setAsBox(width * 0.3f, 15f / Platformer.PPM, new Vector2(offsetX, -height * 0.5f), 0);
+        fixtureDef.shape = shape;
+        fixtureDef.isSensor = true;
+        fixtureDef.filter.categoryBits = body.getFixtureList().first().getFilterData().categoryBits;
+        fixtureDef.filter.maskBits = Platformer.BIT_GROUND;
+        body.createFixture(fixtureDef).setUserData(userData);
+        shape.dispose();
+    }
+
+    @Override
+    public Box2DPhysicsBody createSensor(final Entity entity, final float x, final float y, final float width, final float height, final short categoryBits, final String userData) {
+        final float halfW = width * 0.5f;
+        final float halfH = height * 0.5f;
+        // left-bot
+        rectVertices[0] = -halfW;
+        rectVertices[1] = -halfH;
+        // left-top
+        rectVertices[2] = -halfW;
+        rectVertices[3] = halfH;
+        // right-top
+        rectVertices[4] = halfW;
+        rectVertices[5] = halfH;
+        // right-bot
+        rectVertices[6] = halfW;
+        rectVertices[7] = -halfH;
+
+        final Body body = createChainBody(x, y, rectVertices, true, categoryBits, true, userData);
+        body.setUserData(entity);
+        return new Box2DPhysicsBody(body);
+    }
+
+    @Override
+    public void createGround(final float x, final float y, final float[] vertices, final boolean loop, final boolean oneWay) {
+        createChainBody(x, y, vertices, loop, Platformer.BIT_GROUND, false, oneWay ? "oneWay" : null);
+    }
+
+    private Body createChainBody(final float x, final float y, final float[] vertices, final boolean loop, final short categoryBits, final boolean isSensor, final String userData) {
+        bodyDef.type = BodyDef.BodyType.StaticBody;
+        bodyDef.position.set(x, y);
+        bodyDef.gravityScale = 1;
+        final Body body = world.createBody(bodyDef);
+        final ChainShape shape = new ChainShape();
+        if (loop) {
+            shape.createLoop(vertices);
+        } else {
+            shape.createChain(vertices);
+        }
+        fixtureDef.shape = shape;
+        fixtureDef.friction = 0;
+        fixtureDef.isSensor = isSensor;
+        fixtureDef.filter.categoryBits = categoryBits;
+        fixtureDef.filter.maskBits = STATIC_MASK_BITS;
+        body.createFixture(fixtureDef).setUserData(userData);
+        shape.dispose();
+        return body;
+    }
+}
@@ -0,0 +1,55 @@
+package com.quillraven.platformer.physics;
+/*
+ * Created by Quillraven on 10.07.2018.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2018 Quillraven
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import com.badlogic.gdx.math.Vector2;
+
+/**
+ * Facade of a physic body used by the {@link com.quillraven.platformer.ecs.component.Box2DComponent} and the systems.
+ * The methods are named like the ones of {@link com.badlogic.gdx.physics.box2d.Body} so that the systems do not need to
+ * know which physic backend is used.
+ * <br>
+ * Implementations are {@link Box2DPhysicsBody} and the pure java {@link TilePhysicsBody}.
+ */
+public interface PhysicsBody {
+    Vector2 getPosition();
+
+    Vector2 getWorldCenter();
+
+    Vector2 getLinearVelocity();
+
+    float getMass();
+
+    void applyLinearImpulse(final float impulseX, final float impulseY, final float pointX, final float pointY, final boolean wake);
+
+    void setTransform(final float x, final float y, final float angle);
+
+    boolean isActive();
+
+    void setActive(final boolean active);
+
+    /**
+     * Removes the body from its world. The body must not be used afterwards.
+     */
+    void destroy();
+}
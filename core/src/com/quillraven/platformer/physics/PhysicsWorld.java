@@ -0,0 +1,69 @@
+package com.quillraven.platformer.physics;
+/*
+ * Created by Quillraven on 10.07.2018.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2018 Quillraven
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import com.badlogic.ashley.core.Entity;
+
+/**
+ * Facade of a physic world that creates the bodies of the entities and the static collision geometry of a map.
+ * Together with {@link PhysicsBody} the entity engine and the map manager do not need to know which physic backend
+ * is used.
+ * <br>
+ * Implementations are {@link Box2DPhysicsWorld} and the pure java {@link TilePhysicsWorld}.
+ */
+public interface PhysicsWorld {
+    /**
+     * Creates a dynamic box.
+     *
+     * @param entity       entity of the body that is reported for contacts
+     * @param x            x coordinate of the center of the box in world units
+     * @param y            y coordinate of the center of the box in world units
+     * @param gravityScale 0 for bodies that are not affected by gravity
+     * @param userData     user data of the box (refer to {@link com.quillraven.platformer.WorldContactManager})
+     */
+    PhysicsBody createBody(final Entity entity, final float x, final float y, final float width, final float height, final float gravityScale, final short categoryBits, final short maskBits, final String userData);
+
+    /**
+     * Adds the ground sensors "foot-left" and "foot-right" to the bottom of a body created by
+     * {@link #createBody(Entity, float, float, float, float, float, short, short, String)}.
+     */
+    void createFootSensors(final PhysicsBody body, final float width, final float height);
+
+    /**
+     * Creates a static sensor box that reports overlaps as contacts but does not block any body.
+     *
+     * @param x x coordinate of the center of the box in world units
+     * @param y y coordinate of the center of the box in world units
+     */
+    PhysicsBody createSensor(final Entity entity, final float x, final float y, final float width, final float height, final short categoryBits, final String userData);
+
+    /**
+     * Creates static ground. One-way ground only blocks bodies that are moving down onto it.
+     *
+     * @param x        x coordinate of the origin of the vertices in world units
+     * @param y        y coordinate of the origin of the vertices in world units
+     * @param vertices x and y coordinates of the vertices relative to the origin
+     * @param loop     true to connect the last with the first vertex
+     */
+    void createGround(final float x, final float y, final float[] vertices, final boolean loop, final boolean oneWay);
+}
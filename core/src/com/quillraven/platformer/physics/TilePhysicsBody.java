@@ -0,0 +1,118 @@
+package com.quillraven.platformer.physics;
+/*
+ * Created by Quillraven on 10.07.2018.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2018 Quillraven
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import com.badlogic.ashley.core.Entity;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.Array;
+
+/**
+ * Axis aligned box of a {@link TilePhysicsWorld}. The position is the center of the box like for box2d bodies.
+ * The mass is always 1 which matches box2d's behavior for dynamic bodies without density.
+ */
+public class TilePhysicsBody implements PhysicsBody {
+    final TilePhysicsWorld world;
+    final Entity entity;
+    final Vector2 position;
+    final Vector2 velocity;
+    final float halfWidth;
+    final float halfHeight;
+    final short categoryBits;
+    final float gravityScale;
+    final boolean isSensor;
+    final String userData;
+    // bodies that currently overlap with this body
+    final Array<TilePhysicsBody> contacts;
+    // true if ground contacts are reported (refer to TilePhysicsWorld#createFootSensors)
+    boolean footSensors;
+    boolean groundLeft;
+    boolean groundRight;
+    private boolean active;
+
+    TilePhysicsBody(final TilePhysicsWorld world, final Entity entity, final float x, final float y, final float width, final float height, final short categoryBits, final float gravityScale, final boolean isSensor, final String userData) {
+        this.world = world;
+        this.entity = entity;
+        this.position = new Vector2(x, y);
+        this.velocity = new Vector2(0, 0);
+        this.halfWidth = width * 0.5f;
+        this.halfHeight = height * 0.5f;
+        this.categoryBits = categoryBits;
+        this.gravityScale = gravityScale;
+        this.isSensor = isSensor;
+        this.userData = userData;
+        this.contacts = new Array<>(false, 4);
+        this.footSensors = false;
+        this.groundLeft = false;
+        this.groundRight = false;
+        this.active = true;
+    }
+
+    boolean overlaps(final TilePhysicsBody other) {
+        return Math.abs(position.x - other.position.x) < halfWidth + other.halfWidth && Math.abs(position.y - other.position.y) < halfHeight + other.halfHeight;
+    }
+
+    @Override
+    public Vector2 getPosition() {
+        return position;
+    }
+
+    @Override
+    public Vector2 getWorldCenter() {
+        return position;
+    }
+
+    @Override
+    public Vector2 getLinearVelocity() {
+        return velocity;
+    }
+
+    @Override
+    public float getMass() {
+        return 1;
+    }
+
+    @Override
+    public void applyLinearImpulse(final float impulseX, final float impulseY, final float pointX, final float pointY, final boolean wake) {
+        velocity.add(impulseX / getMass(), impulseY / getMass());
+    }
+
+    @Override
+    public void setTransform(final float x, final float y, final float angle) {
+        position.set(x, y);
+    }
+
+    @Override
+    public boolean isActive() {
+        return active;
+    }
+
+    @Override
+    public void setActive(final boolean active) {
+        this.active = active;
+    }
+
+    @Override
+    public void destroy() {
+        world.destroyBody(this);
+    }
+}
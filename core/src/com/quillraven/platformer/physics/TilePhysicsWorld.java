@@ -0,0 +1,346 @@
+package com.quillraven.platformer.physics;
+/*
+ * Created by Quillraven on 10.07.2018.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2018 Quillraven
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import com.badlogic.ashley.core.Entity;
+import com.badlogic.gdx.maps.tiled.TiledMapTileLayer;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.Array;
+import com.quillraven.platformer.Platformer;
+import com.quillraven.platformer.WorldContactManager;
+
+/**
+ * Lightweight pure java alternative to a box2d world for tile based levels. Bodies are axis aligned boxes that collide
+ * with the cells of a {@link TiledMapTileLayer}. Every non empty cell is solid unless it is covered by one-way ground
+ * (refer to {@link #createGround(float, float, float[], boolean, boolean)}). One-way cells only stop bodies that are
+ * moving down onto their top like the one-way platforms of the box2d world. Bodies are moved per axis, first along
+ * x and then along y, and stop at the first blocking cell that their box sweeps over. That way fast bodies cannot tunnel
+ * through cells. Bodies do not collide with each other. Instead overlaps between the player and objects or enemies are
+ * reported as contacts.
+ * <br>
+ * Contacts are reported through the {@link WorldContactManager} in the same way as for box2d. That way the systems
+ * work with both backends. Bodies with foot sensors get a ground contact for "foot-left" and "foot-right" whenever
+ * the left or right half of their box stands on a cell.
+ * <br>
+ * Slopes and lights are not supported because those require the box2d world. The cells below one-way slopes form
+ * one-way steps instead.
+ */
+public class TilePhysicsWorld implements PhysicsWorld {
+    private static final float EPSILON = 0.001f;
+    private static final byte CELL_EMPTY = 0;
+    private static final byte CELL_SOLID = 1;
+    private static final byte CELL_ONE_WAY = 2;
+
+    private final Vector2 gravity;
+    private final Array<TilePhysicsBody> bodies;
+    private byte[] cells;
+    private int cellsX;
+    private int cellsY;
+    private float cellSize;
+
+    public TilePhysicsWorld(final float gravityX, final float gravityY) {
+        this.gravity = new Vector2(gravityX, gravityY);
+        this.bodies = new Array<>();
+        this.cells = new byte[0];
+        this.cellsX = 0;
+        this.cellsY = 0;
+        this.cellSize = 1;
+    }
+
+    /**
+     * Needs to be called before the ground of the map is created.
+     *
+     * @param layer     tile layer whose non empty cells are used as collision cells
+     * @param unitScale scale to convert the tile size of the layer to world units (f.e. 1 / PPM)
+     */
+    public void setCollisionLayer(final TiledMapTileLayer layer, final float unitScale) {
+        cellsX = layer.getWidth();
+        cellsY = layer.getHeight();
+        cellSize = layer.getTileWidth() * unitScale;
+        cells = new byte[cellsX * cellsY];
+        for (int y = 0; y < cellsY; ++y) {
+            for (int x = 0; x < cellsX; ++x) {
+                final TiledMapTileLayer.Cell cell = layer.getCell(x, y);
+                cells[y * cellsX + x] = cell != null && cell.getTile() != null ? CELL_SOLID : CELL_EMPTY;
+            }
+        }
+    }
+
+    /**
+     * Bodies do not collide with each other and therefore the mask bits are ignored.
+     */
+    @Override
+    public TilePhysicsBody createBody(final Entity entity, final float x, final float y, final float width, final float height, final float gravityScale, final short categoryBits, final short maskBits, final String userData) {
+        final TilePhysicsBody body = new TilePhysicsBody(this, entity, x, y, width, height, categoryBits, gravityScale, false, userData);
+        bodies.add(body);
+        return body;
+    }
+
+    @Override
+    public void createFootSensors(final PhysicsBody body, final float width, final float height) {
+        ((TilePhysicsBody) body).footSensors = true;
+    }
+
+    @Override
+    public TilePhysicsBody createSensor(final Entity entity, final float x, final float y, final float width, final float height, final short categoryBits, final String userData) {
+        final TilePhysicsBody body = new TilePhysicsBody(this, entity, x, y, width, height, categoryBits, 0, true, userData);
+        bodies.add(body);
+        return body;
+    }
+
+    /**
+     * The solid cells are defined by the collision layer. One-way ground turns the solid cells that its edges pass
+     * through into one-way cells. Other ground is ignored.
+     */
+    @Override
+    public void createGround(final float x, final float y, final float[] vertices, final boolean loop, final boolean oneWay) {
+        if (!oneWay) {
+            return;
+        }
+
+        final int numVertices = vertices.length / 2;
+        final int numEdges = loop ? numVertices : numVertices - 1;
+        for (int i = 0; i < numEdges; ++i) {
+            final int next = (i + 1) % numVertices;
+            markOneWayCells(x + vertices[i * 2], y + vertices[i * 2 + 1], x + vertices[next * 2], y + vertices[next * 2 + 1]);
+        }
+    }
+
+    private void markOneWayCells(final float x1, final float y1, final float x2, final float y2) {
+        // sample the edge with a quarter of a cell to find every cell that it passes through
+        final float length = Vector2.len(x2 - x1, y2 - y1);
+        final int samples = Math.max(1, (int) Math.ceil(length * 4 / cellSize));
+        for (int i = 0; i <= samples; ++i) {
+            final float progress = (float) i / samples;
+            final int column = (int) Math.floor((x1 + (x2 - x1) * progress) / cellSize);
+            final int row = (int) Math.floor((y1 + (y2 - y1) * progress) / cellSize);
+            if (column >= 0 && column < cellsX && row >= 0 && row < cellsY && cells[row * cellsX + column] == CELL_SOLID) {
+                cells[row * cellsX + column] = CELL_ONE_WAY;
+            }
+        }
+    }
+
+    void destroyBody(final TilePhysicsBody body) {
+        // like box2d end contact events are fired for the contacts of a destroyed body
+        while (body.contacts.size > 0) {
+            final TilePhysicsBody other = body.contacts.peek();
+            if (body.categoryBits == Platformer.BIT_PLAYER) {
+                endContact(body, other);
+            } else {
+                endContact(other, body);
+            }
+        }
+        if (body.groundLeft) {
+            body.groundLeft = false;
+            WorldContactManager.getInstance().fireEndGroundContact(body.entity, "foot-left");
+        }
+        if (body.groundRight) {
+            body.groundRight = false;
+            WorldContactManager.getInstance().fireEndGroundContact(body.entity, "foot-right");
+        }
+        bodies.removeValue(body, true);
+    }
+
+    public Array<TilePhysicsBody> getBodies() {
+        return bodies;
+    }
+
+    public void step(final float timeStep) {
+        for (int i = 0; i < bodies.size; ++i) {
+            final TilePhysicsBody body = bodies.get(i);
+            if (!body.isActive() || body.isSensor) {
+                continue;
+            }
+
+            body.velocity.mulAdd(gravity, body.gravityScale * timeStep);
+            moveX(body, body.velocity.x * timeStep);
+            moveY(body, body.velocity.y * timeStep);
+
+            if (body.footSensors) {
+                updateGroundContacts(body);
+            }
+        }
+
+        for (int i = 0; i < bodies.size; ++i) {
+            final TilePhysicsBody player = bodies.get(i);
+            if (player.isActive() && player.categoryBits == Platformer.BIT_PLAYER) {
+                updateContacts(player);
+            }
+        }
+    }
+
+    private void moveX(final TilePhysicsBody body, final float distance) {
+        final float bottom = body.position.y - body.halfHeight;
+        final float top = body.position.y + body.halfHeight;
+        if (distance > 0) {
+            // check every cell column that the right side enters during this step
+            final float right = body.position.x + body.halfWidth;
+            final int lastColumn = (int) Math.floor((right + distance - EPSILON) / cellSize);
+            for (int column = (int) Math.floor((right - EPSILON) / cellSize) + 1; column <= lastColumn; ++column) {
+                if (isBlockingColumn(column, bottom, top)) {
+                    body.position.x = column * cellSize - body.halfWidth;
+                    body.velocity.x = 0;
+                    return;
+                }
+            }
+        } else if (distance < 0) {
+            final float left = body.position.x - body.halfWidth;
+            final int lastColumn = (int) Math.floor((left + distance + EPSILON) / cellSize);
+            for (int column = (int) Math.floor((left + EPSILON) / cellSize) - 1; column >= lastColumn; --column) {
+                if (isBlockingColumn(column, bottom, top)) {
+                    body.position.x = (column + 1) * cellSize + body.halfWidth;
+                    body.velocity.x = 0;
+                    return;
+                }
+            }
+        }
+        body.position.x += distance;
+    }
+
+    private void moveY(final TilePhysicsBody body, final float distance) {
+        final float left = body.position.x - body.halfWidth;
+        final float right = body.position.x + body.halfWidth;
+        if (distance > 0) {
+            // ceiling: check every cell row that the top side enters during this step
+            final float top = body.position.y + body.halfHeight;
+            final int lastRow = (int) Math.floor((top + distance - EPSILON) / cellSize);
+            for (int row = (int) Math.floor((top - EPSILON) / cellSize) + 1; row <= lastRow; ++row) {
+                if (isBlockingRow(left, right, row, false)) {
+                    body.position.y = row * cellSize - body.halfHeight;
+                    body.velocity.y = 0;
+                    return;
+                }
+            }
+        } else if (distance < 0) {
+            // landing: check every cell row whose top is crossed by the bottom side during this step. One-way cells
+            // are only checked here; a body whose bottom is already below their top passes through them
+            final float bottom = body.position.y - body.halfHeight;
+            final int lastRow = (int) Math.floor((bottom + distance + EPSILON) / cellSize);
+            for (int row = (int) Math.floor((bottom + EPSILON) / cellSize) - 1; row >= lastRow; --row) {
+                if (isBlockingRow(left, right, row, true)) {
+                    body.position.y = (row + 1) * cellSize + body.halfHeight;
+                    body.velocity.y = 0;
+                    return;
+                }
+            }
+        }
+        body.position.y += distance;
+    }
+
+    private void updateGroundContacts(final TilePhysicsBody body) {
+        final float bottom = body.position.y - body.halfHeight;
+        final int row = Math.round(bottom / cellSize) - 1;
+        final boolean onCellTop = Math.abs((row + 1) * cellSize - bottom) < EPSILON;
+
+        final boolean groundLeft = onCellTop && isBlockingRow(body.position.x - body.halfWidth, body.position.x, row, true);
+        if (groundLeft != body.groundLeft) {
+            body.groundLeft = groundLeft;
+            if (groundLeft) {
+                WorldContactManager.getInstance().fireBeginGroundContact(body.entity, "foot-left");
+            } else {
+                WorldContactManager.getInstance().fireEndGroundContact(body.entity, "foot-left");
+            }
+        }
+
+        final boolean groundRight = onCellTop && isBlockingRow(body.position.x, body.position.x + body.halfWidth, row, true);
+        if (groundRight != body.groundRight) {
+            body.groundRight = groundRight;
+            if (groundRight) {
+                WorldContactManager.getInstance().fireBeginGroundContact(body.entity, "foot-right");
+            } else {
+                WorldContactManager.getInstance().fireEndGroundContact(body.entity, "foot-right");
+            }
+        }
+    }
+
+    private void updateContacts(final TilePhysicsBody player) {
+        final WorldContactManager contactManager = WorldContactManager.getInstance();
+        for (int i = 0; i < bodies.size; ++i) {
+            final TilePhysicsBody other = bodies.get(i);
+            if (other == player || (other.categoryBits != Platformer.BIT_OBJECT && other.categoryBits != Platformer.BIT_ENEMY)) {
+                continue;
+            }
+
+            final boolean touching = other.isActive() && player.overlaps(other);
+            final boolean wasTouching = player.contacts.contains(other, true);
+            if (touching == wasTouching) {
+                continue;
+            }
+
+            if (touching) {
+                player.contacts.add(other);
+                other.contacts.add(player);
+                if (other.categoryBits == Platformer.BIT_OBJECT) {
+                    contactManager.fireBeginObjectContact(player.entity, other.entity, other.userData);
+                } else {
+                    contactManager.fireBeginEnemyContact(player.entity, other.entity, player.velocity.y < -2f);
+                }
+            } else {
+                endContact(player, other);
+            }
+        }
+    }
+
+    private void endContact(final TilePhysicsBody player, final TilePhysicsBody other) {
+        player.contacts.removeValue(other, true);
+        other.contacts.removeValue(player, true);
+        if (other.categoryBits == Platformer.BIT_OBJECT) {
+            WorldContactManager.getInstance().fireEndObjectContact(player.entity, other.entity, other.userData);
+        } else {
+            WorldContactManager.getInstance().fireEndEnemyContact(player.entity, other.entity, player.velocity.y < -2f);
+        }
+    }
+
+    // returns true if any cell of the given column between the y coordinates is solid
+    private boolean isBlockingColumn(final int column, final float y1, final float y2) {
+        if (column < 0 || column >= cellsX) {
+            return false;
+        }
+
+        final int firstRow = Math.max(0, (int) Math.floor((y1 + EPSILON) / cellSize));
+        final int lastRow = Math.min(cellsY - 1, (int) Math.floor((y2 - EPSILON) / cellSize));
+        for (int row = firstRow; row <= lastRow; ++row) {
+            if (cells[row * cellsX + column] == CELL_SOLID) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // returns true if any cell of the given row between the x coordinates is solid or optionally one-way
+    private boolean isBlockingRow(final float x1, final float x2, final int row, final boolean includeOneWay) {
+        if (row < 0 || row >= cellsY) {
+            return false;
+        }
+
+        final int firstColumn = Math.max(0, (int) Math.floor((x1 + EPSILON) / cellSize));
+        final int lastColumn = Math.min(cellsX - 1, (int) Math.floor((x2 - EPSILON) / cellSize));
+        for (int column = firstColumn; column <= lastColumn; ++column) {
+            final byte cell = cells[row * cellsX + column];
+            if (cell == CELL_SOLID || (includeOneWay && cell == CELL_ONE_WAY)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -23,70 +23,101 @@ package com.quillraven.platformer.ui;
  */
 
 import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.assets.AssetLoaderParameters;
 import com.badlogic.gdx.assets.AssetManager;
+import com.badlogic.gdx.assets.loaders.TextureAtlasLoader;
 import com.badlogic.gdx.graphics.g2d.Animation;
 import com.badlogic.gdx.graphics.g2d.Sprite;
 import com.badlogic.gdx.graphics.g2d.TextureAtlas;
 import com.badlogic.gdx.graphics.g2d.TextureRegion;
 import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.GdxRuntimeException;
 
 /**
  * TODO add class description
  */
 
-public class AnimationManager {
+public class AnimationManager implements AssetLoaderParameters.LoadedCallback {
     private static final String TAG = AnimationManager.class.getSimpleName();
     private static final AnimationManager instance = new AnimationManager();
 
-    private final Array<Animation<Sprite>> animationCache;
-    private AssetManager assetManager;
-
+    // animations indexed by the ordinal of their AnimationType
+    private final Animation<Sprite>[] animationCache;
+    private final TextureAtlasLoader.TextureAtlasParameter atlasParameter;
 
+    @SuppressWarnings({"unchecked", "rawtypes"})
     private AnimationManager() {
-        this.animationCache = new Array<>(AnimationType.values().length);
-        for (int i = 0; i < AnimationType.values().length; ++i) {
-            animationCache.add(null);
-        }
+        this.animationCache = (Animation<Sprite>[]) new Animation[AnimationType.values().length];
+        this.atlasParameter = new TextureAtlasLoader.TextureAtlasParameter();
+        atlasParameter.loadedCallback = this;
     }
 
     public static AnimationManager getInstance() {
         return instance;
     }
 
+    /**
+     * Returns the animation of the given type. All animations are created when their atlas is loaded
+     * (see {@link #loadAnimations(AssetManager)}) and therefore this method does not allocate anything.
+     */
     public Animation<Sprite> getAnimation(final AnimationType aniType) {
-        Animation<Sprite> animation = animationCache.get(aniType.ordinal());
-        if (animation == null) {
-            Gdx.app.debug(TAG, "Creating new animation " + aniType);
-            final TextureRegion[][] regions = assetManager.get(aniType.atlasPath, TextureAtlas.class).findRegion(aniType.atlasKey).split(aniType.frameWidth, aniType.frameHeight);
-            final Array<Sprite> keyFrames = new Array<>();
-            for (final TextureRegion[] rowFrames : regions) {
-                for (final TextureRegion frame : rowFrames) {
-                    keyFrames.add(new Sprite(frame));
-                }
+        return animationCache[aniType.ordinal()];
+    }
+
+    public void loadAnimations(final AssetManager assetManager) {
+        final Array<String> atlasPaths = new Array<>();
+        for (final AnimationType aniType : AnimationType.values()) {
+            if (animationCache[aniType.ordinal()] != null) {
+                continue;
+            }
+
+            if (assetManager.isLoaded(aniType.atlasPath)) {
+                createAnimation(assetManager.get(aniType.atlasPath, TextureAtlas.class), aniType);
+            } else if (!atlasPaths.contains(aniType.atlasPath, false)) {
+                // animations are created by finishedLoading as part of the loading state
+                atlasPaths.add(aniType.atlasPath);
+                assetManager.load(aniType.atlasPath, TextureAtlas.class, atlasParameter);
             }
-            animation = new Animation<>(aniType.frameDuration, keyFrames);
-            animationCache.set(aniType.ordinal(), animation);
         }
-        return animation;
     }
 
-    public void loadAnimations(final AssetManager assetManager) {
-        if (!assetManager.isLoaded(AnimationType.PLAYER_IDLE.atlasPath)) {
-            this.assetManager = assetManager;
-            for (final AnimationType aniType : AnimationType.values()) {
-                assetManager.load(aniType.atlasPath, TextureAtlas.class);
+    @Override
+    @SuppressWarnings("rawtypes")
+    public void finishedLoading(final AssetManager assetManager, final String fileName, final Class type) {
+        // called by the asset manager during the loading state once an atlas is loaded
+        final TextureAtlas atlas = assetManager.get(fileName, TextureAtlas.class);
+        for (final AnimationType aniType : AnimationType.values()) {
+            if (animationCache[aniType.ordinal()] == null && aniType.atlasPath.equals(fileName)) {
+                createAnimation(atlas, aniType);
+            }
+        }
+    }
+
+    private void createAnimation(final TextureAtlas atlas, final AnimationType aniType) {
+        Gdx.app.debug(TAG, "Creating animation " + aniType);
+        final TextureAtlas.AtlasRegion region = atlas.findRegion(aniType.atlasKey);
+        if (region == null) {
+            throw new GdxRuntimeException("There is no region " + aniType.atlasKey + " for animation " + aniType);
+        }
+
+        final TextureRegion[][] regions = region.split(aniType.frameWidth, aniType.frameHeight);
+        final Array<Sprite> keyFrames = new Array<>();
+        for (final TextureRegion[] rowFrames : regions) {
+            for (final TextureRegion frame : rowFrames) {
+                keyFrames.add(new Sprite(frame));
             }
         }
+        animationCache[aniType.ordinal()] = new Animation<>(aniType.frameDuration, keyFrames);
     }
 
     public enum AnimationType {
-        PLAYER_IDLE("characters/characters.atlas", "playerStand", 66, 92, 0f),
-        PLAYER_WALK("characters/characters.atlas", "playerWalk", 74, 97, 0.03f),
-        PLAYER_JUMP("characters/characters.atlas", "playerJump", 67, 94, 0f),
-        FLY_WALK("characters/characters.atlas", "flyWalk", 75, 36, 0.07f),
-        FLY_DEAD("characters/characters.atlas", "flyDead", 59, 33, 0f),
-        SLIME_WALK("characters/characters.atlas", "slimeWalk", 51, 28, 0.5f),
-        SLIME_DEAD("characters/characters.atlas", "slimeDead", 59, 12, 0f);
+        PLAYER_IDLE("world/world.atlas", "playerStand", 66, 92, 0f),
+        PLAYER_WALK("world/world.atlas", "playerWalk", 74, 97, 0.03f),
+        PLAYER_JUMP("world/world.atlas", "playerJump", 67, 94, 0f),
+        FLY_WALK("world/world.atlas", "flyWalk", 75, 36, 0.07f),
+        FLY_DEAD("world/world.atlas", "flyDead", 59, 33, 0f),
+        SLIME_WALK("world/world.atlas", "slimeWalk", 51, 28, 0.5f),
+        SLIME_DEAD("world/world.atlas", "slimeDead", 59, 12, 0f);
 
         private final String atlasPath;
         private final String atlasKey;
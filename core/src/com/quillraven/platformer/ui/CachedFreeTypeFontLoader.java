@@ -0,0 +1,230 @@
+package com.quillraven.platformer.ui;
+/*
+ * Created by Quillraven on 24.07.2018.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2018 Quillraven
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.assets.AssetDescriptor;
+import com.badlogic.gdx.assets.AssetManager;
+import com.badlogic.gdx.assets.loaders.FileHandleResolver;
+import com.badlogic.gdx.assets.loaders.SynchronousAssetLoader;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.PixmapIO;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.BitmapFont;
+import com.badlogic.gdx.graphics.g2d.PixmapPacker;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.graphics.g2d.freetype.FreeTypeFontGenerator;
+import com.badlogic.gdx.graphics.g2d.freetype.FreetypeFontLoader;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+import java.util.zip.CRC32;
+
+/**
+ * Replacement for {@link FreetypeFontLoader} that stores every generated {@link BitmapFont} in local storage
+ * (.fnt file and one png per glyph page). The cache key contains a hash of the font file and of the font parameters.
+ * If a cached font exists, it is loaded like a normal bitmap font and FreeType is not used at all.
+ * <br>
+ * Uses the same {@link FreetypeFontLoader.FreeTypeFontLoaderParameter} and therefore it can be registered for the
+ * ".ttf" suffix instead of the original loader.
+ */
+public class CachedFreeTypeFontLoader extends SynchronousAssetLoader<BitmapFont, FreetypeFontLoader.FreeTypeFontLoaderParameter> {
+    private static final String TAG = CachedFreeTypeFontLoader.class.getSimpleName();
+    private static final String CACHE_DIR = "fontcache/";
+    // increase if the format of the cached files changes
+    private static final int CACHE_VERSION = 1;
+    private static final int PAGE_SIZE = 1024;
+
+    public CachedFreeTypeFontLoader(final FileHandleResolver resolver) {
+        super(resolver);
+    }
+
+    @Override
+    public BitmapFont load(final AssetManager assetManager, final String fileName, final FileHandle file, final FreetypeFontLoader.FreeTypeFontLoaderParameter parameter) {
+        if (parameter == null) {
+            throw new GdxRuntimeException("FreeTypeFontLoaderParameter cannot be null");
+        }
+
+        final FileHandle fontFile = resolve(parameter.fontFileName);
+        final FreeTypeFontGenerator.FreeTypeFontParameter fontParameters = parameter.fontParameters;
+        final String cacheKey = fontFile.nameWithoutExtension() + "_" + fontParameters.size + "_" + getHash(fontFile, fontParameters);
+        final FileHandle fntFile = Gdx.files.isLocalStorageAvailable() ? Gdx.files.local(CACHE_DIR + cacheKey + ".fnt") : null;
+        if (fntFile != null && fntFile.exists()) {
+            try {
+                Gdx.app.debug(TAG, "Loading cached font " + fntFile.path());
+                return loadCachedFont(fntFile, fontParameters);
+            } catch (GdxRuntimeException e) {
+                Gdx.app.error(TAG, "Could not load cached font " + fntFile.path() + ". Font gets generated again", e);
+            }
+        }
+
+        Gdx.app.debug(TAG, "Generating font " + cacheKey);
+        final FreeTypeFontGenerator generator = new FreeTypeFontGenerator(fontFile);
+        final PixmapPacker packer = new PixmapPacker(PAGE_SIZE, PAGE_SIZE, Pixmap.Format.RGBA8888, 1, false);
+        // same transparent color as the packer of the FreeTypeFontGenerator to avoid dark glyph edges with linear filtering
+        packer.setTransparentColor(fontParameters.borderWidth > 0 ? fontParameters.borderColor : fontParameters.color);
+        packer.getTransparentColor().a = 0;
+        final FreeTypeFontGenerator.FreeTypeFontParameter packerParameters = copyWithPacker(fontParameters, packer);
+        final FreeTypeFontGenerator.FreeTypeBitmapFontData data = generator.generateData(packerParameters);
+        generator.dispose();
+
+        final Array<TextureRegion> regions = new Array<>();
+        packer.updateTextureRegions(regions, fontParameters.minFilter, fontParameters.magFilter, fontParameters.genMipMaps);
+        if (fntFile != null) {
+            try {
+                writeCachedFont(fntFile, cacheKey, data, packer);
+            } catch (GdxRuntimeException e) {
+                Gdx.app.error(TAG, "Could not write font cache " + fntFile.path(), e);
+            }
+        }
+
+        final BitmapFont font = new BitmapFont(data, regions, true);
+        // textures of the packer pages belong to the font
+        font.setOwnsTexture(true);
+        return font;
+    }
+
+    private BitmapFont loadCachedFont(final FileHandle fntFile, final FreeTypeFontGenerator.FreeTypeFontParameter fontParameters) {
+        final BitmapFont.BitmapFontData data = new BitmapFont.BitmapFontData(fntFile, fontParameters.flip);
+        final Array<TextureRegion> regions = new Array<>(data.imagePaths.length);
+        for (final String imagePath : data.imagePaths) {
+            final Texture texture = new Texture(Gdx.files.local(imagePath), fontParameters.genMipMaps);
+            texture.setFilter(fontParameters.minFilter, fontParameters.magFilter);
+            regions.add(new TextureRegion(texture));
+        }
+        final BitmapFont font = new BitmapFont(data, regions, true);
+        font.setOwnsTexture(true);
+        return font;
+    }
+
+    private void writeCachedFont(final FileHandle fntFile, final String cacheKey, final BitmapFont.BitmapFontData data, final PixmapPacker packer) {
+        final Array<PixmapPacker.Page> pages = packer.getPages();
+        final Array<BitmapFont.Glyph> glyphs = new Array<>();
+        for (final BitmapFont.Glyph[] glyphPage : data.glyphs) {
+            if (glyphPage == null) {
+                continue;
+            }
+            for (final BitmapFont.Glyph glyph : glyphPage) {
+                if (glyph != null) {
+                    glyphs.add(glyph);
+                }
+            }
+        }
+
+        // format of the AngelCode BMFont text files that BitmapFontData can parse
+        final StringBuilder fnt = new StringBuilder();
+        fnt.append("info face=\"").append(cacheKey).append("\" size=").append(Math.round(data.lineHeight))
+                .append(" bold=0 italic=0 charset=\"\" unicode=0 stretchH=100 smooth=1 aa=1 padding=")
+                .append(Math.round(data.padTop)).append(',').append(Math.round(data.padRight)).append(',')
+                .append(Math.round(data.padBottom)).append(',').append(Math.round(data.padLeft)).append(" spacing=0,0\n");
+        fnt.append("common lineHeight=").append(Math.round(data.lineHeight))
+                .append(" base=").append(Math.round(data.capHeight + (data.flipped ? -data.ascent : data.ascent)))
+                .append(" scaleW=").append(PAGE_SIZE).append(" scaleH=").append(PAGE_SIZE)
+                .append(" pages=").append(pages.size).append(" packed=0\n");
+        for (int i = 0; i < pages.size; ++i) {
+            final String pageFileName = cacheKey + "_" + i + ".png";
+            PixmapIO.writePNG(fntFile.sibling(pageFileName), pages.get(i).getPixmap());
+            fnt.append("page id=").append(i).append(" file=\"").append(pageFileName).append("\"\n");
+        }
+        fnt.append("chars count=").append(glyphs.size).append('\n');
+        for (final BitmapFont.Glyph glyph : glyphs) {
+            fnt.append("char id=").append(glyph.id)
+                    .append(" x=").append(glyph.srcX)
+                    .append(" y=").append(glyph.srcY)
+                    .append(" width=").append(glyph.width)
+                    .append(" height=").append(glyph.height)
+                    .append(" xoffset=").append(glyph.xoffset)
+                    .append(" yoffset=").append(data.flipped ? glyph.yoffset : -(glyph.height + glyph.yoffset))
+                    .append(" xadvance=").append(glyph.xadvance)
+                    .append(" page=").append(glyph.page)
+                    .append(" chnl=0\n");
+        }
+
+        final StringBuilder kernings = new StringBuilder();
+        int numKernings = 0;
+        for (final BitmapFont.Glyph first : glyphs) {
+            for (final BitmapFont.Glyph second : glyphs) {
+                final int amount = first.getKerning((char) second.id);
+                if (amount != 0) {
+                    kernings.append("kerning first=").append(first.id).append(" second=").append(second.id).append(" amount=").append(amount).append('\n');
+                    ++numKernings;
+                }
+            }
+        }
+        fnt.append("kernings count=").append(numKernings).append('\n').append(kernings);
+
+        // write the fnt file last because its existence marks a complete cache entry
+        fntFile.writeString(fnt.toString(), false, "UTF-8");
+        Gdx.app.debug(TAG, "Font cache written: " + fntFile.path());
+    }
+
+    private FreeTypeFontGenerator.FreeTypeFontParameter copyWithPacker(final FreeTypeFontGenerator.FreeTypeFontParameter source, final PixmapPacker packer) {
+        final FreeTypeFontGenerator.FreeTypeFontParameter result = new FreeTypeFontGenerator.FreeTypeFontParameter();
+        result.size = source.size;
+        result.mono = source.mono;
+        result.hinting = source.hinting;
+        result.color.set(source.color);
+        result.gamma = source.gamma;
+        result.renderCount = source.renderCount;
+        result.borderWidth = source.borderWidth;
+        result.borderColor.set(source.borderColor);
+        result.borderStraight = source.borderStraight;
+        result.borderGamma = source.borderGamma;
+        result.shadowOffsetX = source.shadowOffsetX;
+        result.shadowOffsetY = source.shadowOffsetY;
+        result.shadowColor.set(source.shadowColor);
+        result.spaceX = source.spaceX;
+        result.spaceY = source.spaceY;
+        result.characters = source.characters;
+        result.kerning = source.kerning;
+        result.flip = source.flip;
+        result.genMipMaps = source.genMipMaps;
+        result.minFilter = source.minFilter;
+        result.magFilter = source.magFilter;
+        // glyphs need to be rendered completely to be able to cache them
+        result.incremental = false;
+        result.packer = packer;
+        return result;
+    }
+
+    private String getHash(final FileHandle fontFile, final FreeTypeFontGenerator.FreeTypeFontParameter parameter) {
+        final CRC32 crc = new CRC32();
+        crc.update(fontFile.readBytes());
+        final String parameterKey = CACHE_VERSION + "|" + parameter.size + "|" + parameter.mono + "|" + parameter.hinting
+                + "|" + parameter.color + "|" + parameter.gamma + "|" + parameter.renderCount
+                + "|" + parameter.borderWidth + "|" + parameter.borderColor + "|" + parameter.borderStraight + "|" + parameter.borderGamma
+                + "|" + parameter.shadowOffsetX + "|" + parameter.shadowOffsetY + "|" + parameter.shadowColor
+                + "|" + parameter.spaceX + "|" + parameter.spaceY + "|" + parameter.characters + "|" + parameter.kerning
+                + "|" + parameter.flip + "|" + parameter.genMipMaps + "|" + parameter.minFilter + "|" + parameter.magFilter;
+        crc.update(parameterKey.getBytes());
+        return Long.toHexString(crc.getValue());
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public Array<AssetDescriptor> getDependencies(final String fileName, final FileHandle file, final FreetypeFontLoader.FreeTypeFontLoaderParameter parameter) {
+        // no FreeTypeFontGenerator dependency because FreeType is not needed for cached fonts
+        return null;
+    }
+}
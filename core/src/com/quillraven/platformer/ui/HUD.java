@@ -33,6 +33,7 @@ import com.badlogic.gdx.scenes.scene2d.ui.Table;
 import com.badlogic.gdx.scenes.scene2d.utils.TextureRegionDrawable;
 import com.badlogic.gdx.utils.I18NBundle;
 import com.badlogic.gdx.utils.viewport.Viewport;
+import com.quillraven.platformer.AnimationClock;
 import com.quillraven.platformer.GameInputManager;
 
 import static com.badlogic.gdx.scenes.scene2d.actions.Actions.*;
@@ -99,11 +100,8 @@ public abstract class HUD extends InputListener implements GameInputManager.Game
         return i18nBundle.format(key);
     }
 
-    public void onUpdate(final float fixedPhysicsSteps) {
-        stage.act(fixedPhysicsSteps);
-    }
-
     public void onRender() {
+        stage.act(AnimationClock.getInstance().getDeltaTime());
         hudViewport.apply();
         stage.draw();
     }
@@ -0,0 +1,267 @@
+package com.quillraven.platformer.tools;
+/*
+ * Created by Quillraven on 26.07.2018.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2018 Quillraven
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import com.badlogic.ashley.core.Entity;
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.assets.AssetManager;
+import com.badlogic.gdx.assets.loaders.resolvers.InternalFileHandleResolver;
+import com.badlogic.gdx.backends.headless.HeadlessApplication;
+import com.badlogic.gdx.backends.headless.HeadlessApplicationConfiguration;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.maps.MapLayer;
+import com.badlogic.gdx.maps.MapObject;
+import com.badlogic.gdx.maps.MapProperties;
+import com.badlogic.gdx.maps.objects.PolylineMapObject;
+import com.badlogic.gdx.maps.objects.RectangleMapObject;
+import com.badlogic.gdx.maps.tiled.TiledMap;
+import com.badlogic.gdx.maps.tiled.TiledMapTileLayer;
+import com.badlogic.gdx.maps.tiled.TmxMapLoader;
+import com.badlogic.gdx.maps.tiled.objects.TiledMapTileMapObject;
+import com.badlogic.gdx.math.Polyline;
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.TimeUtils;
+import com.quillraven.platformer.ecs.EntityBodyFactory;
+import com.quillraven.platformer.map.BinaryMapFormat;
+import com.quillraven.platformer.map.BinaryMapLoader;
+import com.quillraven.platformer.map.MapManager;
+import com.quillraven.platformer.physics.PhysicsBody;
+import com.quillraven.platformer.physics.TilePhysicsWorld;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import static com.quillraven.platformer.Platformer.PPM;
+
+/**
+ * Simulates a level with the {@link TilePhysicsWorld} without any graphics. The player runs to the right and jumps
+ * periodically and respawns like in the game when falling down or completing the level. Enemies and additional actors
+ * walk and turn around when hitting a wall or leaving the map. The input is scripted and therefore every run of the same level produces the same checksum of the final body positions which can be compared
+ * between platforms and versions (replays).
+ * <br>
+ * Usage: HeadlessSimulation &lt;map file&gt; [steps] [additional actors]. The map file is relative to the assets folder.
+ */
+public class HeadlessSimulation extends ApplicationAdapter {
+    private static final float TIME_STEP = 1 / 60f;
+    // tile layer whose cells are the collision cells
+    private static final String COLLISION_LAYER = "ground";
+    private static final int JUMP_INTERVAL = 60;
+    private static final float ACTOR_SPEED = 2;
+    // layers that contain enemies and game objects (refer to MapManager)
+    private static final String[] MAP_OBJECT_LAYERS = {"collisions", "objects", "enemies"};
+
+    private final String mapFilePath;
+    private final int steps;
+    private final int numActors;
+    // walking speed and spawn position per body; the player is the first body
+    private final Array<PhysicsBody> walkers;
+    private final Array<Float> walkSpeeds;
+    private final Array<Vector2> spawnPositions;
+    private float mapWidth;
+    private int deaths;
+    private int levelsCompleted;
+
+    private HeadlessSimulation(final String mapFilePath, final int steps, final int numActors) {
+        this.mapFilePath = mapFilePath;
+        this.steps = steps;
+        this.numActors = numActors;
+        this.walkers = new Array<>();
+        this.walkSpeeds = new Array<>();
+        this.spawnPositions = new Array<>();
+        this.deaths = 0;
+        this.levelsCompleted = 0;
+    }
+
+    public static void main(final String[] args) {
+        if (args.length < 1) {
+            System.err.println("Usage: HeadlessSimulation <map file> [steps] [additional actors]");
+            System.exit(1);
+        }
+
+        final HeadlessApplicationConfiguration config = new HeadlessApplicationConfiguration();
+        // everything is done in create
+        config.renderInterval = -1;
+        new HeadlessApplication(new HeadlessSimulation(args[0], args.length > 1 ? Integer.parseInt(args[1]) : 3600, args.length > 2 ? Integer.parseInt(args[2]) : 0), config);
+    }
+
+    @Override
+    public void create() {
+        // the headless backend has no GL; the tileset textures of the map are loaded against a no-op GL
+        Gdx.gl = Gdx.gl20 = (GL20) Proxy.newProxyInstance(GL20.class.getClassLoader(), new Class<?>[]{GL20.class}, new InvocationHandler() {
+            @Override
+            public Object invoke(final Object proxy, final Method method, final Object[] args) {
+                final Class<?> returnType = method.getReturnType();
+                if (returnType == int.class) {
+                    return 0;
+                } else if (returnType == boolean.class) {
+                    return false;
+                }
+                return returnType == String.class ? "" : null;
+            }
+        });
+
+        final AssetManager assetManager = new AssetManager();
+        assetManager.setLoader(TiledMap.class, new TmxMapLoader(new InternalFileHandleResolver()));
+        assetManager.setLoader(TiledMap.class, BinaryMapFormat.FILE_EXTENSION, new BinaryMapLoader(new InternalFileHandleResolver()));
+        assetManager.load(mapFilePath, TiledMap.class);
+        assetManager.finishLoading();
+        final TiledMap tiledMap = assetManager.get(mapFilePath, TiledMap.class);
+
+        final TilePhysicsWorld world = createWorld(tiledMap);
+        final PhysicsBody player = walkers.first();
+        final long startTime = TimeUtils.nanoTime();
+        for (int step = 0; step < steps; ++step) {
+            updateWalkers();
+            if (step % JUMP_INTERVAL == 0 && player.getLinearVelocity().y == 0) {
+                // same impulse as the JumpSystem
+                player.applyLinearImpulse(0, (EntityBodyFactory.PLAYER_JUMP_SPEED - player.getLinearVelocity().y) * player.getMass(), 0, 0, true);
+            }
+            world.step(TIME_STEP);
+        }
+        final long duration = TimeUtils.timeSinceNanos(startTime);
+
+        final float durationMillis = duration / 1000000f;
+        final int numBodies = world.getBodies().size;
+        System.out.println("Map: " + mapFilePath + ", bodies: " + numBodies + ", steps: " + steps);
+        System.out.println("Simulation time: " + durationMillis + " ms (" + durationMillis / steps + " ms per step, " + (long) (numBodies * (double) steps / Math.max(durationMillis, 0.001f)) + " body steps per ms)");
+        System.out.println("Player position: " + player.getPosition() + ", deaths: " + deaths + ", levels completed: " + levelsCompleted);
+        System.out.println("Checksum: " + Integer.toHexString(getChecksum(world)));
+
+        assetManager.dispose();
+        Gdx.app.exit();
+    }
+
+    private TilePhysicsWorld createWorld(final TiledMap tiledMap) {
+        final TilePhysicsWorld world = new TilePhysicsWorld(0, -PPM);
+        final MapLayer collisionLayer = tiledMap.getLayers().get(COLLISION_LAYER);
+        if (!(collisionLayer instanceof TiledMapTileLayer)) {
+            throw new GdxRuntimeException("Map " + mapFilePath + " has no tile layer " + COLLISION_LAYER);
+        }
+        final TiledMapTileLayer tileLayer = (TiledMapTileLayer) collisionLayer;
+        world.setCollisionLayer(tileLayer, 1 / PPM);
+
+        // same bodies as the ones created by the EntityEngine and MapManager
+        final MapProperties mapProperties = tiledMap.getProperties();
+        addWalker(EntityBodyFactory.createPlayerBody(world, new Entity(), mapProperties.get("startX", Integer.class), mapProperties.get("startY", Integer.class)), EntityBodyFactory.PLAYER_MAX_SPEED);
+        for (final String layerName : MAP_OBJECT_LAYERS) {
+            final MapLayer layer = tiledMap.getLayers().get(layerName);
+            if (layer == null) {
+                continue;
+            }
+
+            for (final MapObject mapObj : layer.getObjects()) {
+                if (mapObj instanceof RectangleMapObject) {
+                    final Rectangle rect = ((RectangleMapObject) mapObj).getRectangle();
+                    if (rect.width == 0) {
+                        createEnemy(world, mapObj.getProperties());
+                    } else {
+                        createRectangleGround(world, rect, MapManager.isOneWay(mapObj));
+                    }
+                } else if (mapObj instanceof PolylineMapObject) {
+                    createPolylineGround(world, ((PolylineMapObject) mapObj).getPolyline(), MapManager.isOneWay(mapObj));
+                } else if (mapObj instanceof TiledMapTileMapObject) {
+                    EntityBodyFactory.createGameObjectBody(world, new Entity(), mapObj.getProperties());
+                }
+            }
+        }
+
+        // additional actors are slimes that are spread over the top row of the map and fall down at the beginning
+        mapWidth = tileLayer.getWidth() * tileLayer.getTileWidth() / PPM;
+        final float mapHeight = tileLayer.getHeight() * tileLayer.getTileHeight() / PPM;
+        for (int i = 0; i < numActors; ++i) {
+            final float x = (i + 0.5f) * mapWidth / numActors;
+            addWalker(EntityBodyFactory.createEnemyBody(world, new Entity(), x, mapHeight - 0.5f, false), i % 2 == 0 ? ACTOR_SPEED : -ACTOR_SPEED);
+        }
+        return world;
+    }
+
+    private void createEnemy(final TilePhysicsWorld world, final MapProperties properties) {
+        final boolean isFly = "fly".equals(properties.get("enemyType", String.class));
+        addWalker(EntityBodyFactory.createEnemyBody(world, new Entity(), properties.get("x", Float.class) / PPM, properties.get("y", Float.class) / PPM, isFly), EntityBodyFactory.getEnemyMaxSpeed(isFly));
+    }
+
+    private void createRectangleGround(final TilePhysicsWorld world, final Rectangle rect, final boolean oneWay) {
+        final float width = rect.width / PPM;
+        final float height = rect.height / PPM;
+        world.createGround(rect.x / PPM, rect.y / PPM, new float[]{0, 0, 0, height, width, height, width, 0}, true, oneWay);
+    }
+
+    private void createPolylineGround(final TilePhysicsWorld world, final Polyline polyline, final boolean oneWay) {
+        final float[] vertices = polyline.getVertices().clone();
+        for (int i = 0; i < vertices.length; ++i) {
+            vertices[i] /= PPM;
+        }
+        world.createGround(polyline.getX() / PPM, polyline.getY() / PPM, vertices, false, oneWay);
+    }
+
+    private void addWalker(final PhysicsBody body, final float speed) {
+        walkers.add(body);
+        walkSpeeds.add(speed);
+        spawnPositions.add(new Vector2(body.getPosition()));
+    }
+
+    private void updateWalkers() {
+        for (int i = 0; i < walkers.size; ++i) {
+            final PhysicsBody body = walkers.get(i);
+            final Vector2 position = body.getPosition();
+            float speed = walkSpeeds.get(i);
+            if (i == 0) {
+                // player rules of the GameProgressSystem
+                if (position.y < -1 || position.x < -1) {
+                    ++deaths;
+                    respawn(body, spawnPositions.get(i));
+                } else if (position.x > mapWidth) {
+                    ++levelsCompleted;
+                    respawn(body, spawnPositions.get(i));
+                }
+            } else if (position.y < -1) {
+                respawn(body, spawnPositions.get(i));
+            } else if (body.getLinearVelocity().x == 0 || (position.x < 0 && speed < 0) || (position.x > mapWidth && speed > 0)) {
+                // blocked by a wall in the last step or left the map -> turn around
+                speed = -speed;
+                walkSpeeds.set(i, speed);
+            }
+            // same impulse as the MoveSystem
+            body.applyLinearImpulse((speed - body.getLinearVelocity().x) * body.getMass(), 0, 0, 0, true);
+        }
+    }
+
+    private void respawn(final PhysicsBody body, final Vector2 spawnPosition) {
+        body.setTransform(spawnPosition.x, spawnPosition.y, 0);
+        body.applyLinearImpulse(0, -body.getLinearVelocity().y * body.getMass(), 0, 0, true);
+    }
+
+    private int getChecksum(final TilePhysicsWorld world) {
+        int checksum = 17;
+        for (final PhysicsBody body : world.getBodies()) {
+            checksum = 31 * checksum + Float.floatToIntBits(body.getPosition().x);
+            checksum = 31 * checksum + Float.floatToIntBits(body.getPosition().y);
+        }
+        return checksum;
+    }
+}
@@ -0,0 +1,448 @@
+package com.quillraven.platformer.tools;
+/*
+ * Created by Quillraven on 25.07.2018.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2018 Quillraven
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Base64Coder;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.XmlReader;
+import com.quillraven.platformer.map.BinaryMapFormat;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Converts Tiled .tmx maps into the binary format of {@link BinaryMapFormat}. Object coordinates and properties are
+ * converted the same way as the TmxMapLoader of libgdx does it (y-up coordinate system) so that the loaded maps are
+ * identical.
+ * <br>
+ * Usage: MapCompiler &lt;input directory&gt; &lt;output directory&gt;. Every .tmx file of the input directory is compiled.
+ */
+public class MapCompiler {
+    private final XmlReader xmlReader;
+    // firstGid, tileWidth and tileHeight of each tileset of the current map to calculate the scale of tile objects
+    private final IntArray tilesetInfo;
+
+    private MapCompiler() {
+        this.xmlReader = new XmlReader();
+        this.tilesetInfo = new IntArray();
+    }
+
+    public static void main(final String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: MapCompiler <input directory> <output directory>");
+            System.exit(1);
+        }
+
+        final File inputDir = new File(args[0]);
+        final File outputDir = new File(args[1]);
+        final File[] tmxFiles = inputDir.listFiles();
+        if (tmxFiles == null) {
+            throw new GdxRuntimeException("Input directory does not exist: " + inputDir.getAbsolutePath());
+        }
+        outputDir.mkdirs();
+
+        final MapCompiler compiler = new MapCompiler();
+        for (final File tmxFile : tmxFiles) {
+            if (tmxFile.getName().endsWith(".tmx")) {
+                final File outputFile = new File(outputDir, tmxFile.getName().replace(".tmx", BinaryMapFormat.FILE_EXTENSION));
+                compiler.compile(tmxFile, outputFile);
+                System.out.println("Compiled " + tmxFile.getPath() + " to " + outputFile.getPath() + " (" + outputFile.length() + " bytes)");
+            }
+        }
+    }
+
+    private void compile(final File tmxFile, final File outputFile) throws IOException {
+        final XmlReader.Element root = xmlReader.parse(new FileHandle(tmxFile));
+        final int width = root.getIntAttribute("width");
+        final int height = root.getIntAttribute("height");
+        final int tileWidth = root.getIntAttribute("tilewidth");
+        final int tileHeight = root.getIntAttribute("tileheight");
+        final int heightInPixels = height * tileHeight;
+        tilesetInfo.clear();
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(outputFile)))) {
+            out.writeInt(BinaryMapFormat.MAGIC);
+            out.writeInt(BinaryMapFormat.VERSION);
+
+            // same map properties as the TmxMapLoader
+            final PropertyWriter mapProperties = new PropertyWriter();
+            if (root.getAttribute("orientation", null) != null) {
+                mapProperties.addString("orientation", root.getAttribute("orientation"));
+            }
+            mapProperties.addInt("width", width);
+            mapProperties.addInt("height", height);
+            mapProperties.addInt("tilewidth", tileWidth);
+            mapProperties.addInt("tileheight", tileHeight);
+            if (root.getAttribute("backgroundcolor", null) != null) {
+                mapProperties.addString("backgroundcolor", root.getAttribute("backgroundcolor"));
+            }
+            mapProperties.addCustom(root.getChildByName("properties"));
+            mapProperties.write(out);
+            out.writeInt(width);
+            out.writeInt(height);
+            out.writeInt(tileWidth);
+            out.writeInt(tileHeight);
+
+            final Array<XmlReader.Element> tilesets = root.getChildrenByName("tileset");
+            out.writeInt(tilesets.size);
+            for (final XmlReader.Element tileset : tilesets) {
+                writeTileset(out, tmxFile, tileset);
+            }
+
+            int numLayers = 0;
+            for (int i = 0; i < root.getChildCount(); ++i) {
+                final String name = root.getChild(i).getName();
+                if ("layer".equals(name) || "objectgroup".equals(name)) {
+                    ++numLayers;
+                }
+            }
+            out.writeInt(numLayers);
+            for (int i = 0; i < root.getChildCount(); ++i) {
+                final XmlReader.Element element = root.getChild(i);
+                if ("layer".equals(element.getName())) {
+                    writeBasicLayerInfo(out, BinaryMapFormat.LAYER_TILES, element);
+                    writeTileLayer(out, element);
+                } else if ("objectgroup".equals(element.getName())) {
+                    writeBasicLayerInfo(out, BinaryMapFormat.LAYER_OBJECTS, element);
+                    writeObjectLayer(out, element, heightInPixels);
+                } else if ("imagelayer".equals(element.getName()) || "group".equals(element.getName())) {
+                    System.err.println("Skipping unsupported layer " + element.getAttribute("name", "") + " of " + tmxFile.getName());
+                }
+            }
+        }
+    }
+
+    private void writeTileset(final DataOutputStream out, final File tmxFile, final XmlReader.Element mapTileset) throws IOException {
+        final int firstGid = mapTileset.getIntAttribute("firstgid", 1);
+        XmlReader.Element tileset = mapTileset;
+        File tilesetDir = tmxFile.getParentFile();
+        final String source = mapTileset.getAttribute("source", null);
+        if (source != null) {
+            final File tsxFile = new File(tilesetDir, source);
+            tileset = xmlReader.parse(new FileHandle(tsxFile));
+            tilesetDir = tsxFile.getParentFile();
+        }
+
+        final XmlReader.Element image = tileset.getChildByName("image");
+        if (image == null) {
+            throw new GdxRuntimeException("Tilesets without a single image are not supported: " + tileset.getAttribute("name", ""));
+        }
+        final File imageFile = new File(tilesetDir, image.getAttribute("source"));
+
+        tilesetInfo.add(firstGid, tileset.getIntAttribute("tilewidth"), tileset.getIntAttribute("tileheight"));
+        writeString(out, tileset.getAttribute("name", ""));
+        out.writeInt(firstGid);
+        writeString(out, getRelativePath(tmxFile.getParentFile(), imageFile));
+        out.writeInt(image.getIntAttribute("width", 0));
+        out.writeInt(image.getIntAttribute("height", 0));
+        out.writeInt(tileset.getIntAttribute("tilewidth"));
+        out.writeInt(tileset.getIntAttribute("tileheight"));
+        out.writeInt(tileset.getIntAttribute("spacing", 0));
+        out.writeInt(tileset.getIntAttribute("margin", 0));
+        final PropertyWriter properties = new PropertyWriter();
+        properties.addCustom(tileset.getChildByName("properties"));
+        properties.write(out);
+
+        // properties of single tiles are not used by the game and are therefore not part of the format
+        final Array<XmlReader.Element> animatedTiles = new Array<>();
+        for (final XmlReader.Element tile : tileset.getChildrenByName("tile")) {
+            if (tile.getChildByName("animation") != null) {
+                animatedTiles.add(tile);
+            }
+        }
+        out.writeInt(animatedTiles.size);
+        for (final XmlReader.Element tile : animatedTiles) {
+            final Array<XmlReader.Element> frames = tile.getChildByName("animation").getChildrenByName("frame");
+            out.writeInt(tile.getIntAttribute("id"));
+            out.writeInt(frames.size);
+            for (final XmlReader.Element frame : frames) {
+                out.writeInt(frame.getIntAttribute("tileid"));
+                out.writeInt(frame.getIntAttribute("duration"));
+            }
+        }
+    }
+
+    private String getRelativePath(final File baseDir, final File file) throws IOException {
+        final String result = baseDir.getCanonicalFile().toPath().relativize(file.getCanonicalFile().toPath()).toString();
+        return result.replace('\\', '/');
+    }
+
+    private void writeBasicLayerInfo(final DataOutputStream out, final byte type, final XmlReader.Element element) throws IOException {
+        out.writeByte(type);
+        writeString(out, element.getAttribute("name", ""));
+        out.writeBoolean(element.getIntAttribute("visible", 1) == 1);
+        out.writeFloat(element.getFloatAttribute("opacity", 1f));
+        out.writeFloat(element.getFloatAttribute("offsetx", 0));
+        // y-up coordinate system
+        out.writeFloat(-element.getFloatAttribute("offsety", 0));
+        final PropertyWriter properties = new PropertyWriter();
+        properties.addCustom(element.getChildByName("properties"));
+        properties.write(out);
+    }
+
+    private void writeTileLayer(final DataOutputStream out, final XmlReader.Element element) throws IOException {
+        final int width = element.getIntAttribute("width");
+        final int height = element.getIntAttribute("height");
+        final int[] gids = readTileGids(element, width, height);
+        out.writeInt(width);
+        out.writeInt(height);
+        // Tiled stores the top row first while libgdx cells start at the bottom
+        for (int y = height - 1; y >= 0; --y) {
+            for (int x = 0; x < width; ++x) {
+                out.writeInt(gids[x + y * width]);
+            }
+        }
+    }
+
+    private int[] readTileGids(final XmlReader.Element element, final int width, final int height) throws IOException {
+        final int[] gids = new int[width * height];
+        final XmlReader.Element data = element.getChildByName("data");
+        final String encoding = data.getAttribute("encoding", null);
+        if (encoding == null) {
+            // xml tiles
+            final Array<XmlReader.Element> tiles = data.getChildrenByName("tile");
+            for (int i = 0; i < tiles.size; ++i) {
+                gids[i] = (int) Long.parseLong(tiles.get(i).getAttribute("gid", "0"));
+            }
+        } else if ("csv".equals(encoding)) {
+            final String[] values = data.getText().trim().split("\\s*,\\s*");
+            for (int i = 0; i < values.length; ++i) {
+                gids[i] = (int) Long.parseLong(values[i]);
+            }
+        } else if ("base64".equals(encoding)) {
+            final String compression = data.getAttribute("compression", null);
+            final byte[] bytes = Base64Coder.decode(data.getText().trim());
+            InputStream in = new ByteArrayInputStream(bytes);
+            if ("zlib".equals(compression)) {
+                in = new InflaterInputStream(in);
+            } else if ("gzip".equals(compression)) {
+                in = new GZIPInputStream(in);
+            } else if (compression != null) {
+                throw new GdxRuntimeException("Unsupported compression " + compression);
+            }
+            try {
+                final byte[] temp = new byte[4];
+                for (int i = 0; i < gids.length; ++i) {
+                    int read = 0;
+                    while (read < temp.length) {
+                        final int count = in.read(temp, read, temp.length - read);
+                        if (count == -1) {
+                            throw new GdxRuntimeException("Tile layer data is too short: " + element.getAttribute("name", ""));
+                        }
+                        read += count;
+                    }
+                    // little endian
+                    gids[i] = (temp[0] & 0xFF) | (temp[1] & 0xFF) << 8 | (temp[2] & 0xFF) << 16 | (temp[3] & 0xFF) << 24;
+                }
+            } finally {
+                in.close();
+            }
+        } else {
+            throw new GdxRuntimeException("Unsupported encoding " + encoding);
+        }
+        return gids;
+    }
+
+    private void writeObjectLayer(final DataOutputStream out, final XmlReader.Element element, final int heightInPixels) throws IOException {
+        final Array<XmlReader.Element> objects = element.getChildrenByName("object");
+        out.writeInt(objects.size);
+        for (final XmlReader.Element object : objects) {
+            writeObject(out, object, heightInPixels);
+        }
+    }
+
+    private void writeObject(final DataOutputStream out, final XmlReader.Element element, final int heightInPixels) throws IOException {
+        // same conversion as TmxMapLoader.loadObject with flipY = true and unitScale = 1
+        final float x = element.getFloatAttribute("x", 0);
+        final float y = heightInPixels - element.getFloatAttribute("y", 0);
+        final float width = element.getFloatAttribute("width", 0);
+        final float height = element.getFloatAttribute("height", 0);
+        final String gid = element.getAttribute("gid", null);
+        final XmlReader.Element polyline = element.getChildByName("polyline");
+        if (element.getChildByName("polygon") != null || element.getChildByName("ellipse") != null) {
+            throw new GdxRuntimeException("Polygon and ellipse objects are not supported: " + element.getAttribute("id", ""));
+        }
+
+        final byte type = polyline != null ? BinaryMapFormat.OBJECT_POLYLINE : gid != null ? BinaryMapFormat.OBJECT_TILE : BinaryMapFormat.OBJECT_RECTANGLE;
+        out.writeByte(type);
+        writeString(out, element.getAttribute("name", ""));
+        out.writeBoolean(element.getIntAttribute("visible", 1) == 1);
+
+        final PropertyWriter properties = new PropertyWriter();
+        if (gid != null) {
+            properties.addInt("gid", (int) Long.parseLong(gid));
+        }
+        if (element.getAttribute("rotation", null) != null) {
+            properties.addFloat("rotation", element.getFloatAttribute("rotation"));
+        }
+        if (element.getAttribute("type", null) != null) {
+            properties.addString("type", element.getAttribute("type"));
+        }
+        final int id = element.getIntAttribute("id", 0);
+        if (id != 0) {
+            properties.addInt("id", id);
+        }
+        properties.addFloat("x", x);
+        properties.addFloat("y", type == BinaryMapFormat.OBJECT_TILE ? y : y - height);
+        properties.addFloat("width", width);
+        properties.addFloat("height", height);
+        properties.addCustom(element.getChildByName("properties"));
+        properties.write(out);
+
+        if (type == BinaryMapFormat.OBJECT_POLYLINE) {
+            final String[] points = polyline.getAttribute("points").split(" ");
+            out.writeFloat(x);
+            out.writeFloat(y);
+            out.writeInt(points.length * 2);
+            for (final String point : points) {
+                final String[] coordinates = point.split(",");
+                out.writeFloat(Float.parseFloat(coordinates[0]));
+                out.writeFloat(-Float.parseFloat(coordinates[1]));
+            }
+        } else if (type == BinaryMapFormat.OBJECT_TILE) {
+            final int tileGid = (int) Long.parseLong(gid);
+            final int tilesetIdx = getTilesetIndex(tileGid & ~BinaryMapFormat.MASK_CLEAR);
+            out.writeInt(tileGid);
+            out.writeFloat(x);
+            out.writeFloat(y);
+            out.writeFloat(width == 0 ? 1 : width / tilesetInfo.get(tilesetIdx + 1));
+            out.writeFloat(height == 0 ? 1 : height / tilesetInfo.get(tilesetIdx + 2));
+            out.writeFloat(element.getFloatAttribute("rotation", 0));
+        } else {
+            out.writeFloat(x);
+            out.writeFloat(y - height);
+            out.writeFloat(width);
+            out.writeFloat(height);
+        }
+    }
+
+    private int getTilesetIndex(final int gid) {
+        int result = -1;
+        for (int i = 0; i < tilesetInfo.size; i += 3) {
+            if (tilesetInfo.get(i) <= gid && (result == -1 || tilesetInfo.get(i) > tilesetInfo.get(result))) {
+                result = i;
+            }
+        }
+        if (result == -1) {
+            throw new GdxRuntimeException("There is no tileset for gid " + gid);
+        }
+        return result;
+    }
+
+    private static void writeString(final DataOutputStream out, final String value) throws IOException {
+        final byte[] bytes = value.getBytes("UTF-8");
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Collects the properties of a map element. Custom properties of Tiled are written with their type so that the
+     * loader creates the same Integer, Float, Boolean and String values as the TmxMapLoader.
+     */
+    private static class PropertyWriter {
+        private final Array<String> keys;
+        private final Array<Object> values;
+
+        private PropertyWriter() {
+            this.keys = new Array<>();
+            this.values = new Array<>();
+        }
+
+        private void put(final String key, final Object value) {
+            final int idx = keys.indexOf(key, false);
+            if (idx == -1) {
+                keys.add(key);
+                values.add(value);
+            } else {
+                values.set(idx, value);
+            }
+        }
+
+        void addString(final String key, final String value) {
+            put(key, value);
+        }
+
+        void addInt(final String key, final int value) {
+            put(key, value);
+        }
+
+        void addFloat(final String key, final float value) {
+            put(key, value);
+        }
+
+        void addCustom(final XmlReader.Element element) {
+            if (element == null) {
+                return;
+            }
+            for (final XmlReader.Element property : element.getChildrenByName("property")) {
+                final String name = property.getAttribute("name");
+                String value = property.getAttribute("value", null);
+                if (value == null) {
+                    value = property.getText();
+                }
+                final String type = property.getAttribute("type", "string");
+                if ("int".equals(type)) {
+                    put(name, Integer.valueOf(value));
+                } else if ("float".equals(type)) {
+                    put(name, Float.valueOf(value));
+                } else if ("bool".equals(type)) {
+                    put(name, Boolean.valueOf(value));
+                } else {
+                    // color and file properties are strings as well
+                    put(name, value);
+                }
+            }
+        }
+
+        void write(final DataOutputStream out) throws IOException {
+            out.writeInt(keys.size);
+            for (int i = 0; i < keys.size; ++i) {
+                writeString(out, keys.get(i));
+                final Object value = values.get(i);
+                if (value instanceof Integer) {
+                    out.writeByte(BinaryMapFormat.PROPERTY_INT);
+                    out.writeInt((Integer) value);
+                } else if (value instanceof Float) {
+                    out.writeByte(BinaryMapFormat.PROPERTY_FLOAT);
+                    out.writeFloat((Float) value);
+                } else if (value instanceof Boolean) {
+                    out.writeByte(BinaryMapFormat.PROPERTY_BOOLEAN);
+                    out.writeBoolean((Boolean) value);
+                } else {
+                    out.writeByte(BinaryMapFormat.PROPERTY_STRING);
+                    writeString(out, value == null ? "" : value.toString());
+                }
+            }
+        }
+    }
+}